@@ -38,6 +38,11 @@ public class AutorouteEngine
    * The PCB-board of this autoroute algorithm.
    */
   final RoutingBoard board;
+  /**
+   * The priority queue of the maze search algorithm, whose storage is reused for the connections
+   * routed with this engine.
+   */
+  final MazeExpansionList maze_expansion_list;
   /**
    * To be able to stop the expansion algorithm.
    */
@@ -76,6 +81,7 @@ public class AutorouteEngine
     int max_drill_page_width = (int) (5 * p_board.rules.get_default_via_diameter());
     max_drill_page_width = Math.max(max_drill_page_width, 10000);
     this.drill_page_array = new DrillPageArray(this.board, max_drill_page_width);
+    this.maze_expansion_list = new MazeExpansionList();
     this.stoppable_thread = null;
   }
 
@@ -271,6 +277,7 @@ public class AutorouteEngine
     complete_expansion_rooms = null;
     incomplete_expansion_rooms = null;
     expansion_room_instance_count = 0;
+    maze_expansion_list.clear();
     board.clear_all_item_temporary_autoroute_data();
   }
 
@@ -5,6 +5,7 @@ import app.freerouting.datastructures.TimeLimit;
 import app.freerouting.datastructures.UndoableObjects;
 import app.freerouting.geometry.planar.FloatLine;
 import app.freerouting.geometry.planar.FloatPoint;
+import app.freerouting.geometry.planar.IntBox;
 import app.freerouting.interactive.BoardHandling;
 import app.freerouting.interactive.InteractiveActionThread;
 import app.freerouting.interactive.InteractiveState;
@@ -13,6 +14,10 @@ import app.freerouting.management.TextManager;
 import app.freerouting.rules.Net;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Handles the sequencing of the auto-router passes.
@@ -20,6 +25,11 @@ import java.util.*;
 public class BatchAutorouter
 {
   private static final int TIME_LIMIT_TO_PREVENT_ENDLESS_LOOP = 1000;
+  /**
+   * The number of pending connections per thread, which are examined when looking for connections
+   * to route in parallel.
+   */
+  private static final int PARALLEL_LOOKAHEAD_PER_THREAD = 16;
   private final InteractiveActionThread thread;
   private final BoardHandling hdlg;
   private final RoutingBoard routing_board;
@@ -27,7 +37,26 @@ public class BatchAutorouter
   private final AutorouteControl.ExpansionCostFactor[] trace_cost_arr;
   private final boolean retain_autoroute_database;
   private final int start_ripup_costs;
-  private final HashSet<String> already_checked_board_hashes = new HashSet<>();
+  /**
+   * If {@literal >} 1, spatially independent connections are routed in parallel on copies of the
+   * routing board.
+   */
+  private final int thread_count;
+  /**
+   * The threads for routing connections in parallel. Created in the first parallel pass and shut down
+   * at the end of the auto-route run.
+   */
+  private ExecutorService worker_pool;
+  /**
+   * The auto-routers working on copies of the routing board. Reused in all passes of the auto-route
+   * run.
+   */
+  private BatchAutorouter[] workers;
+  /**
+   * The changes of the routing board, which are not yet transferred to the boards of the workers.
+   */
+  private ChangeJournal unsynchronized_changes;
+  private final HashSet<Long> already_checked_board_hashes = new HashSet<>();
   private final LinkedList<Integer> traceLengthDifferenceBetweenPasses = new LinkedList<>();
   private boolean is_interrupted = false;
   /**
@@ -66,6 +95,23 @@ public class BatchAutorouter
 
     this.start_ripup_costs = p_start_ripup_costs;
     this.retain_autoroute_database = false;
+    this.thread_count = updated_routing_board == null && this.hdlg.get_parallel_autoroute() ? Math.max(this.hdlg.get_num_threads(), 1) : 1;
+  }
+
+  /**
+   * Creates a batch autorouter with the settings of p_master working on p_worker_board, which is a
+   * copy of the routing board of p_master. Used for routing connections in parallel.
+   */
+  private BatchAutorouter(BatchAutorouter p_master, RoutingBoard p_worker_board)
+  {
+    this.thread = p_master.thread;
+    this.hdlg = p_master.hdlg;
+    this.routing_board = p_worker_board;
+    this.remove_unconnected_vias = p_master.remove_unconnected_vias;
+    this.trace_cost_arr = p_master.trace_cost_arr;
+    this.start_ripup_costs = p_master.start_ripup_costs;
+    this.retain_autoroute_database = p_master.retain_autoroute_database;
+    this.thread_count = 1;
   }
 
   /**
@@ -79,18 +125,24 @@ public class BatchAutorouter
     BatchAutorouter router_instance = new BatchAutorouter(p_thread, true, p_with_preferred_directions, p_ripup_costs, updated_routing_board);
     boolean still_unrouted_items = true;
     int curr_pass_no = 1;
-    while (still_unrouted_items && !router_instance.is_interrupted && curr_pass_no <= p_max_pass_count)
+    try
     {
-      if (p_thread.is_stop_auto_router_requested())
-      {
-        router_instance.is_interrupted = true;
-      }
-      still_unrouted_items = router_instance.autoroute_pass(curr_pass_no, false);
-      if (still_unrouted_items && !router_instance.is_interrupted && updated_routing_board == null)
+      while (still_unrouted_items && !router_instance.is_interrupted && curr_pass_no <= p_max_pass_count)
       {
-        p_thread.hdlg.get_settings().autoroute_settings.increment_pass_no();
+        if (p_thread.is_stop_auto_router_requested())
+        {
+          router_instance.is_interrupted = true;
+        }
+        still_unrouted_items = router_instance.autoroute_pass(curr_pass_no, false);
+        if (still_unrouted_items && !router_instance.is_interrupted && updated_routing_board == null)
+        {
+          p_thread.hdlg.get_settings().autoroute_settings.increment_pass_no();
+        }
+        ++curr_pass_no;
       }
-      ++curr_pass_no;
+    } finally
+    {
+      router_instance.finish_parallel_autoroute();
     }
     router_instance.remove_tails(Item.StopConnectionOption.NONE);
     if (!still_unrouted_items)
@@ -112,72 +164,80 @@ public class BatchAutorouter
     int minimumPassCountBeforeImprovementCheck = 5;
     int numberOfPassesToAverage = minimumPassCountBeforeImprovementCheck;
 
-    while (still_unrouted_items && !this.is_interrupted)
+    try
     {
-      if (thread.is_stop_auto_router_requested())
+      while (still_unrouted_items && !this.is_interrupted)
       {
-        this.is_interrupted = true;
-      }
+        if (thread.is_stop_auto_router_requested())
+        {
+          this.is_interrupted = true;
+        }
 
-      String current_board_hash = this.routing_board.get_hash();
-      if (already_checked_board_hashes.contains(current_board_hash))
-      {
-        // This board was already evaluated, so we stop auto-router to avoid the endless loop
-        thread.request_stop_auto_router();
-        break;
-      }
+        long current_board_hash = this.routing_board.get_fingerprint();
+        if (already_checked_board_hashes.contains(current_board_hash))
+        {
+          // This board was already evaluated, so we stop auto-router to avoid the endless loop
+          thread.request_stop_auto_router();
+          break;
+        }
 
-      int curr_pass_no = hdlg.get_settings().autoroute_settings.get_start_pass_no();
-      if (curr_pass_no > hdlg.get_settings().autoroute_settings.get_stop_pass_no())
-      {
-        thread.request_stop_auto_router();
-        break;
-      }
+        int curr_pass_no = hdlg.get_settings().autoroute_settings.get_start_pass_no();
+        if (curr_pass_no > hdlg.get_settings().autoroute_settings.get_stop_pass_no())
+        {
+          thread.request_stop_auto_router();
+          break;
+        }
 
-      String start_message = tm.getText("autorouter_started", Integer.toString(curr_pass_no));
-      // hdlg.screen_messages.set_status_message(start_message);
+        String start_message = tm.getText("autorouter_started", Integer.toString(curr_pass_no));
+        // hdlg.screen_messages.set_status_message(start_message);
 
-      BasicBoard boardBefore = this.routing_board.clone();
+        ChangeJournal pass_changes = this.routing_board.start_change_journal();
 
-      FRLogger.traceEntry("BatchAutorouter.autoroute_pass #" + curr_pass_no + " on board '" + current_board_hash + "' making {} changes");
-      already_checked_board_hashes.add(this.routing_board.get_hash());
-      still_unrouted_items = autoroute_pass(curr_pass_no, true);
+        FRLogger.traceEntry("BatchAutorouter.autoroute_pass #" + curr_pass_no + " on board '" + Long.toHexString(current_board_hash) + "' making {} changes");
+        already_checked_board_hashes.add(current_board_hash);
+        still_unrouted_items = autoroute_pass(curr_pass_no, true);
 
-      // let's check if there was enough track length change in the last few passes, because if it was too little we should stop
-      // TODO: score the board based on the costs settings of trace length, corner and via count, unconnected ratsnets, etc.
-      int traceLengthDifferences = this.routing_board.diff_traces(boardBefore);
-      traceLengthDifferenceBetweenPasses.add(traceLengthDifferences);
+        // let's check if there was enough track length change in the last few passes, because if it was too little we should stop
+        // TODO: score the board based on the costs settings of trace length, corner and via count, unconnected ratsnets, etc.
+        this.routing_board.stop_change_journal(pass_changes);
+        int traceLengthDifferences = pass_changes.changed_trace_count();
+        traceLengthDifferenceBetweenPasses.add(traceLengthDifferences);
 
-      if (traceLengthDifferenceBetweenPasses.size() > numberOfPassesToAverage)
-      {
-        traceLengthDifferenceBetweenPasses.removeFirst();
+        if (traceLengthDifferenceBetweenPasses.size() > numberOfPassesToAverage)
+        {
+          traceLengthDifferenceBetweenPasses.removeFirst();
 
-        OptionalDouble averageTraceLengthDifferencePerPass = traceLengthDifferenceBetweenPasses.stream().mapToDouble(a -> a).average();
+          OptionalDouble averageTraceLengthDifferencePerPass = traceLengthDifferenceBetweenPasses.stream().mapToDouble(a -> a).average();
 
-        // TODO: make the threshold based on the initial score (cost)
-        if (averageTraceLengthDifferencePerPass.getAsDouble() < 20.0)
-        {
-          FRLogger.warn("There were only " + FRLogger.defaultFloatFormat.format(averageTraceLengthDifferencePerPass.getAsDouble()) + " track length increase in the last " + numberOfPassesToAverage + " passes, so it's very likely that autorouter can't improve the result further.");
-          this.is_interrupted = true;
+          // TODO: make the threshold based on the initial score (cost)
+          if (averageTraceLengthDifferencePerPass.getAsDouble() < 20.0)
+          {
+            FRLogger.warn("There were only " + FRLogger.defaultFloatFormat.format(averageTraceLengthDifferencePerPass.getAsDouble()) + " track length increase in the last " + numberOfPassesToAverage + " passes, so it's very likely that autorouter can't improve the result further.");
+            this.is_interrupted = true;
+          }
+          else
+          {
+            numberOfPassesToAverage = minimumPassCountBeforeImprovementCheck;
+          }
         }
-        else
+        double autorouter_pass_duration = FRLogger.traceExit("BatchAutorouter.autoroute_pass #" + curr_pass_no + " on board '" + Long.toHexString(current_board_hash) + "' making {} changes", traceLengthDifferences);
+        FRLogger.info("Auto-router pass #" + curr_pass_no + " on board '" + Long.toHexString(current_board_hash) + "' was completed in " + FRLogger.formatDuration(autorouter_pass_duration));
+        FRLogger.debug("Auto-router pass #" + curr_pass_no + " changed " + traceLengthDifferences + " traces, trace length difference: " + FRLogger.defaultFloatFormat.format(pass_changes.trace_length_difference()) + ", via count difference: " + pass_changes.via_count_difference());
+
+        if (save_intermediate_stages)
         {
-          numberOfPassesToAverage = minimumPassCountBeforeImprovementCheck;
+          this.thread.hdlg.get_panel().board_frame.save_intermediate_stage_file();
         }
-      }
-      double autorouter_pass_duration = FRLogger.traceExit("BatchAutorouter.autoroute_pass #" + curr_pass_no + " on board '" + current_board_hash + "' making {} changes", traceLengthDifferences);
-      FRLogger.info("Auto-router pass #" + curr_pass_no + " on board '" + current_board_hash + "' was completed in " + FRLogger.formatDuration(autorouter_pass_duration));
 
-      if (save_intermediate_stages)
-      {
-        this.thread.hdlg.get_panel().board_frame.save_intermediate_stage_file();
-      }
-
-      // check if there are still unrouted items
-      if (still_unrouted_items && !is_interrupted)
-      {
-        hdlg.get_settings().autoroute_settings.increment_pass_no();
+        // check if there are still unrouted items
+        if (still_unrouted_items && !is_interrupted)
+        {
+          hdlg.get_settings().autoroute_settings.increment_pass_no();
+        }
       }
+    } finally
+    {
+      finish_parallel_autoroute();
     }
     if (!(this.remove_unconnected_vias || still_unrouted_items || this.is_interrupted))
     {
@@ -259,46 +319,53 @@ public class BatchAutorouter
         // hdlg.screen_messages.set_batch_autoroute_info(items_to_go_count, routed, ripped_item_count, not_found);
       }
 
-      // Let's go through all items to route
-      for (Item curr_item : autoroute_item_list)
+      if (this.thread_count > 1)
       {
-        // If the user requested to stop the auto-router, we stop it
-        if (this.is_interrupted)
-        {
-          break;
-        }
-
-        // Let's go through all nets of this item
-        for (int i = 0; i < curr_item.net_count(); ++i)
+        autoroute_items_parallel(autoroute_item_list, p_pass_no);
+      }
+      else
+      {
+        // Let's go through all items to route
+        for (Item curr_item : autoroute_item_list)
         {
           // If the user requested to stop the auto-router, we stop it
-          if (this.thread.is_stop_auto_router_requested())
+          if (this.is_interrupted)
           {
-            this.is_interrupted = true;
             break;
           }
 
-          // We visually mark the area of the board, which is changed by the auto-router
-          routing_board.start_marking_changed_area();
-
-          // Do the auto-routing step for this item (typically PolylineTrace or Pin)
-          SortedSet<Item> ripped_item_list = new TreeSet<>();
-          if (autoroute_item(curr_item, curr_item.get_net_no(i), ripped_item_list, p_pass_no))
+          // Let's go through all nets of this item
+          for (int i = 0; i < curr_item.net_count(); ++i)
           {
-            ++routed;
-//            hdlg.repaint();
-          }
-          else
-          {
-            ++not_found;
-          }
-          --items_to_go_count;
-          ripped_item_count += ripped_item_list.size();
+            // If the user requested to stop the auto-router, we stop it
+            if (this.thread.is_stop_auto_router_requested())
+            {
+              this.is_interrupted = true;
+              break;
+            }
 
-          // Update the GUI with the current status
-          if (p_with_screen_message)
-          {
-            // hdlg.screen_messages.set_batch_autoroute_info(items_to_go_count, routed, ripped_item_count, not_found);
+            // We visually mark the area of the board, which is changed by the auto-router
+            routing_board.start_marking_changed_area();
+
+            // Do the auto-routing step for this item (typically PolylineTrace or Pin)
+            SortedSet<Item> ripped_item_list = new TreeSet<>();
+            if (autoroute_item(curr_item, curr_item.get_net_no(i), ripped_item_list, p_pass_no))
+            {
+              ++routed;
+//              hdlg.repaint();
+            }
+            else
+            {
+              ++not_found;
+            }
+            --items_to_go_count;
+            ripped_item_count += ripped_item_list.size();
+
+            // Update the GUI with the current status
+            if (p_with_screen_message)
+            {
+              // hdlg.screen_messages.set_batch_autoroute_info(items_to_go_count, routed, ripped_item_count, not_found);
+            }
           }
         }
       }
@@ -327,6 +394,353 @@ public class BatchAutorouter
     }
   }
 
+  /**
+   * Routes the connections of the items in p_item_list speculatively in parallel. Connections,
+   * whose regions do not overlap, are routed at the same time on copies of the routing board. The
+   * changes are transferred to the routing board in the order of p_item_list, if they do not
+   * conflict with the changes transferred before. Conflicting connections are routed again on the
+   * routing board at the end of the pass.
+   */
+  private void autoroute_items_parallel(Collection<Item> p_item_list, int p_pass_no)
+  {
+    int region_margin = calc_region_margin(this.routing_board);
+    Map<Integer, IntBox> net_regions = calc_net_regions(region_margin);
+    LinkedList<RouteTask> pending_tasks = new LinkedList<>();
+    for (Item curr_item : p_item_list)
+    {
+      for (int i = 0; i < curr_item.net_count(); ++i)
+      {
+        int curr_net_no = curr_item.get_net_no(i);
+        IntBox curr_region = net_regions.get(curr_net_no);
+        if (curr_region == null)
+        {
+          curr_region = curr_item.bounding_box().offset(region_margin);
+        }
+        pending_tasks.add(new RouteTask(curr_item, curr_net_no, curr_region));
+      }
+    }
+    Collection<RouteTask> conflicting_tasks = new LinkedList<>();
+    if (this.worker_pool == null)
+    {
+      this.workers = new BatchAutorouter[this.thread_count];
+      this.worker_pool = Executors.newFixedThreadPool(this.thread_count, r ->
+      {
+        Thread t = new Thread(r);
+        t.setUncaughtExceptionHandler((t1, e) -> FRLogger.error("Exception in autorouter worker thread: " + t1, e));
+        return t;
+      });
+    }
+    else if (this.unsynchronized_changes != null)
+    {
+      // transfer the changes made on the routing board since the last parallel pass
+      this.routing_board.stop_change_journal(this.unsynchronized_changes);
+      synchronize_workers(this.unsynchronized_changes);
+      this.unsynchronized_changes = null;
+    }
+    int parallel_count = 0;
+    ChangeJournal committed_changes = null;
+    try
+    {
+      while (!pending_tasks.isEmpty() && !this.is_interrupted)
+      {
+        if (this.thread.is_stop_auto_router_requested())
+        {
+          this.is_interrupted = true;
+          break;
+        }
+        List<RouteTask> curr_batch = select_independent_tasks(pending_tasks);
+        committed_changes = this.routing_board.start_change_journal();
+        if (curr_batch.size() == 1)
+        {
+          route_on_routing_board(curr_batch.get(0), p_pass_no);
+        }
+        else
+        {
+          List<Callable<RouteTask>> batch_jobs = new ArrayList<>(curr_batch.size());
+          for (int i = 0; i < curr_batch.size(); ++i)
+          {
+            if (this.workers[i] == null)
+            {
+              this.workers[i] = create_worker();
+            }
+            BatchAutorouter curr_worker = this.workers[i];
+            RouteTask curr_task = curr_batch.get(i);
+            batch_jobs.add(() -> curr_worker.route_speculatively(curr_task, p_pass_no));
+          }
+          List<Future<RouteTask>> batch_results = this.worker_pool.invokeAll(batch_jobs);
+          Collection<IntBox> committed_boxes = new LinkedList<>();
+          for (int i = 0; i < curr_batch.size(); ++i)
+          {
+            RouteTask curr_task = batch_results.get(i).get();
+            if (commit_speculative_changes(curr_task, committed_boxes, region_margin))
+            {
+              ++parallel_count;
+            }
+            else
+            {
+              conflicting_tasks.add(curr_task);
+            }
+            if (curr_task.changes != null && !curr_task.changes.revert(this.workers[i].routing_board))
+            {
+              discard_worker(i);
+            }
+          }
+        }
+        this.routing_board.stop_change_journal(committed_changes);
+        synchronize_workers(committed_changes);
+        committed_changes = null;
+      }
+    } catch (Exception e)
+    {
+      FRLogger.error("Exception during parallel auto-routing", e);
+      // the boards of the workers may contain unreverted speculative changes
+      for (int i = 0; i < this.workers.length; ++i)
+      {
+        discard_worker(i);
+      }
+    } finally
+    {
+      if (committed_changes != null)
+      {
+        this.routing_board.stop_change_journal(committed_changes);
+      }
+    }
+    FRLogger.debug("Parallel auto-router pass #" + p_pass_no + " routed " + parallel_count + " connections in parallel and " + conflicting_tasks.size() + " conflicting connections sequentially on " + this.thread_count + " threads.");
+    start_recording_unsynchronized_changes();
+    conflicting_tasks.addAll(pending_tasks);
+    for (RouteTask curr_task : conflicting_tasks)
+    {
+      if (this.is_interrupted || this.thread.is_stop_auto_router_requested())
+      {
+        this.is_interrupted = true;
+        break;
+      }
+      route_on_routing_board(curr_task, p_pass_no);
+    }
+  }
+
+  /**
+   * Records the changes of the routing board made outside of the parallel routing, so that the boards
+   * of the workers can be synchronized in the next parallel pass.
+   */
+  private void start_recording_unsynchronized_changes()
+  {
+    if (this.worker_pool != null && this.unsynchronized_changes == null)
+    {
+      this.unsynchronized_changes = this.routing_board.start_change_journal();
+    }
+  }
+
+  /**
+   * Removes the next connections from p_pending_tasks, whose regions do not overlap, at most one per
+   * thread. The first pending connection is always selected.
+   */
+  private List<RouteTask> select_independent_tasks(LinkedList<RouteTask> p_pending_tasks)
+  {
+    List<RouteTask> result = new ArrayList<>(this.thread_count);
+    int lookahead = PARALLEL_LOOKAHEAD_PER_THREAD * this.thread_count;
+    Iterator<RouteTask> it = p_pending_tasks.iterator();
+    while (it.hasNext() && result.size() < this.thread_count && lookahead-- > 0)
+    {
+      RouteTask curr_task = it.next();
+      boolean independent = true;
+      for (RouteTask curr_selected : result)
+      {
+        if (curr_selected.region.intersects(curr_task.region))
+        {
+          independent = false;
+          break;
+        }
+      }
+      if (independent)
+      {
+        result.add(curr_task);
+        it.remove();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Routes p_task on the board of this worker and records the changes in p_task.
+   */
+  private RouteTask route_speculatively(RouteTask p_task, int p_pass_no)
+  {
+    p_task.changes = this.routing_board.start_change_journal();
+    try
+    {
+      Item worker_item = (Item) this.routing_board.item_list.get_stored_object(p_task.item);
+      if (worker_item == null)
+      {
+        p_task.failed = true;
+      }
+      else
+      {
+        this.routing_board.start_marking_changed_area();
+        autoroute_item(worker_item, p_task.net_no, new TreeSet<>(), p_pass_no);
+      }
+    } catch (Exception e)
+    {
+      FRLogger.error("Exception during speculative auto-routing", e);
+      p_task.failed = true;
+    } finally
+    {
+      this.routing_board.stop_change_journal(p_task.changes);
+    }
+    return p_task;
+  }
+
+  /**
+   * Transfers the changes of the speculatively routed p_task to the routing board. Returns false, if
+   * the changes conflict with the changes in p_committed_boxes or with the routing board.
+   */
+  private boolean commit_speculative_changes(RouteTask p_task, Collection<IntBox> p_committed_boxes, int p_region_margin)
+  {
+    if (p_task.failed)
+    {
+      return false;
+    }
+    if (p_task.changes.is_empty())
+    {
+      return true;
+    }
+    if (!p_task.changes.contains_only_traces_and_vias())
+    {
+      return false;
+    }
+    IntBox changed_box = p_task.changes.changed_bounding_box().offset(p_region_margin);
+    for (IntBox curr_box : p_committed_boxes)
+    {
+      if (curr_box.intersects(changed_box))
+      {
+        return false;
+      }
+    }
+    if (!p_task.changes.apply_to(this.routing_board, true, true))
+    {
+      return false;
+    }
+    p_committed_boxes.add(changed_box);
+    return true;
+  }
+
+  /**
+   * Transfers p_committed_changes of the routing board to the boards of the workers. Workers, whose
+   * boards cannot be synchronized, are discarded and created again when needed.
+   */
+  private void synchronize_workers(ChangeJournal p_committed_changes)
+  {
+    int max_id_no = this.routing_board.communication.id_no_generator.max_generated_no();
+    for (int i = 0; i < this.workers.length; ++i)
+    {
+      if (this.workers[i] == null)
+      {
+        continue;
+      }
+      RoutingBoard worker_board = this.workers[i].routing_board;
+      if (!p_committed_changes.apply_to(worker_board, false, false))
+      {
+        discard_worker(i);
+        continue;
+      }
+      // the id numbers of speculatively inserted items must not collide with committed items
+      worker_board.communication.id_no_generator.skip_to(max_id_no);
+    }
+  }
+
+  private BatchAutorouter create_worker()
+  {
+    RoutingBoard worker_board = (RoutingBoard) this.routing_board.clone();
+    return new BatchAutorouter(this, worker_board);
+  }
+
+  /**
+   * Releases the auto-route database of the worker with index p_index and removes the worker.
+   */
+  private void discard_worker(int p_index)
+  {
+    if (this.workers[p_index] != null)
+    {
+      this.workers[p_index].routing_board.finish_autoroute();
+      this.workers[p_index] = null;
+    }
+  }
+
+  /**
+   * Releases the boards of the workers and shuts down their threads at the end of an auto-route run.
+   */
+  private void finish_parallel_autoroute()
+  {
+    if (this.unsynchronized_changes != null)
+    {
+      this.routing_board.stop_change_journal(this.unsynchronized_changes);
+      this.unsynchronized_changes = null;
+    }
+    if (this.worker_pool == null)
+    {
+      return;
+    }
+    try
+    {
+      for (int i = 0; i < this.workers.length; ++i)
+      {
+        discard_worker(i);
+      }
+    } finally
+    {
+      this.worker_pool.shutdownNow();
+      this.worker_pool = null;
+      this.workers = null;
+    }
+  }
+
+  private void route_on_routing_board(RouteTask p_task, int p_pass_no)
+  {
+    this.routing_board.start_marking_changed_area();
+    autoroute_item(p_task.item, p_task.net_no, new TreeSet<>(), p_pass_no);
+  }
+
+  /**
+   * Returns the distance, by which the bounding box of a net is enlarged to contain all items, which
+   * may be changed when routing a connection of the net.
+   */
+  static int calc_region_margin(RoutingBoard p_board)
+  {
+    int max_clearance = 0;
+    for (int i = 0; i < p_board.get_layer_count(); ++i)
+    {
+      max_clearance = Math.max(max_clearance, p_board.rules.clearance_matrix.max_value(i));
+    }
+    return max_clearance + 2 * p_board.get_max_trace_half_width();
+  }
+
+  /**
+   * Calculates for each net the bounding box of its connectable items enlarged by p_margin.
+   */
+  private Map<Integer, IntBox> calc_net_regions(int p_margin)
+  {
+    Map<Integer, IntBox> result = new TreeMap<>();
+    Iterator<UndoableObjects.UndoableObjectNode> it = routing_board.item_list.start_read_object();
+    for (; ; )
+    {
+      UndoableObjects.Storable curr_ob = routing_board.item_list.read_object(it);
+      if (curr_ob == null)
+      {
+        break;
+      }
+      if (curr_ob instanceof Connectable && curr_ob instanceof Item curr_item)
+      {
+        IntBox curr_box = curr_item.bounding_box();
+        for (int i = 0; i < curr_item.net_count(); ++i)
+        {
+          result.merge(curr_item.get_net_no(i), curr_box, IntBox::union);
+        }
+      }
+    }
+    result.replaceAll((k, v) -> v.offset(p_margin));
+    return result;
+  }
+
   private void remove_tails(Item.StopConnectionOption p_stop_connection_option)
   {
     routing_board.start_marking_changed_area();
@@ -471,4 +885,29 @@ public class BatchAutorouter
     }
     this.air_line = new FloatLine(from_corner, to_corner);
   }
-}
\ No newline at end of file
+
+  /**
+   * A connection to be routed in a parallel autoroute pass.
+   */
+  private static class RouteTask
+  {
+    final Item item;
+    final int net_no;
+    /**
+     * The area, which is expected to be changed when routing this connection.
+     */
+    final IntBox region;
+    /**
+     * The changes made when routing this connection speculatively on a copy of the routing board.
+     */
+    ChangeJournal changes = null;
+    boolean failed = false;
+
+    RouteTask(Item p_item, int p_net_no, IntBox p_region)
+    {
+      item = p_item;
+      net_no = p_net_no;
+      region = p_region;
+    }
+  }
+}
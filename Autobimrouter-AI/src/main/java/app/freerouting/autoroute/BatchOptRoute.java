@@ -45,6 +45,16 @@ public class BatchOptRoute {
     this.routing_board = p_clone_board ? p_thread.hdlg.deep_copy_routing_board() : p_thread.hdlg.get_routing_board();
   }
 
+  /**
+   * To optimize the route on p_board_copy, which is a copy of the board of p_thread
+   * managed by the caller.
+   */
+  protected BatchOptRoute(InteractiveActionThread p_thread, RoutingBoard p_board_copy) {
+    this.thread = p_thread;
+    this.clone_board = true;
+    this.routing_board = p_board_copy;
+  }
+
   static boolean contains_only_unfixed_traces(Collection<Item> p_item_list) {
     for (Item curr_item : p_item_list) {
       if (curr_item.is_user_fixed() || !(curr_item instanceof Trace)) {
@@ -170,12 +180,14 @@ public class BatchOptRoute {
     return route_improved;
   }
 
-  protected void remove_ratsnest() {
-    this.thread.hdlg.remove_ratsnest();
-  }
-
+  /**
+   * Returns the ratsnest of the routing board with the incompletes of the changed nets
+   * recalculated.
+   */
   protected RatsNest get_ratsnest() {
-    return this.thread.hdlg.get_ratsnest();
+    RatsNest result = this.thread.hdlg.get_ratsnest();
+    result.update();
+    return result;
   }
 
   /**
@@ -190,9 +202,6 @@ public class BatchOptRoute {
     // this.thread.hdlg.screen_messages.set_status_message(start_message); // assume
     // overwriting messages is harmless
 
-    this.remove_ratsnest(); // looks like caching the ratsnest is not necessary
-    // as a new instance is needed every time, i.e., remove/get ratsnest are called
-    // in pair
     int incomplete_count_before = this.get_ratsnest().incomplete_count();
 
     int via_count_before = this.routing_board.get_vias().size();
@@ -241,7 +250,6 @@ public class BatchOptRoute {
     BatchAutorouter.autoroute_passes_for_optimizing_item(this.thread, MAX_AUTOROUTE_PASSES, ripup_costs,
         p_with_preferred_directions, this.clone_board ? this.routing_board : null);
 
-    this.remove_ratsnest();
     int incomplete_count_after = this.get_ratsnest().incomplete_count();
 
     int via_count_after = this.routing_board.get_vias().size();
@@ -1,7 +1,11 @@
 package app.freerouting.autoroute;
 
+import app.freerouting.board.ChangeJournal;
 import app.freerouting.board.Item;
+import app.freerouting.board.RoutingBoard;
+import app.freerouting.geometry.planar.IntBox;
 import app.freerouting.interactive.InteractiveActionThread;
+import app.freerouting.interactive.RatsNest;
 import app.freerouting.logger.FRLogger;
 
 import java.util.ArrayList;
@@ -10,6 +14,7 @@ import java.util.HashMap;
 import java.util.PriorityQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -18,12 +23,35 @@ import java.util.concurrent.TimeUnit;
  */
 public class BatchOptRouteMT extends BatchOptRoute
 {
+  /**
+   * The maximal number of times the items, whose changes conflicted with changes committed in the
+   * meantime, are scheduled again in a pass.
+   */
+  private static final int MAX_REQUEUE_ROUNDS = 2;
+  /**
+   * The maximal number of tasks per thread, which are scheduled but not yet finished.
+   */
+  private static final int MAX_TASKS_IN_FLIGHT_PER_THREAD = 2;
   private final BoardUpdateStrategy board_update_strategy;
   private final ItemSelectionStrategy item_selection_strategy;
   private final int thread_pool_size;
   private final ArrayList<Integer> item_ids = new ArrayList<>();
   private final HashMap<Integer, ItemRouteResult> result_map = new HashMap<>();
   private final ArrayList<BoardUpdateStrategy> hybrid_list = new ArrayList<>();
+  /**
+   * The changes committed to the master board in the current pass in commit order. The number of
+   * commits contained in a worker board is used as snapshot number of the tasks routed on it.
+   */
+  private final ArrayList<Commit> commits = new ArrayList<>();
+  /**
+   * The copies of the master board owned by the worker threads of the pool.
+   */
+  private final ArrayList<WorkerBoard> worker_boards = new ArrayList<>();
+  private final ThreadLocal<WorkerBoard> worker_board = new ThreadLocal<>();
+  /**
+   * The ids of the items, whose changes could not be committed because of conflicts.
+   */
+  private final ArrayList<Integer> requeued_item_ids = new ArrayList<>();
   private ThreadPoolExecutor pool;
   private ItemRouteResult best_route_result;
   private OptimizeRouteTask winning_candidate;
@@ -31,6 +59,8 @@ public class BatchOptRouteMT extends BatchOptRoute
   private int update_count = 0;
   private CountDownLatch task_completion_signal = new CountDownLatch(1);
   private int hybrid_index = -1;
+  private int region_margin = 0;
+  private int conflict_count = 0;
 
   /**
    * @param p_thread
@@ -123,7 +153,12 @@ public class BatchOptRouteMT extends BatchOptRoute
 
     boolean won = false;
 
-    if (r.improved())
+    if (r.improved() && current_board_update_strategy() == BoardUpdateStrategy.GREEDY && !commit_changes(task))
+    {
+      // The task worked on an outdated copy of the board, try again on an up to date copy.
+      requeued_item_ids.add(r.item_id());
+    }
+    else if (r.improved())
     {
       if (winning_candidate == null)
       {
@@ -146,26 +181,156 @@ public class BatchOptRouteMT extends BatchOptRoute
       }
     }
 
-    if (won && current_board_update_strategy() == BoardUpdateStrategy.GREEDY)
+    task_completion_signal.countDown();
+    return won;
+  }
+
+  /**
+   * Reroutes the item with id p_item_id on the board of the current worker thread. Afterwards the
+   * changes of the task are undone on the worker board, unless they are kept as the best result of a
+   * GLOBAL_OPTIMAL pass. In this case the thread copies the master board again for its next task.
+   */
+  private void run_task(int p_item_id, int p_pass_no, boolean p_with_preferred_directions)
+  {
+    WorkerBoard worker = get_worker_board();
+    boolean board_reusable = false;
+    try
     {
-      update_master_routing_board(); // new tasks will copy the updated board
+      if (worker.ratsnest == null)
+      {
+        worker.ratsnest = new RatsNest(worker.board, this.thread.hdlg.get_locale());
+      }
+      OptimizeRouteTask task = new OptimizeRouteTask(this, worker.board, worker.ratsnest, worker.commit_no, p_item_id, p_pass_no, p_with_preferred_directions, this.min_cumulative_trace_length_before);
+      task.run();
+      ChangeJournal task_changes = task.get_changes();
+      if (task.is_won() && current_board_update_strategy() == BoardUpdateStrategy.GLOBAL_OPTIMAL)
+      {
+        return;
+      }
+      board_reusable = task_changes == null || task_changes.revert(worker.board);
+      if (!task.is_won())
+      {
+        task.clean();
+      }
+    } finally
+    {
+      if (!board_reusable)
+      {
+        worker.board = null;
+      }
     }
+  }
 
-    task_completion_signal.countDown();
-    return won;
+  /**
+   * Returns the board of the current worker thread after transferring the changes committed in the
+   * meantime. The master board is copied, if the thread has no usable board.
+   */
+  private synchronized WorkerBoard get_worker_board()
+  {
+    WorkerBoard result = worker_board.get();
+    if (result != null && result.board != null && synchronize_worker_board(result))
+    {
+      return result;
+    }
+    result = new WorkerBoard(this.thread.hdlg.deep_copy_routing_board(), commits.size());
+    worker_board.set(result);
+    worker_boards.add(result);
+    return result;
   }
 
-  private void update_master_routing_board()
+  /**
+   * Transfers the changes committed since the last synchronization to the board of p_worker.
+   * Returns false, if that was not possible. In this case the board of p_worker is discarded.
+   */
+  private synchronized boolean synchronize_worker_board(WorkerBoard p_worker)
   {
-    this.thread.hdlg.update_routing_board(winning_candidate.routing_board);
-    this.routing_board = this.thread.hdlg.get_routing_board();
+    for (; p_worker.commit_no < commits.size(); ++p_worker.commit_no)
+    {
+      if (!commits.get(p_worker.commit_no).changes.apply_to(p_worker.board, false, false))
+      {
+        p_worker.board = null;
+        return false;
+      }
+    }
+    // the id numbers of items inserted on the worker board must not collide with committed items
+    p_worker.board.communication.id_no_generator.skip_to(this.routing_board.communication.id_no_generator.max_generated_no());
+    return true;
+  }
 
-    this.min_cumulative_trace_length_before = calc_weighted_trace_length(this.routing_board);
+  /**
+   * Brings all worker boards up to date and starts a new list of commits. Must be called, while no
+   * task is running.
+   */
+  private synchronized void synchronize_worker_boards()
+  {
+    worker_boards.removeIf(w -> w.board == null || !synchronize_worker_board(w));
+    for (WorkerBoard curr_worker : worker_boards)
+    {
+      curr_worker.commit_no = 0;
+    }
+    commits.clear();
+  }
 
-    double new_trace_length = this.thread.hdlg.coordinate_transform.board_to_user(this.routing_board.cumulative_trace_length());
-    // this.thread.hdlg.screen_messages.set_post_route_info(this.routing_board.get_vias().size(), new_trace_length, this.thread.hdlg.coordinate_transform.user_unit);
+  /**
+   * Stops the worker threads and releases their boards.
+   */
+  private synchronized void shutdown_workers()
+  {
+    if (pool != null)
+    {
+      pool.shutdownNow();
+      pool = null;
+    }
+    for (WorkerBoard curr_worker : worker_boards)
+    {
+      curr_worker.board = null;
+    }
+    worker_boards.clear();
+    commits.clear();
+  }
+
+  /**
+   * Transfers the changes of p_task to the master board. The changes are rejected, if their bounding
+   * box, enlarged by the clearance margin, intersects the changes committed after the board of
+   * p_task was copied, or if the transferred items have clearance violations on the master board.
+   * Returns false, if the changes were rejected.
+   */
+  private synchronized boolean commit_changes(OptimizeRouteTask p_task)
+  {
+    ChangeJournal task_changes = p_task.get_changes();
+    if (task_changes == null || !task_changes.contains_only_traces_and_vias())
+    {
+      return false;
+    }
+    IntBox changed_box = task_changes.changed_bounding_box();
+    if (changed_box == null)
+    {
+      return true;
+    }
+    IntBox task_region = changed_box.offset(this.region_margin);
+    for (int i = p_task.get_snapshot_no(); i < commits.size(); ++i)
+    {
+      if (task_region.intersects(commits.get(i).region))
+      {
+        ++conflict_count;
+        return false;
+      }
+    }
+    // record the changes on the master board with the new id numbers for the worker boards
+    ChangeJournal master_changes = this.routing_board.start_change_journal();
+    boolean applied = task_changes.apply_to(this.routing_board, true, true);
+    this.routing_board.stop_change_journal(master_changes);
+    if (!applied)
+    {
+      ++conflict_count;
+      return false;
+    }
+    commits.add(new Commit(changed_box, master_changes));
+
+    this.min_cumulative_trace_length_before = calc_weighted_trace_length(this.routing_board);
 
     ++update_count;
+    return true;
   }
 
   private void prepare_next_round_of_route_items()
@@ -221,6 +386,18 @@ public class BatchOptRouteMT extends BatchOptRoute
     result_map.clear();
   }
 
+  @Override
+  public void optimize_board(boolean save_intermediate_stages, float optimization_improvement_threshold, InteractiveActionThread isStopRequested)
+  {
+    try
+    {
+      super.optimize_board(save_intermediate_stages, optimization_improvement_threshold, isStopRequested);
+    } finally
+    {
+      shutdown_workers();
+    }
+  }
+
   @Override
   protected float opt_route_pass(int p_pass_no, boolean p_with_preferred_directions)
   {
@@ -246,58 +423,94 @@ public class BatchOptRouteMT extends BatchOptRoute
 
     best_route_result = new ItemRouteResult(-1);
     winning_candidate = null;
+    synchronize_worker_boards();
+    requeued_item_ids.clear();
+    conflict_count = 0;
+    region_margin = BatchAutorouter.calc_region_margin(this.routing_board);
 
-    pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(thread_pool_size, r ->
+    if (pool == null)
     {
-      Thread t = new Thread(r);
-      t.setUncaughtExceptionHandler((t1, e) -> FRLogger.error("Exception in thread pool worker thread: " + t1, e));
-      return t;
-    });
-
-    for (int t = 0; t < item_ids.size(); t++)
-    {
-      // each task needs a copy of routing_board, so schedule just enough tasks
-      // to keep workers busy in order not to exhaust JVM memory so that
-      // it can run on systems without huge amount of RAM
-      int item_id = item_ids.get(t);
-      FRLogger.debug("Scheduling task #" + (t + 1) + " of " + item_ids.size() + " for item #" + item_id + ".");
-
-      pool.execute(new OptimizeRouteTask(this, item_id, p_pass_no, p_with_preferred_directions, this.min_cumulative_trace_length_before));
+      pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(thread_pool_size, r ->
+      {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        t.setUncaughtExceptionHandler((t1, e) -> FRLogger.error("Exception in thread pool worker thread: " + t1, e));
+        return t;
+      });
     }
 
-    FRLogger.debug("All items are queued for execution, waiting for the tasks to finish.");
-    pool.shutdown();
-
+    // Each worker thread routes on its own copy of the board, so the memory usage depends only on
+    // the number of threads. The number of scheduled tasks is limited to keep the commits, which a
+    // task has not yet seen, few.
+    int max_tasks_in_flight = thread_pool_size * MAX_TASKS_IN_FLIGHT_PER_THREAD;
+    ArrayList<Integer> curr_item_ids = item_ids;
     boolean interrupted = false;
 
-    try
+    for (int round_no = 0; ; ++round_no)
     {
-      int i = 0;
-      while (!pool.awaitTermination(1, TimeUnit.SECONDS))
+      Semaphore task_slots = new Semaphore(max_tasks_in_flight);
+      try
       {
-        FRLogger.debug("Running route optimizer on " + pool.getActiveCount() + " thread(s). Completed " + pool.getCompletedTaskCount() + " of " + pool.getTaskCount() + " tasks.");
+        for (int t = 0; t < curr_item_ids.size(); t++)
+        {
+          while (!task_slots.tryAcquire(1, TimeUnit.SECONDS))
+          {
+            if (this.thread.is_stop_requested())
+            {
+              shutdown_workers();
+              return best_route_result.improvement_percentage();
+            }
+          }
+          int item_id = curr_item_ids.get(t);
+          FRLogger.debug("Scheduling task #" + (t + 1) + " of " + curr_item_ids.size() + " for item #" + item_id + ".");
+
+          pool.execute(() ->
+          {
+            try
+            {
+              run_task(item_id, p_pass_no, p_with_preferred_directions);
+            } finally
+            {
+              task_slots.release();
+            }
+          });
+        }
 
-        if (this.thread.is_stop_requested())
+        FRLogger.debug("All items are queued for execution, waiting for the tasks to finish.");
+
+        while (!task_slots.tryAcquire(max_tasks_in_flight, 1, TimeUnit.SECONDS))
         {
-          pool.shutdownNow();
-          return best_route_result.improvement_percentage();
+          FRLogger.debug("Running route optimizer on " + pool.getActiveCount() + " thread(s). Finished " + num_tasks_finished + " tasks in this pass.");
+
+          if (this.thread.is_stop_requested())
+          {
+            shutdown_workers();
+            return best_route_result.improvement_percentage();
+          }
         }
-      }
-    } catch (InterruptedException ie)
-    {
-      FRLogger.error("Exception with pool.awaitTermination", ie);
+      } catch (InterruptedException ie)
+      {
+        FRLogger.error("Exception while waiting for the route optimizer tasks", ie);
 
-      interrupted = true;
-      pool.shutdownNow();
+        interrupted = true;
+        shutdown_workers();
 
-      // Thread.currentThread().interrupt(); // Preserve interrupt status
-    }
+        // Thread.currentThread().interrupt(); // Preserve interrupt status
+      }
 
-    pool = null;
+      if (interrupted || requeued_item_ids.isEmpty() || round_no >= MAX_REQUEUE_ROUNDS)
+      {
+        break;
+      }
+      curr_item_ids = new ArrayList<>(requeued_item_ids);
+      requeued_item_ids.clear();
+      FRLogger.debug("Scheduling " + curr_item_ids.size() + " items again, whose changes conflicted with changes committed in the meantime.");
+    }
 
-    if (!interrupted && best_route_result.improved() && current_board_update_strategy() == BoardUpdateStrategy.GLOBAL_OPTIMAL)
+    if (!interrupted && best_route_result.improved() && current_board_update_strategy() == BoardUpdateStrategy.GLOBAL_OPTIMAL && !commit_changes(winning_candidate))
     {
-      update_master_routing_board();
+      FRLogger.warn("BatchOptRouteMT.opt_route_pass: the changes of the best task could not be transferred to the board");
+      best_route_result = new ItemRouteResult(-1);
     }
 
     float route_improved = best_route_result.improvement_percentage();
@@ -316,11 +529,58 @@ public class BatchOptRouteMT extends BatchOptRoute
     String is = current_item_selection_strategy() == ItemSelectionStrategy.SEQUENTIAL ? "Sequential" : (current_item_selection_strategy() == ItemSelectionStrategy.RANDOM ? "Random" : "Prioritized");
     double user_trace_length_after = this.thread.hdlg.coordinate_transform.board_to_user(this.routing_board.cumulative_trace_length());
 
-    FRLogger.debug("Finished pass #" + p_pass_no + " in " + minutes + " minutes " + sec + " seconds with " + update_count + " board updates using " + thread_pool_size + " thread(s) with '" + us + "' strategy and '" + is + "' item selection strategy.");
+    FRLogger.debug("Finished pass #" + p_pass_no + " in " + minutes + " minutes " + sec + " seconds with " + update_count + " board updates using " + thread_pool_size + " thread(s) with '" + us + "' strategy and '" + is + "' item selection strategy. " + conflict_count + " conflicting changes were rejected.");
     FRLogger.debug("Route optimizer pass summary - Improved: " + best_route_result.improved() + ", interrupted: " + interrupted + ", via count: " + best_route_result.via_count() + ", trace length: " + (int) user_trace_length_after + ", via count delta: " + (via_count_before - best_route_result.via_count()) + ", trace length delta: " + (int) (user_trace_length_before - user_trace_length_after) + ".");
 
     FRLogger.traceExit(optimizationPassId);
 
     return route_improved;
   }
-}
\ No newline at end of file
+
+  /**
+   * A change committed to the master board.
+   */
+  private static class Commit
+  {
+    /**
+     * The bounding box of the changed items before and after the change.
+     */
+    final IntBox region;
+    /**
+     * The changes recorded on the master board.
+     */
+    final ChangeJournal changes;
+
+    Commit(IntBox p_region, ChangeJournal p_changes)
+    {
+      region = p_region;
+      changes = p_changes;
+    }
+  }
+
+  /**
+   * A copy of the master board owned by a worker thread, which is kept up to date by transferring
+   * the committed changes.
+   */
+  private static class WorkerBoard
+  {
+    /**
+     * Null, if the board was discarded.
+     */
+    RoutingBoard board;
+    /**
+     * The number of commits of the current pass contained in the board.
+     */
+    int commit_no;
+    /**
+     * The ratsnest of the board, created with the first task.
+     */
+    RatsNest ratsnest;
+
+    WorkerBoard(RoutingBoard p_board, int p_commit_no)
+    {
+      board = p_board;
+      commit_no = p_commit_no;
+    }
+  }
+}
@@ -6,18 +6,25 @@ import app.freerouting.geometry.planar.IntBox;
 import app.freerouting.geometry.planar.TileShape;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Describes the 2 dimensional array of pages of ExpansionDrill`s used in the maze search algorithm.
  * The pages are rectangles of about equal width and height covering the bounding box of
- * the board area.
+ * the board area. The array is sparse: the rows are allocated and the pages are created, when
+ * they are overlapped by an expansion room for the first time, so that the memory and the time for
+ * resetting the pages depend only on the area explored by the maze search. The pages belong to a
+ * single AutorouteEngine and are not recycled across engines, because the drills of a page are
+ * calculated for the net of the engine and reference its expansion rooms.
  */
 public class DrillPageArray
 {
 
   private final IntBox bounds;
+  private final RoutingBoard board;
   /**
    * The number of columns in the array.
    */
@@ -34,7 +41,14 @@ public class DrillPageArray
    * The height of a single page in this array.
    */
   private final int PAGE_HEIGHT;
+  /**
+   * The rows of pages. A row is null, until a page in it is created.
+   */
   private final DrillPage[][] page_arr;
+  /**
+   * The pages created so far.
+   */
+  private final List<DrillPage> created_pages = new ArrayList<>();
 
   /**
    * Creates a new instance of DrillPageArray
@@ -42,57 +56,55 @@ public class DrillPageArray
   public DrillPageArray(RoutingBoard p_board, int p_max_page_width)
   {
     this.bounds = p_board.bounding_box;
+    this.board = p_board;
     double length = bounds.ur.x - bounds.ll.x;
     double height = bounds.ur.y - bounds.ll.y;
     this.COLUMN_COUNT = (int) Math.ceil(length / p_max_page_width);
     this.ROW_COUNT = (int) Math.ceil(height / p_max_page_width);
     this.PAGE_WIDTH = (int) Math.ceil(length / COLUMN_COUNT);
     this.PAGE_HEIGHT = (int) Math.ceil(height / ROW_COUNT);
-    this.page_arr = new DrillPage[ROW_COUNT][COLUMN_COUNT];
-    for (int j = 0; j < this.ROW_COUNT; ++j)
-    {
-      for (int i = 0; i < this.COLUMN_COUNT; ++i)
-      {
-        int ll_x = bounds.ll.x + i * PAGE_WIDTH;
-        int ur_x;
-        if (i == COLUMN_COUNT - 1)
-        {
-          ur_x = bounds.ur.x;
-        }
-        else
-        {
-          ur_x = ll_x + PAGE_WIDTH;
-        }
-        int ll_y = bounds.ll.y + j * PAGE_HEIGHT;
-        int ur_y;
-        if (j == ROW_COUNT - 1)
-        {
-          ur_y = bounds.ur.y;
-        }
-        else
-        {
-          ur_y = ll_y + PAGE_HEIGHT;
-        }
-        page_arr[j][i] = new DrillPage(new IntBox(ll_x, ll_y, ur_x, ur_y), p_board);
-      }
-    }
+    this.page_arr = new DrillPage[ROW_COUNT][];
   }
 
   /**
    * Invalidates all drill pages intersecting with p_shape, so they must be recalculated at the
-   * next call of get_ddrills()
+   * next call of get_ddrills(). Pages not yet created are skipped, because they have no drills.
    */
   public void invalidate(TileShape p_shape)
   {
-    Collection<DrillPage> overlaps = overlapping_pages(p_shape);
-    for (DrillPage curr_page : overlaps)
+    if (created_pages.isEmpty())
+    {
+      return;
+    }
+    IntBox shape_box = p_shape.bounding_box().intersection(this.bounds);
+
+    int min_j = (int) Math.floor(((double) (shape_box.ll.y - bounds.ll.y)) / (double) PAGE_HEIGHT);
+    double max_j = ((double) (shape_box.ur.y - bounds.ll.y)) / (double) PAGE_HEIGHT;
+
+    int min_i = (int) Math.floor(((double) (shape_box.ll.x - bounds.ll.x)) / (double) PAGE_WIDTH);
+    double max_i = ((double) (shape_box.ur.x - bounds.ll.x)) / (double) PAGE_WIDTH;
+
+    for (int j = min_j; j < max_j; ++j)
     {
-      curr_page.invalidate();
+      DrillPage[] curr_row = this.page_arr[j];
+      if (curr_row == null)
+      {
+        continue;
+      }
+      for (int i = min_i; i < max_i; ++i)
+      {
+        DrillPage curr_page = curr_row[i];
+        if (curr_page != null && p_shape.intersection(curr_page.shape).dimension() > 1)
+        {
+          curr_page.invalidate();
+        }
+      }
     }
   }
 
   /**
-   * Collects all drill pages with a 2-dimensional overlap with p_shape.
+   * Collects all drill pages with a 2-dimensional overlap with p_shape. Creates the pages, which do
+   * not yet exist.
    */
   public Collection<DrillPage> overlapping_pages(TileShape p_shape)
   {
@@ -110,11 +122,16 @@ public class DrillPageArray
     {
       for (int i = min_i; i < max_i; ++i)
       {
-        DrillPage curr_page = this.page_arr[j][i];
-        TileShape intersection = p_shape.intersection(curr_page.shape);
+        DrillPage curr_page = this.page_arr[j] == null ? null : this.page_arr[j][i];
+        IntBox page_shape = curr_page == null ? page_shape(i, j) : curr_page.shape;
+        TileShape intersection = p_shape.intersection(page_shape);
         if (intersection.dimension() > 1)
         {
-          result.add(this.page_arr[j][i]);
+          if (curr_page == null)
+          {
+            curr_page = create_page(i, j, page_shape);
+          }
+          result.add(curr_page);
         }
       }
     }
@@ -126,13 +143,9 @@ public class DrillPageArray
    */
   public void reset()
   {
-    for (int j = 0; j < page_arr.length; ++j)
+    for (DrillPage curr_page : created_pages)
     {
-      DrillPage[] curr_row = page_arr[j];
-      for (int i = 0; i < curr_row.length; ++i)
-      {
-        curr_row[i].reset();
-      }
+      curr_page.reset();
     }
   }
 
@@ -141,13 +154,49 @@ public class DrillPageArray
    */
   public void draw(Graphics p_graphics, GraphicsContext p_graphics_context, double p_intensity)
   {
-    for (int j = 0; j < page_arr.length; ++j)
+    for (DrillPage curr_page : created_pages)
     {
-      DrillPage[] curr_row = page_arr[j];
-      for (int i = 0; i < curr_row.length; ++i)
-      {
-        curr_row[i].draw(p_graphics, p_graphics_context, p_intensity);
-      }
+      curr_page.draw(p_graphics, p_graphics_context, p_intensity);
+    }
+  }
+
+  /**
+   * Returns the rectangle of the page in column p_i and row p_j.
+   */
+  private IntBox page_shape(int p_i, int p_j)
+  {
+    int ll_x = bounds.ll.x + p_i * PAGE_WIDTH;
+    int ur_x;
+    if (p_i == COLUMN_COUNT - 1)
+    {
+      ur_x = bounds.ur.x;
+    }
+    else
+    {
+      ur_x = ll_x + PAGE_WIDTH;
+    }
+    int ll_y = bounds.ll.y + p_j * PAGE_HEIGHT;
+    int ur_y;
+    if (p_j == ROW_COUNT - 1)
+    {
+      ur_y = bounds.ur.y;
+    }
+    else
+    {
+      ur_y = ll_y + PAGE_HEIGHT;
+    }
+    return new IntBox(ll_x, ll_y, ur_x, ur_y);
+  }
+
+  private DrillPage create_page(int p_i, int p_j, IntBox p_shape)
+  {
+    if (this.page_arr[p_j] == null)
+    {
+      this.page_arr[p_j] = new DrillPage[COLUMN_COUNT];
     }
+    DrillPage new_page = new DrillPage(p_shape, this.board);
+    this.page_arr[p_j][p_i] = new_page;
+    this.created_pages.add(new_page);
+    return new_page;
   }
-}
\ No newline at end of file
+}
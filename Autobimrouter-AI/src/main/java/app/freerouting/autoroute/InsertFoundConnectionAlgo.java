@@ -96,92 +96,94 @@ public class InsertFoundConnectionAlgo
 
     // switch off correcting connection to pin because it may get wrong in inserting the polygon
     // line for line.
-    double saved_edge_to_turn_dist = board.rules.get_pin_edge_to_turn_dist();
-    board.rules.set_pin_edge_to_turn_dist(-1);
-
-    // Look for pins att the start and the end of p_trace in case that neckdown is necessary.
-    Pin start_pin = null;
-    Pin end_pin = null;
-    if (ctrl.with_neckdown)
+    board.rules.suspend_pin_edge_to_turn_dist();
+    try
     {
-      ItemSelectionFilter item_filter = new ItemSelectionFilter(ItemSelectionFilter.SelectableChoices.PINS);
-      Point curr_end_corner = p_trace.corners[0];
-      for (int i = 0; i < 2; ++i)
+      // Look for pins att the start and the end of p_trace in case that neckdown is necessary.
+      Pin start_pin = null;
+      Pin end_pin = null;
+      if (ctrl.with_neckdown)
       {
-        Set<Item> picked_items = this.board.pick_items(curr_end_corner, p_trace.layer, item_filter);
-        for (Item curr_item : picked_items)
+        ItemSelectionFilter item_filter = new ItemSelectionFilter(ItemSelectionFilter.SelectableChoices.PINS);
+        Point curr_end_corner = p_trace.corners[0];
+        for (int i = 0; i < 2; ++i)
         {
-          Pin curr_pin = (Pin) curr_item;
-          if (curr_pin.contains_net(ctrl.net_no) && curr_pin.get_center().equals(curr_end_corner))
+          Set<Item> picked_items = this.board.pick_items(curr_end_corner, p_trace.layer, item_filter);
+          for (Item curr_item : picked_items)
           {
-            if (i == 0)
-            {
-              start_pin = curr_pin;
-            }
-            else
+            Pin curr_pin = (Pin) curr_item;
+            if (curr_pin.contains_net(ctrl.net_no) && curr_pin.get_center().equals(curr_end_corner))
             {
-              end_pin = curr_pin;
+              if (i == 0)
+              {
+                start_pin = curr_pin;
+              }
+              else
+              {
+                end_pin = curr_pin;
+              }
             }
           }
+          curr_end_corner = p_trace.corners[p_trace.corners.length - 1];
         }
-        curr_end_corner = p_trace.corners[p_trace.corners.length - 1];
       }
-    }
-    int[] net_no_arr = new int[1];
-    net_no_arr[0] = ctrl.net_no;
+      int[] net_no_arr = new int[1];
+      net_no_arr[0] = ctrl.net_no;
 
-    int from_corner_no = 0;
-    for (int i = 1; i < p_trace.corners.length; ++i)
-    {
-      Point[] curr_corner_arr = Arrays.copyOfRange(p_trace.corners, from_corner_no, i + 1);
-      Polyline insert_polyline = new Polyline(curr_corner_arr);
-      Point ok_point = board.insert_forced_trace_polyline(insert_polyline, ctrl.trace_half_width[p_trace.layer], p_trace.layer, net_no_arr, ctrl.trace_clearance_class_no, ctrl.max_shove_trace_recursion_depth, ctrl.max_shove_via_recursion_depth, ctrl.max_spring_over_recursion_depth, Integer.MAX_VALUE, ctrl.pull_tight_accuracy, true, null);
-      boolean neckdown_inserted = false;
-      if (ok_point != null && ok_point != insert_polyline.last_corner() && ctrl.with_neckdown && curr_corner_arr.length == 2)
+      int from_corner_no = 0;
+      for (int i = 1; i < p_trace.corners.length; ++i)
       {
-        neckdown_inserted = insert_neckdown(ok_point, curr_corner_arr[1], p_trace.layer, start_pin, end_pin);
-      }
-      if (ok_point == insert_polyline.last_corner() || neckdown_inserted)
-      {
-        from_corner_no = i;
-      }
-      else if (ok_point == insert_polyline.first_corner() && i != p_trace.corners.length - 1)
-      {
-        // if ok_point == insert_polyline.first_corner() the spring over may have failed.
-        // Spring over may correct the situation because an insertion, which is ok with clearance
-        // compensation
-        // may cause violations without clearance compensation.
-        // In this case repeating the insertion with more distant corners may allow the spring_over
-        // to correct the situation.
-        if (from_corner_no > 0)
+        Point[] curr_corner_arr = Arrays.copyOfRange(p_trace.corners, from_corner_no, i + 1);
+        Polyline insert_polyline = new Polyline(curr_corner_arr);
+        Point ok_point = board.insert_forced_trace_polyline(insert_polyline, ctrl.trace_half_width[p_trace.layer], p_trace.layer, net_no_arr, ctrl.trace_clearance_class_no, ctrl.max_shove_trace_recursion_depth, ctrl.max_shove_via_recursion_depth, ctrl.max_spring_over_recursion_depth, Integer.MAX_VALUE, ctrl.pull_tight_accuracy, true, null);
+        boolean neckdown_inserted = false;
+        if (ok_point != null && ok_point != insert_polyline.last_corner() && ctrl.with_neckdown && curr_corner_arr.length == 2)
         {
-          // p_trace.corners[i] may be inside the offset for the substitute trace around
-          // a spring_over obstacle (if clearance compensation is off).
-          if (curr_corner_arr.length < 3)
+          neckdown_inserted = insert_neckdown(ok_point, curr_corner_arr[1], p_trace.layer, start_pin, end_pin);
+        }
+        if (ok_point == insert_polyline.last_corner() || neckdown_inserted)
+        {
+          from_corner_no = i;
+        }
+        else if (ok_point == insert_polyline.first_corner() && i != p_trace.corners.length - 1)
+        {
+          // if ok_point == insert_polyline.first_corner() the spring over may have failed.
+          // Spring over may correct the situation because an insertion, which is ok with clearance
+          // compensation
+          // may cause violations without clearance compensation.
+          // In this case repeating the insertion with more distant corners may allow the spring_over
+          // to correct the situation.
+          if (from_corner_no > 0)
           {
-            // first correction
-            --from_corner_no;
+            // p_trace.corners[i] may be inside the offset for the substitute trace around
+            // a spring_over obstacle (if clearance compensation is off).
+            if (curr_corner_arr.length < 3)
+            {
+              // first correction
+              --from_corner_no;
+            }
           }
+          FRLogger.trace("InsertFoundConnectionAlgo: violation corrected");
+        }
+        else
+        {
+          result = false;
+          break;
         }
-        FRLogger.trace("InsertFoundConnectionAlgo: violation corrected");
-      }
-      else
-      {
-        result = false;
-        break;
       }
-    }
 
-    for (int i = 0; i < p_trace.corners.length - 1; ++i)
-    {
-      Trace trace_stub = board.get_trace_tail(p_trace.corners[i], p_trace.layer, net_no_arr);
-      if (trace_stub != null)
+      for (int i = 0; i < p_trace.corners.length - 1; ++i)
       {
-        board.remove_item(trace_stub);
+        Trace trace_stub = board.get_trace_tail(p_trace.corners[i], p_trace.layer, net_no_arr);
+        if (trace_stub != null)
+        {
+          board.remove_item(trace_stub);
+        }
       }
+    } finally
+    {
+      board.rules.resume_pin_edge_to_turn_dist();
     }
-
-    board.rules.set_pin_edge_to_turn_dist(saved_edge_to_turn_dist);
     if (this.first_corner == null)
     {
       this.first_corner = p_trace.corners[0];
@@ -0,0 +1,224 @@
+package app.freerouting.autoroute;
+
+import app.freerouting.geometry.planar.FloatLine;
+
+import java.util.Arrays;
+
+/**
+ * The priority queue of the maze search algorithm, sorted in ascending order by the sorting value
+ * of the elements. The elements are stored column by column in parallel arrays instead of
+ * MazeListElement objects, and the arrays are reused for the following searches of the same
+ * AutorouteEngine. The heap is a binary heap with the same sift order as java.util.PriorityQueue, so
+ * that elements with equal sorting values are removed in the same order as before.
+ */
+class MazeExpansionList
+{
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * The slot numbers of the elements in heap order.
+   */
+  private int[] heap = new int[INITIAL_CAPACITY];
+  /**
+   * The sorting values of the elements in heap order, kept beside the heap to avoid an indirection
+   * in the comparisons.
+   */
+  private double[] heap_keys = new double[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * The stack of unused slot numbers below slot_count.
+   */
+  private int[] free_slots = new int[INITIAL_CAPACITY];
+  private int free_slot_count = 0;
+  private int slot_count = 0;
+
+  private ExpandableObject[] door_arr = new ExpandableObject[INITIAL_CAPACITY];
+  private int[] section_no_of_door_arr = new int[INITIAL_CAPACITY];
+  private ExpandableObject[] backtrack_door_arr = new ExpandableObject[INITIAL_CAPACITY];
+  private int[] section_no_of_backtrack_door_arr = new int[INITIAL_CAPACITY];
+  private double[] expansion_value_arr = new double[INITIAL_CAPACITY];
+  private CompleteExpansionRoom[] next_room_arr = new CompleteExpansionRoom[INITIAL_CAPACITY];
+  private FloatLine[] shape_entry_arr = new FloatLine[INITIAL_CAPACITY];
+  private MazeSearchElement.Adjustment[] adjustment_arr = new MazeSearchElement.Adjustment[INITIAL_CAPACITY];
+  /**
+   * Bit 0 is the room_ripped flag and bit 1 the already_checked flag of an element.
+   */
+  private byte[] flags_arr = new byte[INITIAL_CAPACITY];
+
+  /**
+   * The element returned by poll. It is overwritten by the next call of poll.
+   */
+  private final MazeListElement polled_element = new MazeListElement(null, 0, null, 0, 0, 0, null, null, false, MazeSearchElement.Adjustment.NONE, false);
+
+  boolean is_empty()
+  {
+    return size == 0;
+  }
+
+  int size()
+  {
+    return size;
+  }
+
+  /**
+   * Inserts a new element with the input values into the queue.
+   */
+  void add(ExpandableObject p_door, int p_section_no_of_door, ExpandableObject p_backtrack_door, int p_section_no_of_backtrack_door, double p_expansion_value, double p_sorting_value, CompleteExpansionRoom p_next_room, FloatLine p_shape_entry, boolean p_room_ripped, MazeSearchElement.Adjustment p_adjustment, boolean p_already_checked)
+  {
+    int slot;
+    if (free_slot_count > 0)
+    {
+      slot = free_slots[--free_slot_count];
+    }
+    else
+    {
+      if (slot_count >= door_arr.length)
+      {
+        grow_slots();
+      }
+      slot = slot_count++;
+    }
+    door_arr[slot] = p_door;
+    section_no_of_door_arr[slot] = p_section_no_of_door;
+    backtrack_door_arr[slot] = p_backtrack_door;
+    section_no_of_backtrack_door_arr[slot] = p_section_no_of_backtrack_door;
+    expansion_value_arr[slot] = p_expansion_value;
+    next_room_arr[slot] = p_next_room;
+    shape_entry_arr[slot] = p_shape_entry;
+    adjustment_arr[slot] = p_adjustment;
+    flags_arr[slot] = (byte) ((p_room_ripped ? 1 : 0) | (p_already_checked ? 2 : 0));
+
+    if (size >= heap.length)
+    {
+      heap = Arrays.copyOf(heap, 2 * heap.length);
+      heap_keys = Arrays.copyOf(heap_keys, heap.length);
+    }
+    sift_up(size++, slot, p_sorting_value);
+  }
+
+  /**
+   * Removes the element with the smallest sorting value from the queue and returns it. The returned
+   * object is reused by the next call of poll, so its values must be used before. Returns null, if
+   * the queue is empty.
+   */
+  MazeListElement poll()
+  {
+    if (size == 0)
+    {
+      return null;
+    }
+    int slot = heap[0];
+    double sorting_value = heap_keys[0];
+    int n = --size;
+    if (n > 0)
+    {
+      sift_down(0, heap[n], heap_keys[n], n);
+    }
+    MazeListElement result = this.polled_element;
+    int flags = flags_arr[slot];
+    result.door = door_arr[slot];
+    result.section_no_of_door = section_no_of_door_arr[slot];
+    result.backtrack_door = backtrack_door_arr[slot];
+    result.section_no_of_backtrack_door = section_no_of_backtrack_door_arr[slot];
+    result.expansion_value = expansion_value_arr[slot];
+    result.sorting_value = sorting_value;
+    result.next_room = next_room_arr[slot];
+    result.shape_entry = shape_entry_arr[slot];
+    result.room_ripped = (flags & 1) != 0;
+    result.adjustment = adjustment_arr[slot];
+    result.already_checked = (flags & 2) != 0;
+    release_slot(slot);
+    return result;
+  }
+
+  /**
+   * Removes all elements. The allocated arrays are kept for the next search.
+   */
+  void clear()
+  {
+    Arrays.fill(door_arr, 0, slot_count, null);
+    Arrays.fill(backtrack_door_arr, 0, slot_count, null);
+    Arrays.fill(next_room_arr, 0, slot_count, null);
+    Arrays.fill(shape_entry_arr, 0, slot_count, null);
+    Arrays.fill(adjustment_arr, 0, slot_count, null);
+    size = 0;
+    slot_count = 0;
+    free_slot_count = 0;
+    polled_element.door = null;
+    polled_element.backtrack_door = null;
+    polled_element.next_room = null;
+    polled_element.shape_entry = null;
+  }
+
+  private void release_slot(int p_slot)
+  {
+    // drop the references, so that the board objects of a finished search can be collected
+    door_arr[p_slot] = null;
+    backtrack_door_arr[p_slot] = null;
+    next_room_arr[p_slot] = null;
+    shape_entry_arr[p_slot] = null;
+    adjustment_arr[p_slot] = null;
+    if (free_slot_count >= free_slots.length)
+    {
+      free_slots = Arrays.copyOf(free_slots, 2 * free_slots.length);
+    }
+    free_slots[free_slot_count++] = p_slot;
+  }
+
+  private void sift_up(int p_pos, int p_slot, double p_key)
+  {
+    int k = p_pos;
+    while (k > 0)
+    {
+      int parent = (k - 1) >>> 1;
+      if (Double.compare(p_key, heap_keys[parent]) >= 0)
+      {
+        break;
+      }
+      heap[k] = heap[parent];
+      heap_keys[k] = heap_keys[parent];
+      k = parent;
+    }
+    heap[k] = p_slot;
+    heap_keys[k] = p_key;
+  }
+
+  private void sift_down(int p_pos, int p_slot, double p_key, int p_size)
+  {
+    int k = p_pos;
+    int half = p_size >>> 1;
+    while (k < half)
+    {
+      int child = 2 * k + 1;
+      int right = child + 1;
+      if (right < p_size && Double.compare(heap_keys[child], heap_keys[right]) > 0)
+      {
+        child = right;
+      }
+      if (Double.compare(p_key, heap_keys[child]) <= 0)
+      {
+        break;
+      }
+      heap[k] = heap[child];
+      heap_keys[k] = heap_keys[child];
+      k = child;
+    }
+    heap[k] = p_slot;
+    heap_keys[k] = p_key;
+  }
+
+  private void grow_slots()
+  {
+    int new_length = 2 * door_arr.length;
+    door_arr = Arrays.copyOf(door_arr, new_length);
+    section_no_of_door_arr = Arrays.copyOf(section_no_of_door_arr, new_length);
+    backtrack_door_arr = Arrays.copyOf(backtrack_door_arr, new_length);
+    section_no_of_backtrack_door_arr = Arrays.copyOf(section_no_of_backtrack_door_arr, new_length);
+    expansion_value_arr = Arrays.copyOf(expansion_value_arr, new_length);
+    next_room_arr = Arrays.copyOf(next_room_arr, new_length);
+    shape_entry_arr = Arrays.copyOf(shape_entry_arr, new_length);
+    adjustment_arr = Arrays.copyOf(adjustment_arr, new_length);
+    flags_arr = Arrays.copyOf(flags_arr, new_length);
+  }
+}
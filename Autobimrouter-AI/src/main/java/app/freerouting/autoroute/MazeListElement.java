@@ -4,7 +4,8 @@ import app.freerouting.geometry.planar.FloatLine;
 
 /**
  * Information for the maze expand Algorithm contained in expansion doors and drills while the maze
- * expanding algorithm is in progress.
+ * expanding algorithm is in progress. The elements of the expansion list are stored in a
+ * MazeExpansionList, which fills a reused instance of this class when an element is removed.
  */
 public class MazeListElement implements Comparable<MazeListElement>
 {
@@ -12,40 +13,40 @@ public class MazeListElement implements Comparable<MazeListElement>
   /**
    * The door or drill belonging to this MazeListElement
    */
-  final ExpandableObject door;
+  ExpandableObject door;
   /**
    * The section number of the door (or the layer of the drill)
    */
-  final int section_no_of_door;
+  int section_no_of_door;
   /**
    * The door, from which this door was expanded
    */
-  final ExpandableObject backtrack_door;
+  ExpandableObject backtrack_door;
   /**
    * The section number of the backtrack door
    */
-  final int section_no_of_backtrack_door;
+  int section_no_of_backtrack_door;
   /**
    * The weighted distance to the start of the expansion
    */
-  final double expansion_value;
+  double expansion_value;
   /**
    * The expansion value plus the shortest distance to a destination. The list is sorted in
    * ascending order by this value.
    */
-  final double sorting_value;
+  double sorting_value;
   /**
    * The next room, which will be expanded from this maze search element
    */
-  final CompleteExpansionRoom next_room;
+  CompleteExpansionRoom next_room;
   /**
    * Point of the region of the expansion door, which has the shortest distance to the backtrack
    * door.
    */
-  final FloatLine shape_entry;
-  final boolean room_ripped;
-  final MazeSearchElement.Adjustment adjustment;
-  final boolean already_checked;
+  FloatLine shape_entry;
+  boolean room_ripped;
+  MazeSearchElement.Adjustment adjustment;
+  boolean already_checked;
 
   /**
    * Creates a new instance of ExpansionInfo
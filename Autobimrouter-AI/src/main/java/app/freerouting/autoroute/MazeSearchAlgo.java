@@ -22,7 +22,7 @@ public class MazeSearchAlgo
   /**
    * The queue of expanded elements used in this search algorithm.
    */
-  final PriorityQueue<MazeListElement> maze_expansion_list;
+  final MazeExpansionList maze_expansion_list;
 
   /**
    * Used for calculating of a good lower bound for the distance between a new MazeExpansionElement
@@ -49,7 +49,8 @@ public class MazeSearchAlgo
     ctrl = p_ctrl;
     random_generator.setSeed(p_ctrl.ripup_costs); // To get reproducible random numbers in the ripup algorithm.
     this.search_tree = p_autoroute_engine.autoroute_search_tree;
-    maze_expansion_list = new PriorityQueue<>(Comparator.comparingDouble(o -> o.sorting_value));
+    maze_expansion_list = p_autoroute_engine.maze_expansion_list;
+    maze_expansion_list.clear();
     destination_distance = new DestinationDistance(ctrl.trace_costs, ctrl.layer_active, ctrl.min_normal_via_cost, ctrl.min_cheap_via_cost);
   }
 
@@ -227,17 +228,15 @@ public class MazeSearchAlgo
     MazeSearchElement curr_door_section = null;
     // Search the next element, which is not yet expanded.
     boolean next_element_found = false;
-    while (!maze_expansion_list.isEmpty())
+    while (!maze_expansion_list.is_empty())
     {
       if (this.autoroute_engine.is_stop_requested())
       {
         return false;
       }
-      Iterator<MazeListElement> it = maze_expansion_list.iterator();
-      list_element = it.next();
+      list_element = maze_expansion_list.poll();
       int curr_section_no = list_element.section_no_of_door;
       curr_door_section = list_element.door.get_maze_search_element(curr_section_no);
-      it.remove();
       if (!curr_door_section.is_occupied)
       {
         next_element_found = true;
@@ -445,8 +444,7 @@ public class MazeSearchAlgo
               if (ripup_costs > 0)
               {
                 // delay the occupation by ripup to allow shoving the room by another door sections.
-                MazeListElement new_element = new MazeListElement(p_list_element.door, p_list_element.section_no_of_door, p_list_element.backtrack_door, p_list_element.section_no_of_backtrack_door, p_list_element.expansion_value + ripup_costs, p_list_element.sorting_value + ripup_costs, p_list_element.next_room, p_list_element.shape_entry, true, p_list_element.adjustment, true);
-                this.maze_expansion_list.add(new_element);
+                this.maze_expansion_list.add(p_list_element.door, p_list_element.section_no_of_door, p_list_element.backtrack_door, p_list_element.section_no_of_backtrack_door, p_list_element.expansion_value + ripup_costs, p_list_element.sorting_value + ripup_costs, p_list_element.next_room, p_list_element.shape_entry, true, p_list_element.adjustment, true);
               }
               return something_expanded;
             }
@@ -673,8 +671,7 @@ public class MazeSearchAlgo
     double sorting_value = expansion_value + this.destination_distance.calculate(shape_entry_middle, layer);
     boolean room_ripped = p_add_costs > 0 && p_adjustment == MazeSearchElement.Adjustment.NONE || p_from_element.already_checked && p_from_element.room_ripped;
 
-    MazeListElement new_element = new MazeListElement(p_door, p_section_no, p_from_element.door, p_from_element.section_no_of_door, expansion_value, sorting_value, next_room, p_shape_entry, room_ripped, p_adjustment, false);
-    this.maze_expansion_list.add(new_element);
+    this.maze_expansion_list.add(p_door, p_section_no, p_from_element.door, p_from_element.section_no_of_door, expansion_value, sorting_value, next_room, p_shape_entry, room_ripped, p_adjustment, false);
     return true;
   }
 
@@ -730,8 +727,7 @@ public class MazeSearchAlgo
       expansion_value += ctrl.min_normal_via_cost;
     }
     double sorting_value = expansion_value + this.destination_distance.calculate(nearest_point, layer);
-    MazeListElement new_element = new MazeListElement(p_drill, section_no, new_backtrack_door, new_section_no_of_backtrack_door, expansion_value, sorting_value, null, shape_entry, p_from_element.room_ripped, MazeSearchElement.Adjustment.NONE, false);
-    this.maze_expansion_list.add(new_element);
+    this.maze_expansion_list.add(p_drill, section_no, new_backtrack_door, new_section_no_of_backtrack_door, expansion_value, sorting_value, null, shape_entry, p_from_element.room_ripped, MazeSearchElement.Adjustment.NONE, false);
   }
 
   /**
@@ -746,8 +742,7 @@ public class MazeSearchAlgo
     FloatPoint nearest_point = p_drill_page.shape.nearest_point(from_element_shape_entry_middle);
     double expansion_value = p_from_element.expansion_value + ctrl.min_normal_via_cost;
     double sorting_value = expansion_value + nearest_point.weighted_distance(from_element_shape_entry_middle, ctrl.trace_costs[layer].horizontal, ctrl.trace_costs[layer].vertical) + this.destination_distance.calculate(nearest_point, layer);
-    MazeListElement new_element = new MazeListElement(p_drill_page, layer, p_from_element.door, p_from_element.section_no_of_door, expansion_value, sorting_value, p_from_element.next_room, p_from_element.shape_entry, p_from_element.room_ripped, MazeSearchElement.Adjustment.NONE, false);
-    this.maze_expansion_list.add(new_element);
+    this.maze_expansion_list.add(p_drill_page, layer, p_from_element.door, p_from_element.section_no_of_door, expansion_value, sorting_value, p_from_element.next_room, p_from_element.shape_entry, p_from_element.room_ripped, MazeSearchElement.Adjustment.NONE, false);
   }
 
   private void expand_to_drills_of_page(MazeListElement p_from_element)
@@ -923,8 +918,7 @@ public class MazeSearchAlgo
       FloatPoint shape_entry_middle = p_list_element.shape_entry.a.middle_point(p_list_element.shape_entry.b);
       double sorting_value = expansion_value + this.destination_distance.calculate(shape_entry_middle, to_layer);
       int curr_room_index = to_layer - curr_drill.first_layer;
-      MazeListElement new_element = new MazeListElement(curr_drill, curr_room_index, curr_drill, p_list_element.section_no_of_door, expansion_value, sorting_value, curr_drill.room_arr[curr_room_index], p_list_element.shape_entry, room_ripped, MazeSearchElement.Adjustment.NONE, false);
-      this.maze_expansion_list.add(new_element);
+      this.maze_expansion_list.add(curr_drill, curr_room_index, curr_drill, p_list_element.section_no_of_door, expansion_value, sorting_value, curr_drill.room_arr[curr_room_index], p_list_element.shape_entry, room_ripped, MazeSearchElement.Adjustment.NONE, false);
     }
   }
 
@@ -1028,8 +1022,7 @@ public class MazeSearchAlgo
         FloatPoint curr_center = connection_shape.centre_of_gravity();
         FloatLine shape_entry = new FloatLine(curr_center, curr_center);
         double sorting_value = this.destination_distance.calculate(curr_center, curr_room.get_layer());
-        MazeListElement new_list_element = new MazeListElement(curr_door, 0, null, 0, 0, sorting_value, curr_room, shape_entry, false, MazeSearchElement.Adjustment.NONE, false);
-        maze_expansion_list.add(new_list_element);
+        maze_expansion_list.add(curr_door, 0, null, 0, 0, sorting_value, curr_room, shape_entry, false, MazeSearchElement.Adjustment.NONE, false);
         start_ok = true;
       }
     }
@@ -1,6 +1,8 @@
 package app.freerouting.autoroute;
 
+import app.freerouting.board.ChangeJournal;
 import app.freerouting.board.Item;
+import app.freerouting.board.RoutingBoard;
 import app.freerouting.datastructures.UndoableObjects;
 import app.freerouting.datastructures.UndoableObjects.UndoableObjectNode;
 import app.freerouting.interactive.RatsNest;
@@ -13,14 +15,34 @@ public class OptimizeRouteTask extends BatchOptRoute implements Runnable
   private final int pass_no;
   private final boolean with_preferred_directions;
   private final BatchOptRouteMT optimizer;
+  /**
+   * The number of changes committed to the master board in the current pass, which are contained in
+   * the board of this task.
+   */
+  private final int snapshot_no;
   private Item curr_item;
   private ItemRouteResult route_result;
-
-  public OptimizeRouteTask(BatchOptRouteMT p_optimizer, int item_id, int p_pass_no, boolean p_with_preferred_directions, double p_min_cumulative_trace_length)
+  /**
+   * The changes of this task on its copy of the board.
+   */
+  private ChangeJournal changes;
+  private boolean won = false;
+  /**
+   * The ratsnest of the worker board, which is updated incrementally for the changed nets.
+   */
+  private final RatsNest ratsnest;
+
+  /**
+   * Creates a task for rerouting the item with id item_id on p_worker_board, which is a copy of the
+   * master board owned by the current worker thread. p_ratsnest is the ratsnest of p_worker_board.
+   */
+  OptimizeRouteTask(BatchOptRouteMT p_optimizer, RoutingBoard p_worker_board, RatsNest p_ratsnest, int p_snapshot_no, int item_id, int p_pass_no, boolean p_with_preferred_directions, double p_min_cumulative_trace_length)
   {
-    super(p_optimizer.thread, true);
+    super(p_optimizer.thread, p_worker_board);
 
     optimizer = p_optimizer;
+    ratsnest = p_ratsnest;
+    snapshot_no = p_snapshot_no;
 
     curr_item = findItemOnBoard(item_id);
     // curr_item.board = this.routing_board;
@@ -62,6 +84,7 @@ public class OptimizeRouteTask extends BatchOptRoute implements Runnable
     {
       return;
     }
+    int item_id = curr_item.get_id_no();
 
     //    FRLogger.debug(
     //        "Start to run OptimizeRouteTask on pass "
@@ -70,20 +93,17 @@ public class OptimizeRouteTask extends BatchOptRoute implements Runnable
     //            + curr_item.get_id_no()
     //            + ".");
 
+    changes = this.routing_board.start_change_journal();
     route_result = opt_route_item(curr_item, pass_no, with_preferred_directions);
+    this.routing_board.stop_change_journal(changes);
 
-    boolean winning_candidate = optimizer.is_winning_candidate(this);
+    won = optimizer.is_winning_candidate(this);
 
     long duration = System.currentTimeMillis() - startTime;
     long minutes = duration / 60000;
     float sec = (duration % 60000) / 1000.0F;
 
-    FRLogger.debug("Finished   task #" + optimizer.get_num_tasks_finished() + " of " + optimizer.get_num_tasks() + " for item #" + curr_item.get_id_no() + " on pass " + pass_no + " in " + minutes + " m " + sec + "s." + " Best so far: " + winning_candidate + ", improved: " + route_result.improved() + ", via reduction: " + route_result.via_count_reduced() + (winning_candidate ? (", length reduction: " + (int) route_result.length_reduced()) : "") + ", incomplete trace reduction: " + (route_result.incomplete_count_before() - route_result.incomplete_count()));
-
-    if (!winning_candidate)
-    {
-      clean();
-    }
+    FRLogger.debug("Finished   task #" + optimizer.get_num_tasks_finished() + " of " + optimizer.get_num_tasks() + " for item #" + item_id + " on pass " + pass_no + " in " + minutes + " m " + sec + "s." + " Best so far: " + won + ", improved: " + route_result.improved() + ", via reduction: " + route_result.via_count_reduced() + (won ? (", length reduction: " + (int) route_result.length_reduced()) : "") + ", incomplete trace reduction: " + (route_result.incomplete_count_before() - route_result.incomplete_count()));
   }
 
   public ItemRouteResult getRouteResult()
@@ -96,25 +116,37 @@ public class OptimizeRouteTask extends BatchOptRoute implements Runnable
     return curr_item;
   }
 
+  ChangeJournal get_changes()
+  {
+    return changes;
+  }
+
+  int get_snapshot_no()
+  {
+    return snapshot_no;
+  }
+
+  /**
+   * Returns true, if the result of this task was the best result of the pass, when the task finished.
+   */
+  boolean is_won()
+  {
+    return won;
+  }
+
   public void clean()
   { // try to speed up memory release
-    curr_item.board = null;
     curr_item = null;
+    changes = null;
 
     this.sorted_route_items = null;
     this.routing_board = null;
   }
 
-  @Override
-  protected void remove_ratsnest()
-  {
-    // do nothing as we create a new instance of ratsnest every time
-    // assume it'll be only called twice: before and after routing
-  }
-
   @Override
   protected RatsNest get_ratsnest()
   {
-    return new RatsNest(this.routing_board, this.thread.hdlg.get_locale());
+    this.ratsnest.update();
+    return this.ratsnest;
   }
 }
\ No newline at end of file
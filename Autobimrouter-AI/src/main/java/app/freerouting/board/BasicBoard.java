@@ -15,7 +15,6 @@ import app.freerouting.rules.BoardRules;
 
 import java.awt.*;
 import java.io.*;
-import java.security.MessageDigest;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -74,6 +73,21 @@ public class BasicBoard implements Serializable
    * the smallest half width of all traces on the board
    */
   private int min_trace_half_width = 10000;
+  /**
+   * Order independent hash of the items inserted into the search trees of this board. Updated
+   * incrementally, when an item is inserted, removed or changed.
+   */
+  private transient long fingerprint = 0;
+  /**
+   * The connectable items of this board by net together with their connected sets. Created, when it
+   * is first used.
+   */
+  private transient ConnectivityIndex connectivity_index;
+  /**
+   * If true, inserted items are not yet entered into the search trees. See
+   * start_deferred_search_tree_insert.
+   */
+  private transient boolean search_tree_insert_deferred = false;
 
   /**
    * Creates a new instance of a routing Board with surrounding box p_bounding_box Rules contains
@@ -113,34 +127,13 @@ public class BasicBoard implements Serializable
     return null;
   }
 
-  private static String convert_byte_array_to_hex_string(byte[] arrayBytes)
-  {
-    StringBuilder stringBuffer = new StringBuilder();
-    for (int i = 0; i < arrayBytes.length; i++)
-    {
-      stringBuffer.append(Integer.toString((arrayBytes[i] & 0xff) + 0x100, 16).substring(1));
-    }
-    return stringBuffer.toString();
-  }
-
-  private byte[] serialize(boolean basicProfile)
+  private byte[] serialize()
   {
     try
     {
       ByteArrayOutputStream output_stream = new ByteArrayOutputStream();
       ObjectOutputStream object_stream = new ObjectOutputStream(output_stream);
-
-      if (basicProfile)
-      {
-        object_stream.writeObject(this.get_traces());
-        object_stream.writeObject(this.get_vias());
-        object_stream.writeObject(this.item_list);
-      }
-      else
-      {
-        object_stream.writeObject(this);
-      }
-
+      object_stream.writeObject(this);
       object_stream.close();
 
       return output_stream.toByteArray();
@@ -152,54 +145,268 @@ public class BasicBoard implements Serializable
     return null;
   }
 
-  @Override
-  public BasicBoard clone()
-  {
-    return deserialize(this.serialize(false));
-  }
-
-  public String get_hash()
+  /**
+   * Serializes this board without its items. Used for copying the rules, the library, the components
+   * and the other data of this board, which are small compared to the item list.
+   */
+  private byte[] serialize_without_items()
   {
     try
     {
-      MessageDigest digest = MessageDigest.getInstance("MD5");
-      digest.update(this.serialize(true));
-      byte[] hashedBytes = digest.digest();
+      ByteArrayOutputStream output_stream = new ByteArrayOutputStream();
+      ObjectOutputStream object_stream = new ItemListSkippingOutputStream(output_stream, this.item_list, new UndoableObjects());
+      object_stream.writeObject(this);
+      object_stream.close();
 
-      return convert_byte_array_to_hex_string(hashedBytes);
+      return output_stream.toByteArray();
     } catch (Exception e)
     {
-      FRLogger.error("Couldn't calculate hash for board", e);
+      FRLogger.error("Couldn't serialize board", e);
     }
 
     return null;
   }
 
-  public int diff_traces(BasicBoard compare_to)
+  /**
+   * Reads a board from the board and item sections of p_file, which were written by write_binary.
+   * If p_file contains a change section, the changes are applied to the board.
+   */
+  public static BasicBoard read_binary(BinaryBoardFile p_file) throws IOException
   {
-    int result = 0;
-    HashSet<Integer> traceIds = new HashSet<>();
-    for (Trace trace : this.get_traces())
+    byte[] board_data = p_file.get_section(BinaryBoardFile.BOARD_SECTION);
+    byte[] item_data = p_file.get_section(BinaryBoardFile.ITEM_SECTION);
+    if (board_data == null || item_data == null)
+    {
+      throw new IOException("BasicBoard.read_binary: board section missing");
+    }
+    BasicBoard result;
+    try
+    {
+      ObjectInputStream object_stream = new BinaryBoardInputStream(new ByteArrayInputStream(board_data));
+      result = (BasicBoard) object_stream.readObject();
+    } catch (ClassNotFoundException e)
     {
-      traceIds.add(trace.get_id_no());
+      throw new IOException("BasicBoard.read_binary: unknown class", e);
     }
+    ItemListCodec.decode(item_data, result);
+    byte[] change_data = p_file.get_section(BinaryBoardFile.CHANGE_SECTION);
+    if (change_data != null)
+    {
+      Map<Integer, Item> items = new HashMap<>();
+      for (Item curr_item : result.get_items())
+      {
+        items.put(curr_item.get_id_no(), curr_item);
+      }
+      ItemListCodec.decode_changes(change_data, result, items);
+      for (int curr_id_no : items.keySet())
+      {
+        result.communication.id_no_generator.skip_to(curr_id_no);
+      }
+    }
+    result.search_tree_manager.insert_all(result.get_items());
+    return result;
+  }
 
-    for (Trace trace : compare_to.get_traces())
+  /**
+   * Writes this board into the board and the item section of p_file. The traces, vias and pins are
+   * stored in a compact encoding, the other items are serialized together with the rules, the
+   * library and the components. Both sections are created at once, so that p_file is independent of
+   * later changes of this board and may be written by another thread. Only the current items are
+   * written, the undo and redo history of the board is not stored.
+   */
+  public void write_binary(BinaryBoardFile p_file) throws IOException
+  {
+    write_binary(p_file, null);
+  }
+
+  /**
+   * Writes this board into p_file like write_binary(p_file), but takes p_board_section as board
+   * section instead of serializing the board again, if p_board_section != null. p_board_section must
+   * be the board section written earlier for this board, and only traces and vias with a compact
+   * encoding may have been changed since then, see
+   * ChangeJournal.contains_only_encodable_traces_and_vias().
+   */
+  public void write_binary(BinaryBoardFile p_file, byte[] p_board_section) throws IOException
+  {
+    UndoableObjects other_items = new UndoableObjects();
+    List<Item> encoded_items = new ArrayList<>();
+    Iterator<UndoableObjects.UndoableObjectNode> it = this.item_list.start_read_object();
+    for (; ; )
     {
-      if (!traceIds.contains(trace.get_id_no()))
+      Item curr_item = (Item) this.item_list.read_object(it);
+      if (curr_item == null)
+      {
+        break;
+      }
+      if (ItemListCodec.is_encodable(curr_item))
       {
-        result++;
+        encoded_items.add(curr_item);
       }
       else
       {
-        traceIds.remove(trace.get_id_no());
+        other_items.insert(curr_item);
       }
     }
-    result += traceIds.size();
+    p_file.set_section(BinaryBoardFile.ITEM_SECTION, ItemListCodec.encode(encoded_items));
+    if (p_board_section != null)
+    {
+      p_file.set_section(BinaryBoardFile.BOARD_SECTION, p_board_section);
+      return;
+    }
+    ByteArrayOutputStream output_stream = new ByteArrayOutputStream();
+    ObjectOutputStream object_stream = new ItemListSkippingOutputStream(output_stream, this.item_list, other_items);
+    object_stream.writeObject(this);
+    object_stream.close();
+    p_file.set_section(BinaryBoardFile.BOARD_SECTION, output_stream.toByteArray());
+  }
 
+  /**
+   * Creates a structural copy of this board. Only the rules, the library and the other small parts
+   * of the board are deep copied. The items are copied without their geometry, which is shared with
+   * this board, and the default search tree is copied without recalculating any tree shapes. The
+   * shared geometry is not changed, only its caches are filled on first use in a thread safe way,
+   * so that the copy may be routed in another thread. The undo history of this board is not copied.
+   */
+  @Override
+  public BasicBoard clone()
+  {
+    byte[] serialized_board = this.serialize_without_items();
+    if (serialized_board == null)
+    {
+      return null;
+    }
+    BasicBoard result = deserialize(serialized_board);
+    if (result != null && !result.copy_items_from(this))
+    {
+      // Some item cannot be copied, use the slow copy via serialization of the whole board.
+      result = deserialize(this.serialize());
+    }
     return result;
   }
 
+  /**
+   * Inserts copies of the items of p_board into this board, which must be empty. Returns false, if
+   * an item of p_board cannot be copied.
+   */
+  private boolean copy_items_from(BasicBoard p_board)
+  {
+    this.search_tree_manager.set_clearance_compensation_used(p_board.search_tree_manager.is_clearance_compensation_used());
+    this.search_tree_manager.set_partition_by_layer(p_board.search_tree_manager.is_partition_by_layer());
+    Map<Item, Item> item_map = new LinkedHashMap<>();
+    Iterator<UndoableObjects.UndoableObjectNode> it = p_board.item_list.start_read_object();
+    for (; ; )
+    {
+      Item curr_item = (Item) p_board.item_list.read_object(it);
+      if (curr_item == null)
+      {
+        break;
+      }
+      Item curr_copy = curr_item.copy_for_board(this, curr_item.get_id_no());
+      if (curr_copy == null)
+      {
+        return false;
+      }
+      item_map.put(curr_item, curr_copy);
+    }
+    for (Map.Entry<Item, Item> curr_entry : item_map.entrySet())
+    {
+      if (curr_entry.getValue() instanceof Pin curr_pin)
+      {
+        curr_pin.copy_pin_swap((Pin) curr_entry.getKey(), item_map);
+      }
+      this.item_list.insert(curr_entry.getValue());
+    }
+    this.search_tree_manager.insert_copied_items(p_board.search_tree_manager, item_map);
+    return true;
+  }
+
+  /**
+   * Returns a fingerprint of the items on this board, which depends only on their types, layers,
+   * nets and geometry. Boards with equal items have equal fingerprints. The fingerprint is
+   * maintained incrementally, so calling this function is cheap.
+   */
+  public long get_fingerprint()
+  {
+    return this.fingerprint;
+  }
+
+  /**
+   * Returns the index of the connectable items of this board by net. The index is created, when this
+   * function is called the first time, and maintained incrementally afterwards.
+   */
+  ConnectivityIndex get_connectivity_index()
+  {
+    if (this.connectivity_index == null)
+    {
+      this.connectivity_index = new ConnectivityIndex(this);
+    }
+    return this.connectivity_index;
+  }
+
+  /**
+   * Called, when p_item is inserted into the search trees of this board or after its geometry or
+   * nets were changed in place. Adds p_item to the fingerprint, the connectivity index and the
+   * change journal of this board.
+   */
+  void item_entered_search_trees(Item p_item)
+  {
+    if (p_item.get_fingerprint_summand() != 0)
+    {
+      item_leaving_search_trees(p_item);
+    }
+    long summand = p_item.calculate_fingerprint();
+    if (summand == 0)
+    {
+      // 0 is reserved for items not contained in the fingerprint
+      summand = 1;
+    }
+    p_item.set_fingerprint_summand(summand);
+    this.fingerprint += summand;
+    if (this.connectivity_index != null)
+    {
+      this.connectivity_index.item_inserted(p_item);
+    }
+    journal_item_inserted(p_item);
+  }
+
+  /**
+   * Called, when p_item is removed from the search trees of this board or before its geometry or
+   * nets are changed in place. Removes p_item from the fingerprint and the connectivity index and
+   * records the removal in the change journal of this board. Nothing is done, if p_item was not
+   * entered before.
+   */
+  void item_leaving_search_trees(Item p_item)
+  {
+    long summand = p_item.get_fingerprint_summand();
+    if (summand == 0)
+    {
+      return;
+    }
+    this.fingerprint -= summand;
+    p_item.set_fingerprint_summand(0);
+    if (this.connectivity_index != null)
+    {
+      this.connectivity_index.item_removed(p_item);
+    }
+    journal_item_removed(p_item);
+  }
+
+  /**
+   * Stub function overwritten in class RoutingBoard to record the inserted items of an autoroute
+   * pass.
+   */
+  void journal_item_inserted(Item p_item)
+  {
+  }
+
+  /**
+   * Stub function overwritten in class RoutingBoard to record the removed items of an autoroute
+   * pass.
+   */
+  void journal_item_removed(Item p_item)
+  {
+  }
+
   /**
    * Inserts a trace into the board, whose geometry is described by a Polyline. p_clearance_class is
    * the index in the clearance_matrix, which describes the required clearance restrictions to other
@@ -551,21 +758,17 @@ public class BasicBoard implements Serializable
    */
   public Collection<Item> get_connectable_items(int p_net_no)
   {
-    Collection<Item> result = new LinkedList<>();
-    Iterator<UndoableObjects.UndoableObjectNode> it = item_list.start_read_object();
-    for (; ; )
-    {
-      Item curr_item = (Item) item_list.read_object(it);
-      if (curr_item == null)
-      {
-        break;
-      }
-      if (curr_item instanceof Connectable && curr_item.contains_net(p_net_no))
-      {
-        result.add(curr_item);
-      }
-    }
-    return result;
+    return get_connectivity_index().get_items(p_net_no);
+  }
+
+  /**
+   * Returns a counter, which is increased, whenever a connectable item of the net with number
+   * p_net_no is inserted, removed or changed. Used to find out, which nets changed since a previous
+   * call.
+   */
+  public int get_net_change_count(int p_net_no)
+  {
+    return get_connectivity_index().change_count(p_net_no);
   }
 
   /**
@@ -573,21 +776,7 @@ public class BasicBoard implements Serializable
    */
   public int connectable_item_count(int p_net_no)
   {
-    int result = 0;
-    Iterator<UndoableObjects.UndoableObjectNode> it = item_list.start_read_object();
-    for (; ; )
-    {
-      Item curr_item = (Item) item_list.read_object(it);
-      if (curr_item == null)
-      {
-        break;
-      }
-      if (curr_item instanceof Connectable && curr_item.contains_net(p_net_no))
-      {
-        ++result;
-      }
-    }
-    return result;
+    return get_connectivity_index().item_count(p_net_no);
   }
 
   /**
@@ -923,35 +1112,11 @@ public class BasicBoard implements Serializable
    */
   public Collection<Collection<Item>> get_connected_sets(int p_net_no)
   {
-    Collection<Collection<Item>> result = new LinkedList<>();
     if (p_net_no <= 0)
     {
-      return result;
+      return new LinkedList<>();
     }
-    SortedSet<Item> items_to_handle = new TreeSet<>();
-    Iterator<UndoableObjects.UndoableObjectNode> it = this.item_list.start_read_object();
-    for (; ; )
-    {
-      Item curr_item = (Item) item_list.read_object(it);
-      if (curr_item == null)
-      {
-        break;
-      }
-      if (curr_item instanceof Connectable && curr_item.contains_net(p_net_no))
-      {
-        items_to_handle.add(curr_item);
-      }
-    }
-    Iterator<Item> it2 = items_to_handle.iterator();
-    while (it2.hasNext())
-    {
-      Item curr_item = it2.next();
-      Collection<Item> next_connected_set = curr_item.get_connected_set(p_net_no);
-      result.add(next_connected_set);
-      items_to_handle.removeAll(next_connected_set);
-      it2 = items_to_handle.iterator();
-    }
-    return result;
+    return get_connectivity_index().get_connected_sets(p_net_no);
   }
 
   /**
@@ -1371,11 +1536,46 @@ public class BasicBoard implements Serializable
     }
     p_item.board = this;
     item_list.insert(p_item);
-    search_tree_manager.insert(p_item);
+    if (!search_tree_insert_deferred)
+    {
+      search_tree_manager.insert(p_item);
+    }
     communication.observers.notify_new(p_item);
     additional_update_after_change(p_item);
   }
 
+  /**
+   * From here on, inserted items are not entered into the search trees until
+   * finish_deferred_search_tree_insert is called, so that the trees can be bulk loaded at once.
+   * Used when reading a design, where many items are inserted before the first search. No search
+   * functions may be used before the deferred insert is finished.
+   */
+  public void start_deferred_search_tree_insert()
+  {
+    this.search_tree_insert_deferred = true;
+  }
+
+  /**
+   * Enters the items inserted since start_deferred_search_tree_insert into the search trees.
+   */
+  public void finish_deferred_search_tree_insert()
+  {
+    if (!this.search_tree_insert_deferred)
+    {
+      return;
+    }
+    this.search_tree_insert_deferred = false;
+    List<Item> deferred_items = new ArrayList<>();
+    for (Item curr_item : this.get_items())
+    {
+      if (!curr_item.is_on_the_board())
+      {
+        deferred_items.add(curr_item);
+      }
+    }
+    search_tree_manager.insert_deferred(deferred_items);
+  }
+
   /**
    * Stub function overwritten in class RoutingBoard to maintain the autorouter database if
    * necessary.
@@ -1582,10 +1782,15 @@ public class BasicBoard implements Serializable
     p_stream.defaultReadObject();
     // insert the items on the board into the search trees
     search_tree_manager = new SearchTreeManager(this);
-    for (Item curr_item : this.get_items())
+    Collection<Item> board_items = this.get_items();
+    for (Item curr_item : board_items)
     {
       curr_item.board = this;
-      search_tree_manager.insert(curr_item);
+    }
+    if (!(p_stream instanceof BinaryBoardInputStream))
+    {
+      // otherwise the items are inserted by read_binary together with the encoded items
+      search_tree_manager.insert_all(board_items);
     }
   }
 
@@ -1638,4 +1843,44 @@ public class BasicBoard implements Serializable
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Object stream replacing the item list of a board by a list containing only the items, which are
+   * not stored separately.
+   */
+  private static class ItemListSkippingOutputStream extends ObjectOutputStream
+  {
+    private final UndoableObjects skipped_item_list;
+    private final UndoableObjects replacement_item_list;
+
+    ItemListSkippingOutputStream(OutputStream p_output_stream, UndoableObjects p_skipped_item_list, UndoableObjects p_replacement_item_list) throws IOException
+    {
+      super(p_output_stream);
+      this.skipped_item_list = p_skipped_item_list;
+      this.replacement_item_list = p_replacement_item_list;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object p_object)
+    {
+      if (p_object == this.skipped_item_list)
+      {
+        return this.replacement_item_list;
+      }
+      return p_object;
+    }
+  }
+
+  /**
+   * Object stream for reading the board section of a binary board file. The items of the board are
+   * inserted into the search trees after the encoded items were added.
+   */
+  private static class BinaryBoardInputStream extends ObjectInputStream
+  {
+    BinaryBoardInputStream(InputStream p_input_stream) throws IOException
+    {
+      super(p_input_stream);
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package app.freerouting.board;
+
+import java.io.*;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * The versioned binary file format for storing a board together with the interactive settings and
+ * the GUI state. The file starts with a header containing a table of its sections with their
+ * offsets, lengths and checksums, followed by the section data. So a reader can load for example
+ * only the board sections and skip the GUI state. Files not starting with the header are in the
+ * old format, which contains only Java serialized objects.
+ */
+public class BinaryBoardFile
+{
+  /**
+   * The rules, the library, the components and the items without a compact encoding.
+   */
+  public static final int BOARD_SECTION = 1;
+  /**
+   * The traces, vias and pins of the board in a compact encoding.
+   */
+  public static final int ITEM_SECTION = 2;
+  /**
+   * The interactive settings and the coordinate transformation.
+   */
+  public static final int SETTINGS_SECTION = 3;
+  /**
+   * The graphics context.
+   */
+  public static final int GRAPHICS_SECTION = 4;
+  /**
+   * The state of the board frame and its subwindows.
+   */
+  public static final int GUI_SECTION = 5;
+  /**
+   * The traces and vias inserted and removed since a previous checkpoint of the board.
+   */
+  public static final int CHANGE_SECTION = 6;
+  /**
+   * The id of a checkpoint, which links the checkpoint to its change log.
+   */
+  public static final int CHECKPOINT_ID_SECTION = 7;
+  /**
+   * The current version of the file format. Files with a higher version are rejected.
+   */
+  public static final int VERSION = 1;
+  /**
+   * The first bytes of a file in this format: "FRBB". Java serialized files start with 0xACED.
+   */
+  private static final int MAGIC = 0x46524242;
+  /**
+   * The length of a section table entry consisting of the section id, the offset, the length and
+   * the CRC32 checksum of the section.
+   */
+  private static final int TABLE_ENTRY_LENGTH = 20;
+
+  private final SortedMap<Integer, byte[]> sections = new TreeMap<>();
+
+  /**
+   * Returns true, if p_stream starts with the header of this file format. p_stream must support
+   * mark and reset, its position is not changed.
+   */
+  public static boolean is_binary_board_file(InputStream p_stream) throws IOException
+  {
+    p_stream.mark(4);
+    byte[] magic = p_stream.readNBytes(4);
+    p_stream.reset();
+    return magic.length == 4 && ((magic[0] & 0xFF) << 24 | (magic[1] & 0xFF) << 16 | (magic[2] & 0xFF) << 8 | (magic[3] & 0xFF)) == MAGIC;
+  }
+
+  /**
+   * Reads the sections with the ids in p_section_ids from p_stream, or all sections, if
+   * p_section_ids is empty. The other sections are skipped without reading them into memory.
+   */
+  public static BinaryBoardFile read(InputStream p_stream, int... p_section_ids) throws IOException
+  {
+    DataInputStream data_stream = new DataInputStream(p_stream);
+    if (data_stream.readInt() != MAGIC)
+    {
+      throw new IOException("BinaryBoardFile.read: invalid file header");
+    }
+    int version = data_stream.readInt();
+    if (version > VERSION)
+    {
+      throw new IOException("BinaryBoardFile.read: unsupported file version " + version);
+    }
+    int section_count = data_stream.readInt();
+    if (section_count < 0)
+    {
+      throw new IOException("BinaryBoardFile.read: invalid section count");
+    }
+    long position = 12 + (long) section_count * TABLE_ENTRY_LENGTH;
+    // the section table sorted by offset
+    SortedMap<Long, long[]> section_table = new TreeMap<>();
+    for (int i = 0; i < section_count; ++i)
+    {
+      long[] curr_entry = new long[4];
+      curr_entry[0] = data_stream.readInt();
+      long curr_offset = data_stream.readLong();
+      curr_entry[1] = data_stream.readInt();
+      curr_entry[2] = data_stream.readInt() & 0xFFFFFFFFL;
+      if (curr_offset < position || curr_entry[1] < 0 || section_table.put(curr_offset, curr_entry) != null)
+      {
+        throw new IOException("BinaryBoardFile.read: invalid section table");
+      }
+    }
+    BinaryBoardFile result = new BinaryBoardFile();
+    for (Map.Entry<Long, long[]> curr_entry : section_table.entrySet())
+    {
+      int curr_id = (int) curr_entry.getValue()[0];
+      if (!is_requested(curr_id, p_section_ids))
+      {
+        continue;
+      }
+      if (curr_entry.getKey() < position)
+      {
+        throw new IOException("BinaryBoardFile.read: overlapping sections");
+      }
+      data_stream.skipNBytes(curr_entry.getKey() - position);
+      byte[] curr_data = new byte[(int) curr_entry.getValue()[1]];
+      data_stream.readFully(curr_data);
+      position = curr_entry.getKey() + curr_data.length;
+      CRC32 crc = new CRC32();
+      crc.update(curr_data);
+      if (crc.getValue() != curr_entry.getValue()[2])
+      {
+        throw new IOException("BinaryBoardFile.read: checksum error in section " + curr_id);
+      }
+      result.sections.put(curr_id, curr_data);
+    }
+    return result;
+  }
+
+  /**
+   * Reads only the rules and the geometry of the board from p_stream without the interactive
+   * settings and the GUI state.
+   */
+  public static RoutingBoard read_board(InputStream p_stream) throws IOException
+  {
+    BinaryBoardFile board_file = read(p_stream, BOARD_SECTION, ITEM_SECTION);
+    return (RoutingBoard) BasicBoard.read_binary(board_file);
+  }
+
+  private static boolean is_requested(int p_section_id, int[] p_section_ids)
+  {
+    if (p_section_ids.length == 0)
+    {
+      return true;
+    }
+    for (int curr_id : p_section_ids)
+    {
+      if (curr_id == p_section_id)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the data of the section with id p_section_id, or null, if this file does not contain
+   * such a section.
+   */
+  public byte[] get_section(int p_section_id)
+  {
+    return sections.get(p_section_id);
+  }
+
+  /**
+   * Sets the data of the section with id p_section_id.
+   */
+  public void set_section(int p_section_id, byte[] p_data)
+  {
+    sections.put(p_section_id, p_data);
+  }
+
+  /**
+   * Sets the section with id p_section_id to the Java serialization of p_objects.
+   */
+  public void set_object_section(int p_section_id, Object... p_objects) throws IOException
+  {
+    ByteArrayOutputStream output_stream = new ByteArrayOutputStream();
+    ObjectOutputStream object_stream = new ObjectOutputStream(output_stream);
+    for (Object curr_object : p_objects)
+    {
+      object_stream.writeObject(curr_object);
+    }
+    object_stream.close();
+    set_section(p_section_id, output_stream.toByteArray());
+  }
+
+  /**
+   * Returns a stream for reading the objects of the section with id p_section_id, which was written
+   * by set_object_section.
+   */
+  public ObjectInputStream get_object_section(int p_section_id) throws IOException
+  {
+    byte[] data = get_section(p_section_id);
+    if (data == null)
+    {
+      throw new IOException("BinaryBoardFile: section " + p_section_id + " is missing");
+    }
+    return new ObjectInputStream(new ByteArrayInputStream(data));
+  }
+
+  /**
+   * Writes the header and the sections of this file to p_stream.
+   */
+  public void write(OutputStream p_stream) throws IOException
+  {
+    DataOutputStream data_stream = new DataOutputStream(new BufferedOutputStream(p_stream, 65536));
+    data_stream.writeInt(MAGIC);
+    data_stream.writeInt(VERSION);
+    data_stream.writeInt(sections.size());
+    long offset = 12 + (long) sections.size() * TABLE_ENTRY_LENGTH;
+    for (Map.Entry<Integer, byte[]> curr_entry : sections.entrySet())
+    {
+      CRC32 crc = new CRC32();
+      crc.update(curr_entry.getValue());
+      data_stream.writeInt(curr_entry.getKey());
+      data_stream.writeLong(offset);
+      data_stream.writeInt(curr_entry.getValue().length);
+      data_stream.writeInt((int) crc.getValue());
+      offset += curr_entry.getValue().length;
+    }
+    for (byte[] curr_data : sections.values())
+    {
+      data_stream.write(curr_data);
+    }
+    data_stream.flush();
+  }
+}
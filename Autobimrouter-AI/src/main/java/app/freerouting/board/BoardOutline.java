@@ -272,6 +272,18 @@ public class BoardOutline extends Item implements Serializable
     return new BoardOutline(this.shapes, this.clearance_class_no(), p_id_no, this.board);
   }
 
+  @Override
+  Item copy_for_board(BasicBoard p_board, int p_id_no)
+  {
+    BoardOutline dup = (BoardOutline) super.copy_for_board(p_board, p_id_no);
+    if (dup == null)
+    {
+      return null;
+    }
+    dup.keepout_outside_outline = this.keepout_outside_outline;
+    return dup;
+  }
+
   @Override
   public void print_info(ObjectInfoPanel p_window, Locale p_locale)
   {
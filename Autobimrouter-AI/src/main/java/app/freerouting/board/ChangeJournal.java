@@ -0,0 +1,306 @@
+package app.freerouting.board;
+
+import app.freerouting.geometry.planar.IntBox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Records the items inserted into and removed from a routing board, for example during an
+ * autoroute pass, so that statistics about the changes are available without comparing the board
+ * with a copy taken before. The recorded changes can also be transferred to another board
+ * containing the same items or reverted on the recording board.
+ */
+public class ChangeJournal
+{
+  /**
+   * The items inserted since the start of the journal, which are still on the board, sorted by their
+   * id numbers.
+   */
+  private final SortedMap<Integer, Item> inserted_items = new TreeMap<>();
+  /**
+   * Copies of the items in their state at the start of the journal, which were removed or changed
+   * since then, sorted by their id numbers.
+   */
+  private final SortedMap<Integer, Item> removed_items = new TreeMap<>();
+  private double trace_length_difference = 0;
+  private int via_count_difference = 0;
+  /**
+   * False, if a removed item could not be copied.
+   */
+  private boolean complete = true;
+
+  void item_inserted(Item p_item)
+  {
+    inserted_items.put(p_item.get_id_no(), p_item);
+    if (p_item instanceof Trace curr_trace)
+    {
+      trace_length_difference += curr_trace.get_length();
+    }
+    else if (p_item instanceof Via)
+    {
+      ++via_count_difference;
+    }
+  }
+
+  void item_removed(Item p_item)
+  {
+    Integer id_no = p_item.get_id_no();
+    if (inserted_items.remove(id_no) == null && !removed_items.containsKey(id_no))
+    {
+      // p_item was on the board at the start of the journal
+      Item saved_item = p_item.copy(p_item.get_id_no());
+      if (saved_item == null)
+      {
+        complete = false;
+      }
+      else
+      {
+        removed_items.put(id_no, saved_item);
+      }
+    }
+    if (p_item instanceof Trace curr_trace)
+    {
+      trace_length_difference -= curr_trace.get_length();
+    }
+    else if (p_item instanceof Via)
+    {
+      --via_count_difference;
+    }
+  }
+
+  /**
+   * Returns the number of items recorded in this journal, that is the inserted items and the copies
+   * of the removed items.
+   */
+  public int recorded_item_count()
+  {
+    return inserted_items.size() + removed_items.size();
+  }
+
+  /**
+   * Returns true, if no item was changed since the start of the journal.
+   */
+  public boolean is_empty()
+  {
+    return inserted_items.isEmpty() && removed_items.isEmpty();
+  }
+
+  /**
+   * Returns the number of traces, which are on the board now but not at the start of the journal or
+   * vice versa. Traces changed in place keep their id number and are not counted.
+   */
+  public int changed_trace_count()
+  {
+    int result = 0;
+    for (Item curr_item : inserted_items.values())
+    {
+      if (curr_item instanceof Trace && !removed_items.containsKey(curr_item.get_id_no()))
+      {
+        ++result;
+      }
+    }
+    for (Item curr_item : removed_items.values())
+    {
+      if (curr_item instanceof Trace && !inserted_items.containsKey(curr_item.get_id_no()))
+      {
+        ++result;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the cumulative trace length on the board now minus the cumulative trace length at the
+   * start of the journal.
+   */
+  public double trace_length_difference()
+  {
+    return trace_length_difference;
+  }
+
+  /**
+   * Returns the via count on the board now minus the via count at the start of the journal.
+   */
+  public int via_count_difference()
+  {
+    return via_count_difference;
+  }
+
+  /**
+   * Returns true, if only traces and vias were changed.
+   */
+  public boolean contains_only_traces_and_vias()
+  {
+    for (Item curr_item : inserted_items.values())
+    {
+      if (!(curr_item instanceof Trace || curr_item instanceof Via))
+      {
+        return false;
+      }
+    }
+    for (Item curr_item : removed_items.values())
+    {
+      if (!(curr_item instanceof Trace || curr_item instanceof Via))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true, if only traces and vias with a compact encoding were inserted or removed. Then the
+   * board section of a board file written at the start of the journal is still valid, because all
+   * changed items are stored in the item section.
+   */
+  public boolean contains_only_encodable_traces_and_vias()
+  {
+    if (!this.complete || !contains_only_traces_and_vias())
+    {
+      return false;
+    }
+    for (Item curr_item : inserted_items.values())
+    {
+      if (!ItemListCodec.is_encodable(curr_item))
+      {
+        return false;
+      }
+    }
+    for (Item curr_item : removed_items.values())
+    {
+      if (!ItemListCodec.is_encodable(curr_item))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stores the recorded changes in the change section of p_file, so that they can be applied to the
+   * board stored at the start of the journal. Returns false, if not only traces and vias were
+   * changed or some inserted item has no compact encoding.
+   */
+  public boolean write_binary(BinaryBoardFile p_file) throws IOException
+  {
+    if (!this.complete || !contains_only_traces_and_vias())
+    {
+      return false;
+    }
+    for (Item curr_item : inserted_items.values())
+    {
+      if (!ItemListCodec.is_encodable(curr_item))
+      {
+        return false;
+      }
+    }
+    p_file.set_section(BinaryBoardFile.CHANGE_SECTION, ItemListCodec.encode_changes(removed_items.keySet(), inserted_items.values()));
+    return true;
+  }
+
+  /**
+   * Returns the bounding box of the changed items, containing their old and their new geometry.
+   * Returns null, if the journal is empty.
+   */
+  public IntBox changed_bounding_box()
+  {
+    IntBox result = null;
+    for (Item curr_item : inserted_items.values())
+    {
+      result = result == null ? curr_item.bounding_box() : result.union(curr_item.bounding_box());
+    }
+    for (Item curr_item : removed_items.values())
+    {
+      result = result == null ? curr_item.bounding_box() : result.union(curr_item.bounding_box());
+    }
+    return result;
+  }
+
+  /**
+   * Transfers the recorded changes to p_board, which must contain the removed items with the same
+   * id numbers. The inserted items are copied. If p_new_id_nos, the copies get new id numbers
+   * generated by p_board, else they keep the id numbers of the recorded items. If p_check_clearance
+   * and a copy has clearance violations on p_board, the transfer is cancelled. Returns false, if the
+   * changes could not be transferred. In this case p_board is not changed.
+   */
+  public boolean apply_to(BasicBoard p_board, boolean p_new_id_nos, boolean p_check_clearance)
+  {
+    if (!this.complete)
+    {
+      return false;
+    }
+    Collection<Item> board_items_to_remove = new ArrayList<>(removed_items.size());
+    for (Item curr_item : removed_items.values())
+    {
+      Item board_item = (Item) p_board.item_list.get_stored_object(curr_item);
+      if (board_item == null)
+      {
+        // the item was removed by somebody else in the meantime
+        return false;
+      }
+      board_items_to_remove.add(board_item);
+    }
+    Collection<Item> inserted_copies = new ArrayList<>(inserted_items.size());
+    for (Item curr_item : inserted_items.values())
+    {
+      int id_no = p_new_id_nos ? p_board.communication.id_no_generator.new_no() : curr_item.get_id_no();
+      Item curr_copy = curr_item.copy_for_board(p_board, id_no);
+      if (curr_copy == null)
+      {
+        return false;
+      }
+      inserted_copies.add(curr_copy);
+    }
+    for (Item curr_item : board_items_to_remove)
+    {
+      p_board.remove_item(curr_item);
+    }
+    for (Item curr_copy : inserted_copies)
+    {
+      p_board.insert_item(curr_copy);
+    }
+    if (p_check_clearance)
+    {
+      for (Item curr_copy : inserted_copies)
+      {
+        if (!curr_copy.clearance_violations().isEmpty())
+        {
+          for (Item curr_item : inserted_copies)
+          {
+            p_board.remove_item(curr_item);
+          }
+          for (Item curr_item : board_items_to_remove)
+          {
+            p_board.insert_item(curr_item);
+          }
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Restores the state at the start of the journal on p_board, which must be the board, on which the
+   * changes were recorded. The recording of the journal must be stopped before. The journal cannot
+   * be used any more afterwards. Returns false, if some removed item could not be restored.
+   */
+  public boolean revert(BasicBoard p_board)
+  {
+    for (Item curr_item : inserted_items.values())
+    {
+      p_board.remove_item(curr_item);
+    }
+    for (Item curr_item : removed_items.values())
+    {
+      p_board.insert_item(curr_item);
+    }
+    inserted_items.clear();
+    removed_items.clear();
+    return this.complete;
+  }
+}
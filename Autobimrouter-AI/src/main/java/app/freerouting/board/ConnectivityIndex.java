@@ -0,0 +1,278 @@
+package app.freerouting.board;
+
+import java.util.*;
+
+/**
+ * Index of the connectable items on a board by net number, together with the sets of items of each
+ * net, which are connected via normal contacts. The item lists are updated, when an item enters or
+ * leaves the search trees of the board. The connected sets of a net are calculated with a
+ * union-find algorithm, when they are first needed, merged incrementally, when an item is inserted,
+ * and recalculated, after an item of the net was removed or changed.
+ */
+class ConnectivityIndex
+{
+  private final Map<Integer, NetEntry> net_entries = new HashMap<>();
+
+  /**
+   * Creates an index of the connectable items on p_board.
+   */
+  ConnectivityIndex(BasicBoard p_board)
+  {
+    for (Item curr_item : p_board.get_items())
+    {
+      if (curr_item.is_on_the_board())
+      {
+        item_inserted(curr_item);
+      }
+    }
+  }
+
+  synchronized void item_inserted(Item p_item)
+  {
+    if (!(p_item instanceof Connectable))
+    {
+      return;
+    }
+    for (int i = 0; i < p_item.net_count(); ++i)
+    {
+      int curr_net_no = p_item.get_net_no(i);
+      NetEntry curr_entry = net_entries.computeIfAbsent(curr_net_no, k -> new NetEntry());
+      if (!curr_entry.items.add(p_item))
+      {
+        continue;
+      }
+      ++curr_entry.change_count;
+      if (curr_entry.connected_sets != null)
+      {
+        curr_entry.join_contacts(p_item, curr_net_no);
+      }
+    }
+  }
+
+  synchronized void item_removed(Item p_item)
+  {
+    if (!(p_item instanceof Connectable))
+    {
+      return;
+    }
+    for (int i = 0; i < p_item.net_count(); ++i)
+    {
+      NetEntry curr_entry = net_entries.get(p_item.get_net_no(i));
+      if (curr_entry != null && curr_entry.items.remove(p_item))
+      {
+        ++curr_entry.change_count;
+        // the connected set of p_item may fall apart
+        curr_entry.connected_sets = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the connectable items of the net with number p_net_no.
+   */
+  synchronized Collection<Item> get_items(int p_net_no)
+  {
+    NetEntry curr_entry = net_entries.get(p_net_no);
+    if (curr_entry == null)
+    {
+      return new LinkedList<>();
+    }
+    return new LinkedList<>(curr_entry.items);
+  }
+
+  /**
+   * Returns the count of connectable items of the net with number p_net_no.
+   */
+  synchronized int item_count(int p_net_no)
+  {
+    NetEntry curr_entry = net_entries.get(p_net_no);
+    if (curr_entry == null)
+    {
+      return 0;
+    }
+    return curr_entry.items.size();
+  }
+
+  /**
+   * Returns the number of insertions and removals of items of the net with number p_net_no since the
+   * creation of this index. Changes of items in place count as a removal and an insertion.
+   */
+  synchronized int change_count(int p_net_no)
+  {
+    NetEntry curr_entry = net_entries.get(p_net_no);
+    if (curr_entry == null)
+    {
+      return 0;
+    }
+    return curr_entry.change_count;
+  }
+
+  /**
+   * Returns a copy of the set of items of the net with number p_net_no connected to p_item, or null,
+   * if p_item is not contained in the index.
+   */
+  synchronized Set<Item> get_connected_set(Item p_item, int p_net_no)
+  {
+    NetEntry curr_entry = net_entries.get(p_net_no);
+    if (curr_entry == null || !curr_entry.items.contains(p_item))
+    {
+      return null;
+    }
+    return new TreeSet<>(curr_entry.get_connected_sets(p_net_no).get(p_item));
+  }
+
+  /**
+   * Returns copies of the connected sets of the net with number p_net_no.
+   */
+  synchronized Collection<Collection<Item>> get_connected_sets(int p_net_no)
+  {
+    Collection<Collection<Item>> result = new LinkedList<>();
+    NetEntry curr_entry = net_entries.get(p_net_no);
+    if (curr_entry == null)
+    {
+      return result;
+    }
+    Map<Item, Set<Item>> connected_sets = curr_entry.get_connected_sets(p_net_no);
+    Set<Item> handled_items = new TreeSet<>();
+    for (Item curr_item : curr_entry.items)
+    {
+      if (handled_items.contains(curr_item))
+      {
+        continue;
+      }
+      Set<Item> curr_connected_set = connected_sets.get(curr_item);
+      handled_items.addAll(curr_connected_set);
+      result.add(new TreeSet<>(curr_connected_set));
+    }
+    return result;
+  }
+
+  private static class NetEntry
+  {
+    /**
+     * The connectable items of the net sorted like the item list of the board.
+     */
+    final SortedSet<Item> items = new TreeSet<>();
+    /**
+     * Maps each item of the net to its connected set. The items of a connected set share the same
+     * set object. Null, if the connected sets have to be recalculated.
+     */
+    Map<Item, Set<Item>> connected_sets = null;
+    int change_count = 0;
+
+    Map<Item, Set<Item>> get_connected_sets(int p_net_no)
+    {
+      if (connected_sets == null)
+      {
+        calculate_connected_sets(p_net_no);
+      }
+      return connected_sets;
+    }
+
+    /**
+     * Calculates the connected sets of the items with a union-find algorithm on the normal contacts.
+     */
+    private void calculate_connected_sets(int p_net_no)
+    {
+      Item[] item_arr = items.toArray(new Item[0]);
+      Map<Item, Integer> index_map = new HashMap<>(2 * item_arr.length);
+      for (int i = 0; i < item_arr.length; ++i)
+      {
+        index_map.put(item_arr[i], i);
+      }
+      int[] parent_arr = new int[item_arr.length];
+      for (int i = 0; i < parent_arr.length; ++i)
+      {
+        parent_arr[i] = i;
+      }
+      for (int i = 0; i < item_arr.length; ++i)
+      {
+        Collection<Item> contact_list = item_arr[i].get_normal_contacts();
+        if (contact_list == null)
+        {
+          continue;
+        }
+        for (Item curr_contact : contact_list)
+        {
+          if (!curr_contact.contains_net(p_net_no))
+          {
+            continue;
+          }
+          Integer contact_index = index_map.get(curr_contact);
+          if (contact_index == null)
+          {
+            continue;
+          }
+          int root_1 = find_root(parent_arr, i);
+          int root_2 = find_root(parent_arr, contact_index);
+          if (root_1 != root_2)
+          {
+            parent_arr[Math.max(root_1, root_2)] = Math.min(root_1, root_2);
+          }
+        }
+      }
+      Map<Integer, Set<Item>> root_sets = new HashMap<>();
+      connected_sets = new HashMap<>(2 * item_arr.length);
+      for (int i = 0; i < item_arr.length; ++i)
+      {
+        Set<Item> curr_set = root_sets.computeIfAbsent(find_root(parent_arr, i), k -> new HashSet<>());
+        curr_set.add(item_arr[i]);
+        connected_sets.put(item_arr[i], curr_set);
+      }
+    }
+
+    private static int find_root(int[] p_parent_arr, int p_index)
+    {
+      int root = p_index;
+      while (p_parent_arr[root] != root)
+      {
+        root = p_parent_arr[root];
+      }
+      // path compression
+      int curr_index = p_index;
+      while (p_parent_arr[curr_index] != root)
+      {
+        int next_index = p_parent_arr[curr_index];
+        p_parent_arr[curr_index] = root;
+        curr_index = next_index;
+      }
+      return root;
+    }
+
+    /**
+     * Joins the connected sets of the contacts of the new item p_item, where the smaller set is
+     * merged into the bigger one.
+     */
+    void join_contacts(Item p_item, int p_net_no)
+    {
+      Set<Item> own_set = new HashSet<>();
+      own_set.add(p_item);
+      connected_sets.put(p_item, own_set);
+      Collection<Item> contact_list = p_item.get_normal_contacts();
+      if (contact_list == null)
+      {
+        return;
+      }
+      for (Item curr_contact : contact_list)
+      {
+        if (!curr_contact.contains_net(p_net_no))
+        {
+          continue;
+        }
+        Set<Item> contact_set = connected_sets.get(curr_contact);
+        if (contact_set == null || contact_set == own_set)
+        {
+          continue;
+        }
+        Set<Item> bigger_set = contact_set.size() >= own_set.size() ? contact_set : own_set;
+        Set<Item> smaller_set = bigger_set == contact_set ? own_set : contact_set;
+        bigger_set.addAll(smaller_set);
+        for (Item curr_item : smaller_set)
+        {
+          connected_sets.put(curr_item, bigger_set);
+        }
+        own_set = bigger_set;
+      }
+    }
+  }
+}
@@ -243,6 +243,18 @@ public abstract class DrillItem extends Item implements Connectable, Serializabl
     return result;
   }
 
+  @Override
+  long geometry_fingerprint(long p_hash)
+  {
+    long result = mix_fingerprint(p_hash, this.get_center());
+    Padstack padstack = this.get_padstack();
+    if (padstack != null)
+    {
+      result = mix_fingerprint(result, padstack.no);
+    }
+    return result;
+  }
+
   /**
    * Returns the center point of this DrillItem.
    */
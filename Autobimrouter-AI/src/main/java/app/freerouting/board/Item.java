@@ -44,6 +44,11 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
    * points to the entries of this item in the ShapeSearchTrees
    */
   private transient ItemSearchTreesInfo search_trees_info;
+  /**
+   * Incremented by clear_derived_data, so that the precalculated tree shapes of older generations
+   * are calculated again.
+   */
+  private transient int derived_data_generation = 0;
   private FixedState fixed_state;
   /**
    * not 0, if this item belongs to a component
@@ -57,6 +62,11 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
    * Temporary data used in the autoroute algorithm.
    */
   private transient ItemAutorouteInfo autoroute_info;
+  /**
+   * The summand of this item in the fingerprint of its board, or 0, if this item is not contained
+   * in the fingerprint.
+   */
+  private transient long fingerprint_summand = 0;
 
   Item(int[] p_net_no_arr, int p_clearance_type, int p_id_no, int p_component_no, FixedState p_fixed_state, BasicBoard p_board)
   {
@@ -217,11 +227,11 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
     {
       this.search_trees_info = new ItemSearchTreesInfo();
     }
-    TileShape[] precalculated_tree_shapes = this.search_trees_info.get_precalculated_tree_shapes(p_tree);
+    TileShape[] precalculated_tree_shapes = this.search_trees_info.get_precalculated_tree_shapes(p_tree, this.derived_data_generation);
     if (precalculated_tree_shapes == null)
     {
       precalculated_tree_shapes = this.calculate_tree_shapes((ShapeSearchTree) p_tree);
-      this.search_trees_info.set_precalculated_tree_shapes(precalculated_tree_shapes, p_tree);
+      this.search_trees_info.set_precalculated_tree_shapes(precalculated_tree_shapes, p_tree, this.derived_data_generation, this.board.search_tree_manager.get_tree_shape_store());
     }
     return precalculated_tree_shapes;
   }
@@ -244,6 +254,71 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
     this.on_the_board = p_value;
   }
 
+  long get_fingerprint_summand()
+  {
+    return this.fingerprint_summand;
+  }
+
+  void set_fingerprint_summand(long p_value)
+  {
+    this.fingerprint_summand = p_value;
+  }
+
+  /**
+   * Calculates a hash value of the type, the layers, the nets and the geometry of this item. Items
+   * with the same hash value are regarded as equal in the fingerprint of the board, independent of
+   * their id numbers.
+   */
+  long calculate_fingerprint()
+  {
+    long result = mix_fingerprint(0, this.getClass().getName().hashCode());
+    result = mix_fingerprint(result, this.first_layer());
+    result = mix_fingerprint(result, this.last_layer());
+    for (int curr_net_no : this.net_no_arr)
+    {
+      result = mix_fingerprint(result, curr_net_no);
+    }
+    return geometry_fingerprint(result);
+  }
+
+  /**
+   * Adds the geometry of this item to the fingerprint hash p_hash. The default implementation uses
+   * the bounding box of this item. Overwritten in subclasses, whose geometry may change during
+   * routing.
+   */
+  long geometry_fingerprint(long p_hash)
+  {
+    IntBox box = this.bounding_box();
+    long result = mix_fingerprint(p_hash, box.ll);
+    return mix_fingerprint(result, box.ur);
+  }
+
+  /**
+   * Combines the hash value p_hash with p_value (splitmix64 finalizer).
+   */
+  static long mix_fingerprint(long p_hash, long p_value)
+  {
+    long result = (p_hash ^ p_value) + 0x9E3779B97F4A7C15L;
+    result = (result ^ (result >>> 30)) * 0xBF58476D1CE4E5B9L;
+    result = (result ^ (result >>> 27)) * 0x94D049BB133111EBL;
+    return result ^ (result >>> 31);
+  }
+
+  /**
+   * Combines the hash value p_hash with the coordinates of p_point.
+   */
+  static long mix_fingerprint(long p_hash, Point p_point)
+  {
+    if (p_point instanceof IntPoint curr_int_point)
+    {
+      long result = mix_fingerprint(p_hash, curr_int_point.x);
+      return mix_fingerprint(result, curr_int_point.y);
+    }
+    FloatPoint curr_float_point = p_point.to_float();
+    long result = mix_fingerprint(p_hash, Double.doubleToLongBits(curr_float_point.x));
+    return mix_fingerprint(result, Double.doubleToLongBits(curr_float_point.y));
+  }
+
   /**
    * Creates a copy of this item with id number p_id_no. If p_id_no {@literal <}= 0, the id_no of
    * the new item is generated internally
@@ -261,6 +336,50 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
     return dup;
   }
 
+  /**
+   * Creates a copy of this item with id number p_id_no for the board p_board, which may be a
+   * structural copy of the board of this item. The geometry of this item is not changed and is
+   * shared with the copy, its caches are filled in a thread safe way. Returns null, if this item cannot be copied.
+   */
+  Item copy_for_board(BasicBoard p_board, int p_id_no)
+  {
+    Item dup = copy(p_id_no);
+    if (dup != null)
+    {
+      dup.board = p_board;
+      dup.smallest_clearance = this.smallest_clearance;
+    }
+    return dup;
+  }
+
+  /**
+   * Takes over the precalculated shapes of p_source in p_source_tree as the shapes of this item in
+   * p_tree, so that they need not be calculated again. p_tree must be compensated for the same
+   * clearance class as p_source_tree.
+   */
+  void share_precalculated_tree_shapes(Item p_source, ShapeTree p_source_tree, ShapeTree p_tree)
+  {
+    if (p_source.search_trees_info == null)
+    {
+      return;
+    }
+    TileShape[] source_shapes = p_source.search_trees_info.get_precalculated_tree_shapes(p_source_tree, p_source.derived_data_generation);
+    if (source_shapes == null)
+    {
+      return;
+    }
+    if (this.search_trees_info == null)
+    {
+      this.search_trees_info = new ItemSearchTreesInfo();
+    }
+    TreeShapeStore shape_store = null;
+    if (p_source.search_trees_info.tree_shapes_evictable(p_source_tree))
+    {
+      shape_store = this.board.search_tree_manager.get_tree_shape_store();
+    }
+    this.search_trees_info.set_precalculated_tree_shapes(source_shapes, p_tree, this.derived_data_generation, shape_store);
+  }
+
   /**
    * returns true, if the layer range of this item contains p_layer
    */
@@ -641,11 +760,20 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
    */
   public Set<Item> get_connected_set(int p_net_no, boolean p_stop_at_plane)
   {
-    Set<Item> result = new TreeSet<>();
+    Set<Item> result;
     if (p_net_no > 0 && !this.contains_net(p_net_no))
     {
-      return result;
+      return new TreeSet<>();
     }
+    if (p_net_no > 0 && !p_stop_at_plane && this.board != null && this.is_on_the_board())
+    {
+      result = this.board.get_connectivity_index().get_connected_set(this, p_net_no);
+      if (result != null)
+      {
+        return result;
+      }
+    }
+    result = new TreeSet<>();
     result.add(this);
     get_connected_set_recu(result, p_net_no, p_stop_at_plane);
     return result;
@@ -1056,7 +1184,16 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
       // copy remaining elements if present
       System.arraycopy(this.net_no_arr, found_index + 1, new_net_no_arr, found_index, new_net_no_arr.length - found_index);
     }
+    boolean entered = this.board != null && this.is_on_the_board();
+    if (entered)
+    {
+      board.item_leaving_search_trees(this);
+    }
     this.net_no_arr = new_net_no_arr;
+    if (entered)
+    {
+      board.item_entered_search_trees(this);
+    }
     return true;
   }
 
@@ -1127,6 +1264,11 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
       return;
     }
     board.item_list.save_for_undo(this);
+    boolean entered = this.is_on_the_board();
+    if (entered)
+    {
+      board.item_leaving_search_trees(this);
+    }
     if (p_net_no <= 0)
     {
       net_no_arr = new int[0];
@@ -1143,6 +1285,10 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
       }
       net_no_arr[0] = p_net_no;
     }
+    if (entered)
+    {
+      board.item_entered_search_trees(this);
+    }
   }
 
   /**
@@ -1199,7 +1345,8 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
 
   /**
    * Sets the precalculated tree shapes tree entries for the tree with identification number
-   * p_tree_no.
+   * p_tree_no. The shapes are kept until they are replaced or the derived data is cleared, because
+   * they may differ from the result of calculate_tree_shapes.
    */
   protected void set_precalculated_tree_shapes(TileShape[] p_shapes, ShapeSearchTree p_tree)
   {
@@ -1212,7 +1359,18 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
       FRLogger.warn("Item.set_precalculated_tree_shapes search_trees_info not allocated");
       return;
     }
-    this.search_trees_info.set_precalculated_tree_shapes(p_shapes, p_tree);
+    this.search_trees_info.set_precalculated_tree_shapes(p_shapes, p_tree, this.derived_data_generation, null);
+  }
+
+  /**
+   * Removes the search tree entries and precalculated tree shapes of this item for p_tree.
+   */
+  void remove_search_tree_info(ShapeTree p_tree)
+  {
+    if (this.search_trees_info != null)
+    {
+      this.search_trees_info.remove_tree(p_tree);
+    }
   }
 
   /**
@@ -1220,6 +1378,10 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
    */
   public void clear_search_tree_entries()
   {
+    if (this.search_trees_info != null)
+    {
+      this.search_trees_info.release();
+    }
     this.search_trees_info = null;
   }
 
@@ -1253,14 +1415,12 @@ public abstract class Item implements Drawable, SearchTreeObject, ObjectInfoPane
 
   /**
    * Clear all cached or derived data. so that they have to be recalculated, when they are used next
-   * time.
+   * time. The precalculated tree shapes are invalidated in constant time by starting a new
+   * generation.
    */
   public void clear_derived_data()
   {
-    if (this.search_trees_info != null)
-    {
-      this.search_trees_info.clear_precalculated_tree_shapes();
-    }
+    ++this.derived_data_generation;
     autoroute_info = null;
   }
 
@@ -44,4 +44,10 @@ public class ItemIdNoGenerator implements IdNoGenerator, Serializable
   {
     return last_generated_id_no;
   }
+
+  @Override
+  public void skip_to(int p_no)
+  {
+    last_generated_id_no = Math.max(last_generated_id_no, p_no);
+  }
 }
\ No newline at end of file
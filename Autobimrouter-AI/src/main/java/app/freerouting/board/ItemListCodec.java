@@ -0,0 +1,374 @@
+package app.freerouting.board;
+
+import app.freerouting.geometry.planar.IntPoint;
+import app.freerouting.geometry.planar.Line;
+import app.freerouting.geometry.planar.Point;
+import app.freerouting.geometry.planar.Polyline;
+import app.freerouting.library.Padstack;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compact binary encoding of the traces, vias and pins of a board, which make up most of the items.
+ * Integers are written as variable length numbers, item numbers and coordinates as differences to
+ * the previous value, so that the encoding is much smaller and faster to read than the Java
+ * serialization of the items. Items, which are not defined by integer points, are not encoded.
+ */
+final class ItemListCodec
+{
+  private static final int TRACE = 1;
+  private static final int VIA = 2;
+  private static final int PIN = 3;
+  private static final FixedState[] FIXED_STATES = FixedState.values();
+
+  private long prev_id_no = 0;
+  private long prev_x = 0;
+  private long prev_y = 0;
+
+  private ItemListCodec()
+  {
+  }
+
+  /**
+   * Returns true, if p_item can be stored with this encoding.
+   */
+  static boolean is_encodable(Item p_item)
+  {
+    if (p_item instanceof PolylineTrace curr_trace)
+    {
+      for (Line curr_line : curr_trace.polyline().arr)
+      {
+        if (!(curr_line.a instanceof IntPoint) || !(curr_line.b instanceof IntPoint))
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (p_item instanceof Via curr_via)
+    {
+      return curr_via.get_padstack() != null && curr_via.get_center() instanceof IntPoint;
+    }
+    return p_item instanceof Pin;
+  }
+
+  /**
+   * Encodes p_items, which must be encodable.
+   */
+  static byte[] encode(Collection<Item> p_items) throws IOException
+  {
+    ByteArrayOutputStream output_stream = new ByteArrayOutputStream(16 * p_items.size() + 16);
+    DataOutputStream data_stream = new DataOutputStream(output_stream);
+    ItemListCodec codec = new ItemListCodec();
+    write_varint(data_stream, p_items.size());
+    for (Item curr_item : p_items)
+    {
+      codec.write_item(data_stream, curr_item);
+    }
+    data_stream.close();
+    return output_stream.toByteArray();
+  }
+
+  /**
+   * Decodes the items in p_data and stores them in the item list of p_board without inserting them
+   * into the search trees.
+   */
+  static void decode(byte[] p_data, BasicBoard p_board) throws IOException
+  {
+    DataInputStream data_stream = new DataInputStream(new ByteArrayInputStream(p_data));
+    for (Item curr_item : read_items(data_stream, p_board))
+    {
+      p_board.item_list.insert(curr_item);
+    }
+  }
+
+  /**
+   * Encodes the id numbers of the items in p_removed_id_nos and the items in p_inserted_items, which
+   * must be encodable traces and vias, as a change of a board.
+   */
+  static byte[] encode_changes(Collection<Integer> p_removed_id_nos, Collection<Item> p_inserted_items) throws IOException
+  {
+    ByteArrayOutputStream output_stream = new ByteArrayOutputStream(4 * p_removed_id_nos.size() + 16 * p_inserted_items.size() + 16);
+    DataOutputStream data_stream = new DataOutputStream(output_stream);
+    write_varint(data_stream, p_removed_id_nos.size());
+    long prev_id_no = 0;
+    for (int curr_id_no : p_removed_id_nos)
+    {
+      write_signed_varint(data_stream, curr_id_no - prev_id_no);
+      prev_id_no = curr_id_no;
+    }
+    ItemListCodec codec = new ItemListCodec();
+    write_varint(data_stream, p_inserted_items.size());
+    for (Item curr_item : p_inserted_items)
+    {
+      codec.write_item(data_stream, curr_item);
+    }
+    data_stream.close();
+    return output_stream.toByteArray();
+  }
+
+  /**
+   * Applies the changes in p_data, which is a sequence of changes created by encode_changes, to the
+   * item list of p_board without updating the search trees. p_items contains the items of the item
+   * list by their id numbers and is updated accordingly.
+   */
+  static void decode_changes(byte[] p_data, BasicBoard p_board, Map<Integer, Item> p_items) throws IOException
+  {
+    ByteArrayInputStream input_stream = new ByteArrayInputStream(p_data);
+    DataInputStream data_stream = new DataInputStream(input_stream);
+    while (input_stream.available() > 0)
+    {
+      int removed_count = read_count(data_stream);
+      long id_no = 0;
+      for (int i = 0; i < removed_count; ++i)
+      {
+        id_no += read_signed_varint(data_stream);
+        Item removed_item = p_items.remove((int) id_no);
+        if (removed_item == null)
+        {
+          throw new IOException("ItemListCodec.decode_changes: removed item not found");
+        }
+        p_board.item_list.delete(removed_item);
+      }
+      for (Item curr_item : read_items(data_stream, p_board))
+      {
+        Item replaced_item = p_items.put(curr_item.get_id_no(), curr_item);
+        if (replaced_item != null)
+        {
+          p_board.item_list.delete(replaced_item);
+        }
+        p_board.item_list.insert(curr_item);
+      }
+    }
+  }
+
+  /**
+   * Reads a count followed by the encoded items and links swapped pins.
+   */
+  private static List<Item> read_items(DataInputStream p_stream, BasicBoard p_board) throws IOException
+  {
+    ItemListCodec codec = new ItemListCodec();
+    int item_count = read_count(p_stream);
+    List<Item> result = new ArrayList<>(Math.min(item_count, 65536));
+    Map<Integer, Pin> pins = new HashMap<>();
+    Map<Pin, Integer> swapped_pins = new HashMap<>();
+    for (int i = 0; i < item_count; ++i)
+    {
+      Item curr_item = codec.read_item(p_stream, p_board, swapped_pins);
+      if (curr_item instanceof Pin curr_pin)
+      {
+        pins.put(curr_pin.get_id_no(), curr_pin);
+      }
+      result.add(curr_item);
+    }
+    for (Map.Entry<Pin, Integer> curr_entry : swapped_pins.entrySet())
+    {
+      Pin changed_to = pins.get(curr_entry.getValue());
+      if (changed_to == null)
+      {
+        throw new IOException("ItemListCodec.decode: swapped pin not found");
+      }
+      curr_entry.getKey().set_changed_to(changed_to);
+    }
+    return result;
+  }
+
+  private void write_item(DataOutputStream p_stream, Item p_item) throws IOException
+  {
+    if (p_item instanceof PolylineTrace curr_trace)
+    {
+      p_stream.writeByte(TRACE);
+      write_common(p_stream, p_item);
+      write_varint(p_stream, curr_trace.get_layer());
+      write_varint(p_stream, curr_trace.get_half_width());
+      Line[] line_arr = curr_trace.polyline().arr;
+      write_varint(p_stream, line_arr.length);
+      for (Line curr_line : line_arr)
+      {
+        write_point(p_stream, (IntPoint) curr_line.a);
+        write_point(p_stream, (IntPoint) curr_line.b);
+      }
+    }
+    else if (p_item instanceof Via curr_via)
+    {
+      p_stream.writeByte(VIA);
+      write_common(p_stream, p_item);
+      write_varint(p_stream, curr_via.get_padstack().no);
+      write_point(p_stream, (IntPoint) curr_via.get_center());
+      p_stream.writeBoolean(curr_via.attach_allowed);
+    }
+    else if (p_item instanceof Pin curr_pin)
+    {
+      p_stream.writeByte(PIN);
+      write_common(p_stream, p_item);
+      write_varint(p_stream, curr_pin.pin_no);
+      Pin changed_to = curr_pin.get_changed_to();
+      p_stream.writeBoolean(changed_to != curr_pin);
+      if (changed_to != curr_pin)
+      {
+        write_signed_varint(p_stream, (long) changed_to.get_id_no() - curr_pin.get_id_no());
+      }
+    }
+    else
+    {
+      throw new IOException("ItemListCodec: unexpected item type " + p_item.getClass().getSimpleName());
+    }
+  }
+
+  private Item read_item(DataInputStream p_stream, BasicBoard p_board, Map<Pin, Integer> p_swapped_pins) throws IOException
+  {
+    int item_type = p_stream.readByte();
+    int id_no = (int) (prev_id_no + read_signed_varint(p_stream));
+    prev_id_no = id_no;
+    int[] net_no_arr = new int[read_count(p_stream)];
+    for (int i = 0; i < net_no_arr.length; ++i)
+    {
+      net_no_arr[i] = (int) read_signed_varint(p_stream);
+    }
+    int clearance_class = (int) read_signed_varint(p_stream);
+    int component_no = (int) read_signed_varint(p_stream);
+    int fixed_state_no = p_stream.readUnsignedByte();
+    if (fixed_state_no > FIXED_STATES.length)
+    {
+      throw new IOException("ItemListCodec.decode: invalid fixed state");
+    }
+    FixedState fixed_state = fixed_state_no == 0 ? null : FIXED_STATES[fixed_state_no - 1];
+    double smallest_clearance = p_stream.readDouble();
+    Item result;
+    if (item_type == TRACE)
+    {
+      int layer = (int) read_varint(p_stream);
+      int half_width = (int) read_varint(p_stream);
+      Line[] line_arr = new Line[read_count(p_stream)];
+      for (int i = 0; i < line_arr.length; ++i)
+      {
+        Point curr_a = read_point(p_stream);
+        line_arr[i] = new Line(curr_a, read_point(p_stream));
+      }
+      result = new PolylineTrace(Polyline.from_normalized_lines(line_arr), layer, half_width, net_no_arr, clearance_class, id_no, component_no, fixed_state, p_board);
+    }
+    else if (item_type == VIA)
+    {
+      Padstack padstack = p_board.library.padstacks.get((int) read_varint(p_stream));
+      if (padstack == null)
+      {
+        throw new IOException("ItemListCodec.decode: via padstack not found");
+      }
+      Point center = read_point(p_stream);
+      result = new Via(padstack, center, net_no_arr, clearance_class, id_no, component_no, fixed_state, p_stream.readBoolean(), p_board);
+    }
+    else if (item_type == PIN)
+    {
+      Pin curr_pin = new Pin(component_no, (int) read_varint(p_stream), net_no_arr, clearance_class, id_no, fixed_state, p_board);
+      if (p_stream.readBoolean())
+      {
+        p_swapped_pins.put(curr_pin, (int) (id_no + read_signed_varint(p_stream)));
+      }
+      result = curr_pin;
+    }
+    else
+    {
+      throw new IOException("ItemListCodec.decode: unknown item type " + item_type);
+    }
+    result.smallest_clearance = smallest_clearance;
+    return result;
+  }
+
+  private void write_common(DataOutputStream p_stream, Item p_item) throws IOException
+  {
+    write_signed_varint(p_stream, p_item.get_id_no() - prev_id_no);
+    prev_id_no = p_item.get_id_no();
+    write_varint(p_stream, p_item.net_no_arr.length);
+    for (int curr_net_no : p_item.net_no_arr)
+    {
+      write_signed_varint(p_stream, curr_net_no);
+    }
+    write_signed_varint(p_stream, p_item.clearance_class_no());
+    write_signed_varint(p_stream, p_item.get_component_no());
+    FixedState fixed_state = p_item.get_fixed_state();
+    p_stream.writeByte(fixed_state == null ? 0 : fixed_state.ordinal() + 1);
+    p_stream.writeDouble(p_item.smallest_clearance);
+  }
+
+  private void write_point(DataOutputStream p_stream, IntPoint p_point) throws IOException
+  {
+    write_signed_varint(p_stream, p_point.x - prev_x);
+    write_signed_varint(p_stream, p_point.y - prev_y);
+    prev_x = p_point.x;
+    prev_y = p_point.y;
+  }
+
+  private IntPoint read_point(DataInputStream p_stream) throws IOException
+  {
+    prev_x += read_signed_varint(p_stream);
+    prev_y += read_signed_varint(p_stream);
+    return new IntPoint((int) prev_x, (int) prev_y);
+  }
+
+  /**
+   * Writes the non negative number p_value with 7 bits per byte, the highest bit marks, that more
+   * bytes follow.
+   */
+  private static void write_varint(DataOutputStream p_stream, long p_value) throws IOException
+  {
+    if (p_value < 0)
+    {
+      throw new IOException("ItemListCodec: negative value " + p_value);
+    }
+    while (p_value >= 0x80)
+    {
+      p_stream.writeByte((int) (p_value & 0x7F) | 0x80);
+      p_value >>>= 7;
+    }
+    p_stream.writeByte((int) p_value);
+  }
+
+  /**
+   * Writes p_value in zigzag encoding, so that numbers with a small absolute value need few bytes.
+   */
+  private static void write_signed_varint(DataOutputStream p_stream, long p_value) throws IOException
+  {
+    long zigzag = (p_value << 1) ^ (p_value >> 63);
+    while ((zigzag & ~0x7FL) != 0)
+    {
+      p_stream.writeByte((int) (zigzag & 0x7F) | 0x80);
+      zigzag >>>= 7;
+    }
+    p_stream.writeByte((int) zigzag);
+  }
+
+  private static long read_varint(DataInputStream p_stream) throws IOException
+  {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7)
+    {
+      int curr_byte = p_stream.readUnsignedByte();
+      result |= (long) (curr_byte & 0x7F) << shift;
+      if ((curr_byte & 0x80) == 0)
+      {
+        return result;
+      }
+    }
+    throw new IOException("ItemListCodec: invalid number");
+  }
+
+  private static long read_signed_varint(DataInputStream p_stream) throws IOException
+  {
+    long zigzag = read_varint(p_stream);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  /**
+   * Reads a count of elements, which must be small enough for an array.
+   */
+  private static int read_count(DataInputStream p_stream) throws IOException
+  {
+    long result = read_varint(p_stream);
+    if (result > Integer.MAX_VALUE - 8)
+    {
+      throw new IOException("ItemListCodec: invalid count");
+    }
+    return (int) result;
+  }
+}
@@ -3,8 +3,7 @@ package app.freerouting.board;
 import app.freerouting.datastructures.ShapeTree;
 import app.freerouting.geometry.planar.TileShape;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * Stores information about the search trees of the board items, which is precalculated for
@@ -12,15 +11,20 @@ import java.util.LinkedList;
  */
 class ItemSearchTreesInfo
 {
+  private static final SearchTreeInfo[] NO_TREES = new SearchTreeInfo[0];
 
-  private final Collection<SearchTreeInfo> tree_list;
+  /**
+   * The information for each search tree. An item is contained in only a few trees, so an array is
+   * more compact and not slower than a collection.
+   */
+  private SearchTreeInfo[] tree_arr;
 
   /**
    * Creates a new instance of ItemSearchTreeEntries
    */
   public ItemSearchTreesInfo()
   {
-    this.tree_list = new LinkedList<>();
+    this.tree_arr = NO_TREES;
   }
 
   /**
@@ -29,14 +33,12 @@ class ItemSearchTreesInfo
    */
   public ShapeTree.Leaf[] get_tree_entries(ShapeTree p_tree)
   {
-    for (SearchTreeInfo curr_tree_info : this.tree_list)
+    SearchTreeInfo curr_tree_info = find(p_tree);
+    if (curr_tree_info == null)
     {
-      if (curr_tree_info.tree == p_tree)
-      {
-        return curr_tree_info.entry_arr;
-      }
+      return null;
     }
-    return null;
+    return curr_tree_info.entry_arr;
   }
 
   /**
@@ -44,76 +46,145 @@ class ItemSearchTreesInfo
    */
   public void set_tree_entries(ShapeTree.Leaf[] p_tree_entries, ShapeTree p_tree)
   {
-    for (SearchTreeInfo curr_tree_info : this.tree_list)
+    find_or_add(p_tree).entry_arr = p_tree_entries;
+  }
+
+  /**
+   * Returns the precalculated tiles shapes for the tree p_tree, or null, if the tile shapes of this
+   * tree are not yet precalculated, were evicted from the tree shape store, or were calculated for
+   * an older generation of the derived data of the item than p_generation.
+   */
+  public TileShape[] get_precalculated_tree_shapes(ShapeTree p_tree, int p_generation)
+  {
+    SearchTreeInfo curr_tree_info = find(p_tree);
+    if (curr_tree_info == null || curr_tree_info.generation != p_generation)
     {
-      if (curr_tree_info.tree == p_tree)
-      {
-        curr_tree_info.entry_arr = p_tree_entries;
-        return;
-      }
+      return null;
     }
-    SearchTreeInfo new_tree_info = new SearchTreeInfo(p_tree);
-    new_tree_info.entry_arr = p_tree_entries;
-    this.tree_list.add(new_tree_info);
+    TileShape[] result = curr_tree_info.precalculated_tree_shapes;
+    if (result != null && !curr_tree_info.referenced)
+    {
+      curr_tree_info.referenced = true;
+    }
+    return result;
   }
 
   /**
-   * Returns the precalculated tiles shapes for the tree with identification number p_tree_no, or
-   * null, if the tile shapes of this tree are not yet precalculated.
+   * Sets the precalculated tile shapes for the tree p_tree. If p_store != null, the shapes are
+   * registered in p_store and may be evicted, so p_shapes must be the result of
+   * Item.calculate_tree_shapes. Otherwise the shapes are kept until they are replaced or the derived
+   * data of the item is cleared.
    */
-  public TileShape[] get_precalculated_tree_shapes(ShapeTree p_tree)
+  public void set_precalculated_tree_shapes(TileShape[] p_tile_shapes, ShapeTree p_tree, int p_generation, TreeShapeStore p_store)
   {
-    for (SearchTreeInfo curr_tree_info : this.tree_list)
+    SearchTreeInfo curr_tree_info = find_or_add(p_tree);
+    curr_tree_info.precalculated_tree_shapes = p_tile_shapes;
+    curr_tree_info.generation = p_generation;
+    curr_tree_info.store_slot = -1;
+    if (p_store != null && p_tile_shapes != null)
     {
-      if (curr_tree_info.tree == p_tree)
-      {
-        return curr_tree_info.precalculated_tree_shapes;
-      }
+      p_store.register(curr_tree_info, p_tile_shapes.length);
     }
-    return null;
   }
 
   /**
-   * Sets the item tree entries for the tree with identification number p_tree_no.
+   * Returns true, if the precalculated tile shapes for the tree p_tree are registered in a tree
+   * shape store and may be calculated again after an eviction.
+   */
+  public boolean tree_shapes_evictable(ShapeTree p_tree)
+  {
+    SearchTreeInfo curr_tree_info = find(p_tree);
+    return curr_tree_info != null && curr_tree_info.store_slot >= 0;
+  }
+
+  /**
+   * Removes the stored information for the search tree p_tree, for example after the tree was
+   * discarded.
    */
-  public void set_precalculated_tree_shapes(TileShape[] p_tile_shapes, ShapeTree p_tree)
+  public void remove_tree(ShapeTree p_tree)
   {
-    for (SearchTreeInfo curr_tree_info : this.tree_list)
+    for (int i = 0; i < tree_arr.length; ++i)
     {
-      if (curr_tree_info.tree == p_tree)
+      if (tree_arr[i].tree == p_tree)
       {
-        curr_tree_info.precalculated_tree_shapes = p_tile_shapes;
+        tree_arr[i].release();
+        SearchTreeInfo[] new_tree_arr = new SearchTreeInfo[tree_arr.length - 1];
+        System.arraycopy(tree_arr, 0, new_tree_arr, 0, i);
+        System.arraycopy(tree_arr, i + 1, new_tree_arr, i, new_tree_arr.length - i);
+        tree_arr = new_tree_arr;
         return;
       }
     }
-    SearchTreeInfo new_tree_info = new SearchTreeInfo(p_tree);
-    new_tree_info.precalculated_tree_shapes = p_tile_shapes;
-    this.tree_list.add(new_tree_info);
   }
 
   /**
-   * clears the stored information about the precalculated tree shapes for all search trees.
+   * Releases the stored information for all search trees, so that the tree shape store can drop
+   * the shapes of this item at its next sweep.
    */
-  public void clear_precalculated_tree_shapes()
+  public void release()
   {
-    for (SearchTreeInfo curr_tree_info : this.tree_list)
+    for (SearchTreeInfo curr_tree_info : tree_arr)
     {
+      curr_tree_info.release();
+    }
+    tree_arr = NO_TREES;
+  }
 
-      curr_tree_info.precalculated_tree_shapes = null;
+  private SearchTreeInfo find(ShapeTree p_tree)
+  {
+    for (SearchTreeInfo curr_tree_info : tree_arr)
+    {
+      if (curr_tree_info.tree == p_tree)
+      {
+        return curr_tree_info;
+      }
     }
+    return null;
+  }
+
+  private SearchTreeInfo find_or_add(ShapeTree p_tree)
+  {
+    SearchTreeInfo result = find(p_tree);
+    if (result == null)
+    {
+      result = new SearchTreeInfo(p_tree);
+      tree_arr = Arrays.copyOf(tree_arr, tree_arr.length + 1);
+      tree_arr[tree_arr.length - 1] = result;
+    }
+    return result;
   }
 
-  private static class SearchTreeInfo
+  static class SearchTreeInfo
   {
     final ShapeTree tree;
     ShapeTree.Leaf[] entry_arr;
     TileShape[] precalculated_tree_shapes;
+    /**
+     * The generation of the derived data of the item, for which the tree shapes were calculated.
+     */
+    int generation;
+    /**
+     * The slot of the tree shapes in the tree shape store, or -1, if they are not registered.
+     */
+    int store_slot;
+    /**
+     * Set, when the tree shapes are used, and reset by the sweeps of the tree shape store.
+     */
+    boolean referenced;
 
     SearchTreeInfo(ShapeTree p_tree)
     {
       tree = p_tree;
       entry_arr = null;
       precalculated_tree_shapes = null;
+      store_slot = -1;
+    }
+
+    void release()
+    {
+      entry_arr = null;
+      precalculated_tree_shapes = null;
+      store_slot = -1;
     }
   }
-}
\ No newline at end of file
+}
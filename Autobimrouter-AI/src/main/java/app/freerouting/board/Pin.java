@@ -548,6 +548,26 @@ public class Pin extends DrillItem implements Serializable
     return true;
   }
 
+  /**
+   * Takes over the pin swap of p_original, whose copy this pin is. p_copies maps the items of the
+   * board of p_original to their copies.
+   */
+  void copy_pin_swap(Pin p_original, Map<Item, Item> p_copies)
+  {
+    if (p_original.changed_to != p_original && p_copies.get(p_original.changed_to) instanceof Pin changed_to_copy)
+    {
+      this.changed_to = changed_to_copy;
+    }
+  }
+
+  /**
+   * Restores the pin, this pin was changed to by pin swapping, when reading a stored board.
+   */
+  void set_changed_to(Pin p_pin)
+  {
+    this.changed_to = p_pin;
+  }
+
   /**
    * Returns the pin, this pin was changed to by pin swapping, or this pin, if it was not swapped.
    */
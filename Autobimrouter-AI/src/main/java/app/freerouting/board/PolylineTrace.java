@@ -124,6 +124,18 @@ public class PolylineTrace extends Trace implements Serializable
     return lines;
   }
 
+  @Override
+  long geometry_fingerprint(long p_hash)
+  {
+    long result = mix_fingerprint(p_hash, this.get_half_width());
+    for (Line curr_line : this.lines.arr)
+    {
+      result = mix_fingerprint(result, curr_line.a);
+      result = mix_fingerprint(result, curr_line.b);
+    }
+    return result;
+  }
+
   @Override
   protected TileShape[] calculate_tree_shapes(ShapeSearchTree p_search_tree)
   {
@@ -302,9 +314,11 @@ public class PolylineTrace extends Trace implements Serializable
       {
         --to_no;
       }
+      board.item_leaving_search_trees(this);
       board.search_tree_manager.merge_entries_in_front(other_trace, this, joined_polyline, other_lines.length - 3, to_no);
       other_trace.clear_search_tree_entries();
       this.lines = joined_polyline;
+      board.item_entered_search_trees(this);
     }
     if (this.lines.arr.length < 3)
     {
@@ -415,9 +429,11 @@ public class PolylineTrace extends Trace implements Serializable
       {
         --to_no;
       }
+      board.item_leaving_search_trees(this);
       board.search_tree_manager.merge_entries_at_end(other_trace, this, joined_polyline, this_lines.length - 3, to_no);
       other_trace.clear_search_tree_entries();
       this.lines = joined_polyline;
+      board.item_entered_search_trees(this);
     }
     if (this.lines.arr.length < 3)
     {
@@ -981,8 +997,10 @@ public class PolylineTrace extends Trace implements Serializable
     }
     int keep_at_start_count = Math.max(index_of_first_different_line - 2, 0);
     int keep_at_end_count = Math.max(p_new_polyline.arr.length - index_of_last_different_line - 3, 0);
+    board.item_leaving_search_trees(this);
     board.search_tree_manager.change_entries(this, p_new_polyline, keep_at_start_count, keep_at_end_count);
     lines = p_new_polyline;
+    board.item_entered_search_trees(this);
 
     // let the observers synchronize the changes
     board.communication.observers.notify_changed(this);
@@ -38,6 +38,10 @@ public class RoutingBoard extends BasicBoard implements Serializable
   private transient AutorouteEngine autoroute_engine;
   private transient Item shove_failing_obstacle;
   private transient int shove_failing_layer = -1;
+  /**
+   * The journals recording the inserted and removed items.
+   */
+  private transient Collection<ChangeJournal> change_journals;
 
   /**
    * Creates a new instance of a routing Board with surrounding box p_bounding_box Rules contains
@@ -49,6 +53,58 @@ public class RoutingBoard extends BasicBoard implements Serializable
     super(p_bounding_box, p_layer_structure, p_outline_shapes, p_outline_cl_class_no, p_rules, p_board_communication);
   }
 
+  /**
+   * Starts recording the items inserted into and removed from this board in a new change journal,
+   * which is returned. Several journals may be recorded at the same time.
+   */
+  public ChangeJournal start_change_journal()
+  {
+    if (this.change_journals == null)
+    {
+      this.change_journals = new ArrayList<>(2);
+    }
+    ChangeJournal new_journal = new ChangeJournal();
+    this.change_journals.add(new_journal);
+    return new_journal;
+  }
+
+  /**
+   * Stops the recording of p_journal.
+   */
+  public void stop_change_journal(ChangeJournal p_journal)
+  {
+    if (this.change_journals != null)
+    {
+      this.change_journals.remove(p_journal);
+    }
+  }
+
+  @Override
+  void journal_item_inserted(Item p_item)
+  {
+    if (this.change_journals == null)
+    {
+      return;
+    }
+    for (ChangeJournal curr_journal : this.change_journals)
+    {
+      curr_journal.item_inserted(p_item);
+    }
+  }
+
+  @Override
+  void journal_item_removed(Item p_item)
+  {
+    if (this.change_journals == null)
+    {
+      return;
+    }
+    for (ChangeJournal curr_journal : this.change_journals)
+    {
+      curr_journal.item_removed(p_item);
+    }
+  }
+
   /**
    * Maintains the auto-router database after p_item is inserted, changed, or deleted.
    */
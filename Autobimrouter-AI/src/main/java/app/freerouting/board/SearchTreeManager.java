@@ -6,16 +6,67 @@ import app.freerouting.geometry.planar.FortyfiveDegreeBoundingDirections;
 import app.freerouting.geometry.planar.Polyline;
 import app.freerouting.logger.FRLogger;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class SearchTreeManager
 {
-  private final Collection<ShapeSearchTree> compensated_search_trees;
+  /**
+   * The default for the maximum total entry count of the cached autoroute trees apart from the
+   * default tree.
+   */
+  public static final int DEFAULT_MAX_AUTOROUTE_TREE_ENTRY_COUNT = 2000000;
+  /**
+   * The minimum number of items, whose tree shapes are calculated by one thread, when a new tree is
+   * built.
+   */
+  private static final int MIN_ITEMS_PER_BUILD_THREAD = 500;
+  /**
+   * The time, after which an idle thread calculating tree shapes terminates.
+   */
+  private static final long TREE_BUILD_THREAD_KEEP_ALIVE_SECONDS = 60;
+  /**
+   * The search trees by their compensated clearance class number, the least recently used tree
+   * first. Contains the default tree.
+   */
+  private final Map<Integer, ShapeSearchTree> compensated_search_trees;
   private final BasicBoard board;
   private ShapeSearchTree default_tree;
   private boolean clearance_compensation_used;
+  /**
+   * If true, the search trees store the shapes on each layer in a separate partition.
+   */
+  private boolean partition_by_layer = false;
+  /**
+   * If the total entry count of the autoroute trees apart from the default tree exceeds this value,
+   * the least recently used trees are removed. They are built again, when they are needed next time.
+   */
+  private int max_autoroute_tree_entry_count = DEFAULT_MAX_AUTOROUTE_TREE_ENTRY_COUNT;
+  /**
+   * The number of threads used for calculating the tree shapes of the items, when a new autoroute
+   * tree is built.
+   */
+  private int tree_build_thread_count = 1;
+  /**
+   * The threads calculating the tree shapes, when a new autoroute tree is built. Created on first
+   * use with tree_build_thread_count threads, which terminate after being idle for a while, and
+   * resized, when the thread count changes.
+   */
+  private ThreadPoolExecutor tree_build_pool;
+  /**
+   * Limits the total count of the precalculated tree shapes of the board items.
+   */
+  private final TreeShapeStore tree_shape_store = new TreeShapeStore();
 
   /**
    * Creates a new instance of SearchTreeManager
@@ -23,9 +74,9 @@ public class SearchTreeManager
   public SearchTreeManager(BasicBoard p_board)
   {
     board = p_board;
-    compensated_search_trees = new LinkedList<>();
-    default_tree = new ShapeSearchTree(FortyfiveDegreeBoundingDirections.INSTANCE, p_board, 0);
-    compensated_search_trees.add(default_tree);
+    compensated_search_trees = new LinkedHashMap<>(16, 0.75f, true);
+    default_tree = new ShapeSearchTree(FortyfiveDegreeBoundingDirections.INSTANCE, p_board, 0, partition_by_layer);
+    compensated_search_trees.put(default_tree.compensated_clearance_class_no, default_tree);
     this.clearance_compensation_used = false;
   }
 
@@ -34,11 +85,60 @@ public class SearchTreeManager
    */
   public void insert(Item p_item)
   {
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
       curr_tree.insert(p_item);
     }
     p_item.set_on_the_board(true);
+    this.board.item_entered_search_trees(p_item);
+  }
+
+  /**
+   * Inserts the tree shapes of all items in p_items into all active search trees. Empty trees are
+   * bulk loaded, which is faster than inserting the items one by one and results in balanced trees.
+   */
+  void insert_all(Collection<Item> p_items)
+  {
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
+    {
+      curr_tree.insert_all(p_items);
+    }
+    for (Item curr_item : p_items)
+    {
+      curr_item.set_on_the_board(true);
+      this.board.item_entered_search_trees(curr_item);
+    }
+  }
+
+  /**
+   * Inserts p_items, which are on the board but not yet in the search trees, into all active search
+   * trees. If they are more than the items already in the trees, the trees are emptied and bulk
+   * loaded with all board items, after the tree shapes were calculated in parallel.
+   */
+  void insert_deferred(List<Item> p_items)
+  {
+    if (p_items.isEmpty())
+    {
+      return;
+    }
+    List<Item> board_items = new ArrayList<>(this.board.get_items());
+    if (2 * p_items.size() < board_items.size())
+    {
+      for (Item curr_item : p_items)
+      {
+        this.insert(curr_item);
+      }
+      return;
+    }
+    for (Item curr_item : board_items)
+    {
+      this.remove(curr_item);
+    }
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
+    {
+      precalculate_tree_shapes(curr_tree, board_items);
+    }
+    this.insert_all(board_items);
   }
 
   /**
@@ -50,7 +150,7 @@ public class SearchTreeManager
     {
       return;
     }
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
 
       ShapeTree.Leaf[] curr_tree_entries = p_item.get_search_tree_entries(curr_tree);
@@ -63,6 +163,35 @@ public class SearchTreeManager
     }
     p_item.clear_search_tree_entries();
     p_item.set_on_the_board(false);
+    this.board.item_leaving_search_trees(p_item);
+  }
+
+  /**
+   * Inserts the copied items in p_item_map into the default tree by copying the structure of the
+   * default tree of p_from_manager. The precalculated tree shapes of the original items are reused.
+   * Falls back to the normal insertion, if the structure of the other tree cannot be copied. Both
+   * managers must use the same clearance compensation.
+   */
+  void insert_copied_items(SearchTreeManager p_from_manager, Map<Item, Item> p_item_map)
+  {
+    ShapeSearchTree from_tree = p_from_manager.default_tree;
+    for (Map.Entry<Item, Item> curr_entry : p_item_map.entrySet())
+    {
+      curr_entry.getValue().share_precalculated_tree_shapes(curr_entry.getKey(), from_tree, this.default_tree);
+    }
+    if (this.compensated_search_trees.size() == 1 && this.default_tree.copy_structure_from(from_tree, p_item_map))
+    {
+      for (Item curr_item : p_item_map.values())
+      {
+        curr_item.set_on_the_board(true);
+        this.board.item_entered_search_trees(curr_item);
+      }
+      return;
+    }
+    for (Item curr_item : p_item_map.values())
+    {
+      this.insert(curr_item);
+    }
   }
 
   /**
@@ -76,7 +205,7 @@ public class SearchTreeManager
   boolean validate_entries(Item p_item)
   {
     boolean result = true;
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
 
       if (!curr_tree.validate_entries(p_item))
@@ -107,10 +236,42 @@ public class SearchTreeManager
     }
 
     this.clearance_compensation_used = p_value;
+    rebuild_default_tree();
+  }
+
+  /**
+   * Returns true, if the search trees store the shapes on each layer in a separate partition.
+   */
+  public boolean is_partition_by_layer()
+  {
+    return this.partition_by_layer;
+  }
+
+  /**
+   * Sets, if the search trees store the shapes on each layer in a separate partition. Then
+   * searches on a single layer, for example in the maze search, the shove and the pull tight
+   * algorithm, visit only the shapes on that layer. Useful for boards with many layers. The search
+   * trees are rebuilt, if the value changes.
+   */
+  public void set_partition_by_layer(boolean p_value)
+  {
+    if (this.partition_by_layer == p_value)
+    {
+      return;
+    }
+    this.partition_by_layer = p_value;
+    rebuild_default_tree();
+  }
+
+  /**
+   * Removes all search trees and inserts the board items into a new default tree.
+   */
+  private void rebuild_default_tree()
+  {
     remove_all_board_items();
     this.compensated_search_trees.clear();
     int compensated_clearance_class_no;
-    if (p_value)
+    if (this.clearance_compensation_used)
     {
       compensated_clearance_class_no = 1;
     }
@@ -118,86 +279,246 @@ public class SearchTreeManager
     {
       compensated_clearance_class_no = 0;
     }
-    default_tree = new ShapeSearchTree(FortyfiveDegreeBoundingDirections.INSTANCE, this.board, compensated_clearance_class_no);
-    this.compensated_search_trees.add(default_tree);
+    default_tree = new ShapeSearchTree(FortyfiveDegreeBoundingDirections.INSTANCE, this.board, compensated_clearance_class_no, this.partition_by_layer);
+    this.compensated_search_trees.put(compensated_clearance_class_no, default_tree);
     insert_all_board_items();
   }
 
   /**
-   * Actions to be done, when a value in the clearance matrix is changed interactively.
+   * Actions to be done, when a value in the clearance matrix is changed interactively. Only the
+   * items of the clearance classes, whose compensation values have changed, are reinserted into the
+   * search trees.
    */
   public void clearance_value_changed()
   {
-    // delete all trees except the default tree
-    this.compensated_search_trees.removeIf(t -> t.compensated_clearance_class_no != default_tree.compensated_clearance_class_no);
-    if (this.clearance_compensation_used)
+    int class_count = this.board.rules.clearance_matrix.get_class_count();
+    Collection<Item> board_items = this.board.get_items();
+    Iterator<ShapeSearchTree> it = this.compensated_search_trees.values().iterator();
+    while (it.hasNext())
     {
-      remove_all_board_items();
-      insert_all_board_items();
+      ShapeSearchTree curr_tree = it.next();
+      if (curr_tree != default_tree && curr_tree.compensated_clearance_class_no >= class_count)
+      {
+        it.remove();
+        release_tree(curr_tree);
+        continue;
+      }
+      boolean[] changed_classes = curr_tree.update_compensation_values();
+      for (Item curr_item : board_items)
+      {
+        int curr_class_no = curr_item.clearance_class_no();
+        if (curr_item.is_on_the_board() && curr_class_no >= 0 && curr_class_no < changed_classes.length && changed_classes[curr_class_no])
+        {
+          reinsert(curr_item, curr_tree);
+        }
+      }
     }
   }
 
   /**
-   * Actions to be done, when a new clearance class is removed interactively.
+   * Actions to be done, when a new clearance class is removed interactively. Because the numbers of
+   * the following clearance classes are decremented, their trees are removed too.
    */
   public void clearance_class_removed(int p_no)
   {
-    Iterator<ShapeSearchTree> it = this.compensated_search_trees.iterator();
     if (p_no == default_tree.compensated_clearance_class_no)
     {
       FRLogger.warn("SearchtreeManager.clearance_class_removed: unable to remove default tree");
       return;
     }
+    Iterator<ShapeSearchTree> it = this.compensated_search_trees.values().iterator();
     while (it.hasNext())
     {
       ShapeSearchTree curr_tree = it.next();
-      if (curr_tree.compensated_clearance_class_no == p_no)
+      if (curr_tree != default_tree && curr_tree.compensated_clearance_class_no >= p_no)
       {
         it.remove();
+        release_tree(curr_tree);
       }
     }
   }
 
   /**
    * Returns the tree compensated for the clearance class with number p_clearance_class_no.
-   * Initialized the tree, if it is not yet allocated.
+   * Initialized the tree, if it is not yet allocated. The least recently used trees are removed, if
+   * the total entry count of the trees exceeds max_autoroute_tree_entry_count.
    */
   public ShapeSearchTree get_autoroute_tree(int p_clearance_class_no)
   {
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    ShapeSearchTree curr_autoroute_tree = this.compensated_search_trees.get(p_clearance_class_no);
+    if (curr_autoroute_tree != null)
     {
-      if (curr_tree.compensated_clearance_class_no == p_clearance_class_no)
-      {
-        return curr_tree;
-      }
+      return curr_autoroute_tree;
     }
     // tree is not yet initialized
-    ShapeSearchTree curr_autoroute_tree;
     boolean fast_algorithm = !this.board.rules.get_slow_autoroute_algorithm();
     if (fast_algorithm && this.board.rules.get_trace_angle_restriction() == AngleRestriction.NINETY_DEGREE)
     {
-      curr_autoroute_tree = new ShapeSearchTree90Degree(this.board, p_clearance_class_no);
+      curr_autoroute_tree = new ShapeSearchTree90Degree(this.board, p_clearance_class_no, this.partition_by_layer);
     }
     else if (fast_algorithm && this.board.rules.get_trace_angle_restriction() == AngleRestriction.FORTYFIVE_DEGREE)
     {
-      curr_autoroute_tree = new ShapeSearchTree45Degree(this.board, p_clearance_class_no);
+      curr_autoroute_tree = new ShapeSearchTree45Degree(this.board, p_clearance_class_no, this.partition_by_layer);
     }
     else
     {
-      curr_autoroute_tree = new ShapeSearchTree(FortyfiveDegreeBoundingDirections.INSTANCE, this.board, p_clearance_class_no);
+      curr_autoroute_tree = new ShapeSearchTree(FortyfiveDegreeBoundingDirections.INSTANCE, this.board, p_clearance_class_no, this.partition_by_layer);
     }
-    this.compensated_search_trees.add(curr_autoroute_tree);
-    Iterator<UndoableObjects.UndoableObjectNode> it = this.board.item_list.start_read_object();
-    for (; ; )
+    List<Item> board_items = new ArrayList<>(this.board.get_items());
+    precalculate_tree_shapes(curr_autoroute_tree, board_items);
+    curr_autoroute_tree.insert_all(board_items);
+    this.compensated_search_trees.put(p_clearance_class_no, curr_autoroute_tree);
+    evict_autoroute_trees(curr_autoroute_tree);
+    return curr_autoroute_tree;
+  }
+
+  /**
+   * Sets the maximum total entry count of the cached autoroute trees apart from the default tree.
+   * The tree used at the moment is always kept.
+   */
+  public void set_max_autoroute_tree_entry_count(int p_value)
+  {
+    this.max_autoroute_tree_entry_count = Math.max(p_value, 0);
+  }
+
+  /**
+   * Sets the maximum total count of the precalculated tree shapes of the board items. Shapes not
+   * used recently are evicted above this count and calculated again, when they are needed.
+   */
+  public void set_max_tree_shape_count(int p_value)
+  {
+    this.tree_shape_store.set_max_shape_count(p_value);
+  }
+
+  TreeShapeStore get_tree_shape_store()
+  {
+    return this.tree_shape_store;
+  }
+
+  /**
+   * Sets the number of threads used for calculating the tree shapes, when a new autoroute tree is
+   * built.
+   */
+  public void set_tree_build_thread_count(int p_value)
+  {
+    this.tree_build_thread_count = Math.max(p_value, 1);
+    ThreadPoolExecutor pool = this.tree_build_pool;
+    if (pool != null)
     {
-      Item curr_item = (Item) this.board.item_list.read_object(it);
-      if (curr_item == null)
+      // the core size must not exceed the maximum size at any time
+      if (this.tree_build_thread_count > pool.getMaximumPoolSize())
       {
-        break;
+        pool.setMaximumPoolSize(this.tree_build_thread_count);
+        pool.setCorePoolSize(this.tree_build_thread_count);
+      }
+      else
+      {
+        pool.setCorePoolSize(this.tree_build_thread_count);
+        pool.setMaximumPoolSize(this.tree_build_thread_count);
       }
-      curr_autoroute_tree.insert(curr_item);
     }
-    return curr_autoroute_tree;
+  }
+
+  /**
+   * Removes the least recently used trees apart from the default tree and p_keep_tree, until the
+   * total entry count of the trees apart from the default tree is not bigger than
+   * max_autoroute_tree_entry_count.
+   */
+  private void evict_autoroute_trees(ShapeSearchTree p_keep_tree)
+  {
+    long entry_count = 0;
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
+    {
+      if (curr_tree != default_tree)
+      {
+        entry_count += curr_tree.size();
+      }
+    }
+    Iterator<ShapeSearchTree> it = this.compensated_search_trees.values().iterator();
+    while (entry_count > this.max_autoroute_tree_entry_count && it.hasNext())
+    {
+      ShapeSearchTree curr_tree = it.next();
+      if (curr_tree == default_tree || curr_tree == p_keep_tree)
+      {
+        continue;
+      }
+      entry_count -= curr_tree.size();
+      it.remove();
+      release_tree(curr_tree);
+    }
+  }
+
+  /**
+   * Calculates the tree shapes of p_items for p_tree in parallel, if there are enough items for
+   * more than one thread. Each thread handles a range of the items.
+   */
+  private void precalculate_tree_shapes(ShapeSearchTree p_tree, List<Item> p_items)
+  {
+    int thread_count = Math.min(this.tree_build_thread_count, p_items.size() / MIN_ITEMS_PER_BUILD_THREAD);
+    if (thread_count <= 1)
+    {
+      return;
+    }
+    List<Callable<Object>> jobs = new ArrayList<>(thread_count);
+    for (int i = 0; i < thread_count; ++i)
+    {
+      int from_index = (int) ((long) i * p_items.size() / thread_count);
+      int to_index = (int) ((long) (i + 1) * p_items.size() / thread_count);
+      jobs.add(() ->
+      {
+        for (int j = from_index; j < to_index; ++j)
+        {
+          p_items.get(j).tree_shape_count(p_tree);
+        }
+        return null;
+      });
+    }
+    if (this.tree_build_pool == null)
+    {
+      this.tree_build_pool = new ThreadPoolExecutor(this.tree_build_thread_count, this.tree_build_thread_count, TREE_BUILD_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+      {
+        Thread t = new Thread(r, "Search tree builder");
+        t.setDaemon(true);
+        return t;
+      });
+      this.tree_build_pool.allowCoreThreadTimeOut(true);
+    }
+    try
+    {
+      for (Future<Object> curr_result : this.tree_build_pool.invokeAll(jobs))
+      {
+        curr_result.get();
+      }
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e)
+    {
+      // the missing tree shapes are calculated during the insertion
+      FRLogger.error("SearchTreeManager.precalculate_tree_shapes failed", e);
+    }
+  }
+
+  /**
+   * Removes the entries and the precalculated tree shapes for the discarded tree p_tree from the
+   * board items.
+   */
+  private void release_tree(ShapeSearchTree p_tree)
+  {
+    for (Item curr_item : this.board.get_items())
+    {
+      curr_item.remove_search_tree_info(p_tree);
+    }
+  }
+
+  /**
+   * Reinserts p_item into p_tree with recalculated tree shapes.
+   */
+  private void reinsert(Item p_item, ShapeSearchTree p_tree)
+  {
+    p_tree.remove(p_item.get_search_tree_entries(p_tree));
+    p_item.remove_search_tree_info(p_tree);
+    p_tree.insert(p_item);
   }
 
   // ********************************************************************************
@@ -211,7 +532,16 @@ public class SearchTreeManager
    */
   public void reset_compensated_trees()
   {
-    this.compensated_search_trees.removeIf(t -> t != default_tree);
+    Iterator<ShapeSearchTree> it = this.compensated_search_trees.values().iterator();
+    while (it.hasNext())
+    {
+      ShapeSearchTree curr_tree = it.next();
+      if (curr_tree != default_tree)
+      {
+        it.remove();
+        release_tree(curr_tree);
+      }
+    }
   }
 
   /**
@@ -249,17 +579,12 @@ public class SearchTreeManager
       FRLogger.warn("SearchtreeManager.insert_all_board_items: app.freerouting.board is null");
       return;
     }
-    Iterator<UndoableObjects.UndoableObjectNode> it = this.board.item_list.start_read_object();
-    for (; ; )
+    Collection<Item> board_items = this.board.get_items();
+    for (Item curr_item : board_items)
     {
-      Item curr_item = (Item) this.board.item_list.read_object(it);
-      if (curr_item == null)
-      {
-        break;
-      }
       curr_item.clear_derived_data();
-      this.insert(curr_item);
     }
+    this.insert_all(board_items);
   }
 
   /**
@@ -268,7 +593,7 @@ public class SearchTreeManager
    */
   void merge_entries_in_front(PolylineTrace p_from_trace, PolylineTrace p_to_trace, Polyline p_joined_polyline, int p_from_entry_no, int p_to_entry_no)
   {
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
       curr_tree.merge_entries_in_front(p_from_trace, p_to_trace, p_joined_polyline, p_from_entry_no, p_to_entry_no);
     }
@@ -280,7 +605,7 @@ public class SearchTreeManager
    */
   void merge_entries_at_end(PolylineTrace p_from_trace, PolylineTrace p_to_trace, Polyline p_joined_polyline, int p_from_entry_no, int p_to_entry_no)
   {
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
       curr_tree.merge_entries_at_end(p_from_trace, p_to_trace, p_joined_polyline, p_from_entry_no, p_to_entry_no);
     }
@@ -293,7 +618,7 @@ public class SearchTreeManager
    */
   void change_entries(PolylineTrace p_obj, Polyline p_new_polyline, int p_keep_at_start_count, int p_keep_at_end_count)
   {
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
       curr_tree.change_entries(p_obj, p_new_polyline, p_keep_at_start_count, p_keep_at_end_count);
     }
@@ -306,7 +631,7 @@ public class SearchTreeManager
    */
   void reuse_entries_after_cutout(PolylineTrace p_from_trace, PolylineTrace p_start_piece, PolylineTrace p_end_piece)
   {
-    for (ShapeSearchTree curr_tree : compensated_search_trees)
+    for (ShapeSearchTree curr_tree : compensated_search_trees.values())
     {
 
       curr_tree.reuse_entries_after_cutout(p_from_trace, p_start_piece, p_end_piece);
@@ -2,12 +2,14 @@ package app.freerouting.board;
 
 import app.freerouting.autoroute.CompleteFreeSpaceExpansionRoom;
 import app.freerouting.autoroute.IncompleteFreeSpaceExpansionRoom;
+import app.freerouting.datastructures.ArrayStack;
 import app.freerouting.datastructures.MinAreaTree;
 import app.freerouting.datastructures.Signum;
 import app.freerouting.geometry.planar.ConvexShape;
 import app.freerouting.geometry.planar.FloatPoint;
 import app.freerouting.geometry.planar.IntBox;
 import app.freerouting.geometry.planar.IntOctagon;
+import app.freerouting.geometry.planar.IntOctagonBatch;
 import app.freerouting.geometry.planar.Line;
 import app.freerouting.geometry.planar.LineSegment;
 import app.freerouting.geometry.planar.Polyline;
@@ -30,26 +32,118 @@ import java.util.*;
 public class ShapeSearchTree extends MinAreaTree
 {
   /**
-   * used in objects of class EntrySortedByClearance
+   * The batch for the shapes of the result rooms in complete_shape of the current thread.
    */
-  private static int last_generated_id_no = 0;
+  private static final ThreadLocal<IntOctagonBatch> room_shape_batch = ThreadLocal.withInitial(() -> new IntOctagonBatch(16));
   /**
    * The clearance class number for which the shapes of this tree is compensated. If
    * compensated_clearance_class_no = 0, the shapes are not compensated.
    */
   public final int compensated_clearance_class_no;
   protected final BasicBoard board;
+  /**
+   * The clearance compensation values of the clearance classes on each layer, with which the tree
+   * shapes of the items are calculated.
+   */
+  private int[][] compensation_values;
 
   /**
    * Creates a new ShapeSearchTree. p_compensated_clearance_class_no is the clearance class number
    * for which the shapes of this tree is compensated. If p_compensated_clearance_class_no = 0, the
-   * shapes are not compensated.
+   * shapes are not compensated. If p_partition_by_layer, the shapes on each layer are stored in a
+   * separate partition, so that searches on a single layer do not visit the shapes on the other
+   * layers. Shapes with a layer outside the layer range of the board are stored in an additional
+   * last partition, which is searched for all layers.
    */
-  ShapeSearchTree(ShapeBoundingDirections p_directions, BasicBoard p_board, int p_compensated_clearance_class_no)
+  ShapeSearchTree(ShapeBoundingDirections p_directions, BasicBoard p_board, int p_compensated_clearance_class_no, boolean p_partition_by_layer)
   {
-    super(p_directions);
+    super(p_directions, p_partition_by_layer ? p_board.get_layer_count() + 1 : 1);
     this.compensated_clearance_class_no = p_compensated_clearance_class_no;
     board = p_board;
+    this.compensation_values = calculate_compensation_values();
+  }
+
+  /**
+   * Returns true, if the shapes on each layer are stored in a separate partition of this tree.
+   */
+  public boolean is_partitioned_by_layer()
+  {
+    return this.roots.length > 1;
+  }
+
+  @Override
+  protected int partition_no(Storable p_object, int p_index)
+  {
+    int multi_layer_partition_no = this.roots.length - 1;
+    if (multi_layer_partition_no == 0)
+    {
+      return 0;
+    }
+    int layer = ((SearchTreeObject) p_object).shape_layer(p_index);
+    if (layer < 0 || layer >= multi_layer_partition_no)
+    {
+      return multi_layer_partition_no;
+    }
+    return layer;
+  }
+
+  /**
+   * Calls p_visitor for the leaves overlapping with p_bounds in the partitions, which may contain
+   * shapes on layer p_layer, until p_visitor returns false. If p_layer {@literal <} 0, all
+   * partitions are searched.
+   */
+  private void visit_layer_overlaps(RegularTileShape p_bounds, int p_layer, LeafVisitor p_visitor)
+  {
+    int multi_layer_partition_no = this.roots.length - 1;
+    if (p_layer < 0 || p_layer >= multi_layer_partition_no)
+    {
+      visit_overlaps(p_bounds, p_visitor);
+      return;
+    }
+    if (visit_overlaps(p_bounds, p_layer, p_visitor))
+    {
+      visit_overlaps(p_bounds, multi_layer_partition_no, p_visitor);
+    }
+  }
+
+  /**
+   * Returns the leaves overlapping with p_bounds in the partitions, which may contain shapes on
+   * layer p_layer, sorted like the stored objects.
+   */
+  private Set<Leaf> layer_overlaps(RegularTileShape p_bounds, int p_layer)
+  {
+    Set<Leaf> result = new TreeSet<>();
+    visit_layer_overlaps(p_bounds, p_layer, result::add);
+    return result;
+  }
+
+  /**
+   * Pushes the roots of the partitions, which may contain shapes on layer p_layer, onto
+   * p_node_stack. If p_layer {@literal <} 0, the roots of all partitions are pushed.
+   */
+  protected void push_layer_roots(ArrayStack<TreeNode> p_node_stack, int p_layer)
+  {
+    int multi_layer_partition_no = this.roots.length - 1;
+    if (p_layer < 0 || p_layer >= multi_layer_partition_no)
+    {
+      for (int i = multi_layer_partition_no; i >= 0; --i)
+      {
+        if (this.roots[i] != null)
+        {
+          p_node_stack.push(this.roots[i]);
+        }
+      }
+      return;
+    }
+    // the shapes on p_layer are popped first
+    if (this.roots[multi_layer_partition_no] != null)
+    {
+      p_node_stack.push(this.roots[multi_layer_partition_no]);
+    }
+    if (this.roots[p_layer] != null)
+    {
+      p_node_stack.push(this.roots[p_layer]);
+    }
   }
 
   /**
@@ -75,6 +169,41 @@ public class ShapeSearchTree extends MinAreaTree
     return Math.max(result, 0);
   }
 
+  /**
+   * Recalculates the clearance compensation values after a change of the clearance matrix. Returns
+   * for each clearance class, if its compensation value has changed on some layer, so that the tree
+   * shapes of the items with this clearance class have to be recalculated.
+   */
+  boolean[] update_compensation_values()
+  {
+    int[][] new_values = calculate_compensation_values();
+    boolean[] result = new boolean[new_values.length];
+    for (int i = 0; i < new_values.length; ++i)
+    {
+      result[i] = i >= this.compensation_values.length || !Arrays.equals(new_values[i], this.compensation_values[i]);
+    }
+    this.compensation_values = new_values;
+    return result;
+  }
+
+  private int[][] calculate_compensation_values()
+  {
+    if (board.rules == null || this.compensated_clearance_class_no >= board.rules.clearance_matrix.get_class_count())
+    {
+      return new int[0][0];
+    }
+    ClearanceMatrix clearance_matrix = board.rules.clearance_matrix;
+    int[][] result = new int[clearance_matrix.get_class_count()][clearance_matrix.get_layer_count()];
+    for (int i = 0; i < result.length; ++i)
+    {
+      for (int j = 0; j < result[i].length; ++j)
+      {
+        result[i][j] = clearance_compensation_value(i, j);
+      }
+    }
+    return result;
+  }
+
   /**
    * Changes the tree entries from p_keep_at_start_count + 1 to new_shape_count - 1 -
    * keep_at_end_count to p_changed_entries. Special implementation for change_trace for performance
@@ -311,15 +440,15 @@ public class ShapeSearchTree extends MinAreaTree
    */
   public void overlapping_objects(ConvexShape p_shape, int p_layer, int[] p_ignore_net_nos, Set<SearchTreeObject> p_obstacles)
   {
-    Collection<TreeEntry> tree_entries = new LinkedList<>();
-    overlapping_tree_entries(p_shape, p_layer, p_ignore_net_nos, tree_entries);
-    if (p_obstacles != null)
+    if (p_obstacles == null)
     {
-      for (TreeEntry curr_entry : tree_entries)
-      {
-        p_obstacles.add((SearchTreeObject) curr_entry.object);
-      }
+      return;
     }
+    visit_overlapping_tree_entries(p_shape, p_layer, p_ignore_net_nos, (p_object, p_shape_index) ->
+    {
+      p_obstacles.add(p_object);
+      return true;
+    });
   }
 
   /**
@@ -364,45 +493,76 @@ public class ShapeSearchTree extends MinAreaTree
       FRLogger.warn("ShapeSearchTree.overlaps: p_shape not bounded");
       return;
     }
-    Collection<Leaf> tmp_list = this.overlaps(bounds);
+    Collection<Leaf> tmp_list = this.layer_overlaps(bounds, p_layer);
     boolean is_45_degree = p_shape instanceof IntOctagon;
 
     for (Leaf curr_leaf : tmp_list)
     {
-      SearchTreeObject curr_object = (SearchTreeObject) curr_leaf.object;
-      int shape_index = curr_leaf.shape_index_in_object;
-      boolean ignore_object = p_layer >= 0 && curr_object.shape_layer(shape_index) != p_layer;
-      if (!ignore_object)
+      if (is_overlapping_entry(curr_leaf, p_shape, is_45_degree, p_layer, p_ignore_net_nos))
       {
-        for (int i = 0; i < p_ignore_net_nos.length; ++i)
-        {
-          if (!curr_object.is_obstacle(p_ignore_net_nos[i]))
-          {
-            ignore_object = true;
-          }
-        }
+        TreeEntry new_entry = new TreeEntry(curr_leaf.object, curr_leaf.shape_index_in_object);
+        p_tree_entries.add(new_entry);
       }
-      if (!ignore_object)
+    }
+  }
+
+  /**
+   * Calls p_visitor for all tree entries overlapping with p_shape on layer p_layer, until p_visitor
+   * returns false. If p_layer {@literal <} 0, the layer is ignored. tree_entries with object
+   * containing a net number of p_ignore_net_nos are ignored. In contrast to overlapping_tree_entries
+   * the entries are not sorted and no collection is built. Queries may run in several threads at
+   * the same time, as long as the tree is not changed.
+   */
+  public void visit_overlapping_tree_entries(ConvexShape p_shape, int p_layer, int[] p_ignore_net_nos, TreeEntryVisitor p_visitor)
+  {
+    if (p_shape == null)
+    {
+      return;
+    }
+    RegularTileShape bounds = p_shape.bounding_shape(bounding_directions);
+    if (bounds == null)
+    {
+      FRLogger.warn("ShapeSearchTree.visit_overlapping_tree_entries: p_shape not bounded");
+      return;
+    }
+    boolean is_45_degree = p_shape instanceof IntOctagon;
+    visit_layer_overlaps(bounds, p_layer, p_leaf ->
+    {
+      if (!is_overlapping_entry(p_leaf, p_shape, is_45_degree, p_layer, p_ignore_net_nos))
       {
-        TileShape curr_shape = curr_object.get_tree_shape(this, curr_leaf.shape_index_in_object);
-        boolean add_item;
-        if (is_45_degree && curr_shape instanceof IntOctagon)
-        // in this case the check for intersection is redundant and
-        // therefore skipped for performance reasons
-        {
-          add_item = true;
-        }
-        else
-        {
-          add_item = curr_shape.intersects(p_shape);
-        }
-        if (add_item)
-        {
-          TreeEntry new_entry = new TreeEntry(curr_object, shape_index);
-          p_tree_entries.add(new_entry);
-        }
+        return true;
       }
+      return p_visitor.visit((SearchTreeObject) p_leaf.object, p_leaf.shape_index_in_object);
+    });
+  }
+
+  /**
+   * Checks, if the shape of p_leaf overlaps with p_shape on layer p_layer and its object is an
+   * obstacle for all nets in p_ignore_net_nos.
+   */
+  private boolean is_overlapping_entry(Leaf p_leaf, ConvexShape p_shape, boolean p_is_45_degree, int p_layer, int[] p_ignore_net_nos)
+  {
+    SearchTreeObject curr_object = (SearchTreeObject) p_leaf.object;
+    int shape_index = p_leaf.shape_index_in_object;
+    if (p_layer >= 0 && curr_object.shape_layer(shape_index) != p_layer)
+    {
+      return false;
     }
+    for (int i = 0; i < p_ignore_net_nos.length; ++i)
+    {
+      if (!curr_object.is_obstacle(p_ignore_net_nos[i]))
+      {
+        return false;
+      }
+    }
+    TileShape curr_shape = curr_object.get_tree_shape(this, shape_index);
+    if (p_is_45_degree && curr_shape instanceof IntOctagon)
+    // in this case the check for intersection is redundant and
+    // therefore skipped for performance reasons
+    {
+      return true;
+    }
+    return curr_shape.intersects(p_shape);
   }
 
   /**
@@ -436,9 +596,11 @@ public class ShapeSearchTree extends MinAreaTree
     // a factor less than sqr2 has evtl. be added because
     // enlarging is not symmetric.
     RegularTileShape offset_bounds = (RegularTileShape) bounds.offset(max_clearance);
-    Collection<Leaf> tmp_list = overlaps(offset_bounds);
+    Collection<Leaf> tmp_list = layer_overlaps(offset_bounds, p_layer);
     // sort the found items by its clearances tp p_cl_type on layer p_layer
     Set<EntrySortedByClearance> sorted_items = new TreeSet<>();
+    // entries with equal clearance keep the order, in which they were found
+    int entry_no = 0;
 
     for (Leaf curr_leaf : tmp_list)
     {
@@ -458,7 +620,7 @@ public class ShapeSearchTree extends MinAreaTree
       if (!ignore_item)
       {
         int curr_clearance = cl_matrix.get_value(p_cl_type, curr_item.clearance_class_no(), p_layer, true);
-        EntrySortedByClearance sorted_ob = new EntrySortedByClearance(curr_leaf, curr_clearance);
+        EntrySortedByClearance sorted_ob = new EntrySortedByClearance(curr_leaf, curr_clearance, entry_no++);
         sorted_items.add(sorted_ob);
       }
     }
@@ -489,19 +651,21 @@ public class ShapeSearchTree extends MinAreaTree
    */
   public void overlapping_objects_with_clearance(ConvexShape p_shape, int p_layer, int[] p_ignore_net_nos, int p_cl_type, Set<SearchTreeObject> p_obstacles)
   {
-    Collection<TreeEntry> tree_entries = new LinkedList<>();
-    if (this.is_clearance_compensation_used())
+    if (p_obstacles == null)
     {
-      overlapping_tree_entries(p_shape, p_layer, p_ignore_net_nos, tree_entries);
+      return;
     }
-    else
+    if (this.is_clearance_compensation_used())
     {
-      overlapping_tree_entries_with_clearance(p_shape, p_layer, p_ignore_net_nos, p_cl_type, tree_entries);
-    }
-    if (p_obstacles == null)
+      visit_overlapping_tree_entries(p_shape, p_layer, p_ignore_net_nos, (p_object, p_shape_index) ->
     {
+      p_obstacles.add(p_object);
+      return true;
+    });
       return;
     }
+    Collection<TreeEntry> tree_entries = new LinkedList<>();
+    overlapping_tree_entries_with_clearance(p_shape, p_layer, p_ignore_net_nos, p_cl_type, tree_entries);
     for (TreeEntry curr_entry : tree_entries)
     {
       p_obstacles.add((SearchTreeObject) curr_entry.object);
@@ -565,7 +729,7 @@ public class ShapeSearchTree extends MinAreaTree
       FRLogger.warn("ShapeSearchTree.complete_shape: p_shape_to_be_contained != null expected");
       return new LinkedList<>();
     }
-    if (this.root == null)
+    if (this.is_empty())
     {
       return new LinkedList<>();
     }
@@ -581,14 +745,14 @@ public class ShapeSearchTree extends MinAreaTree
       IncompleteFreeSpaceExpansionRoom new_room = new IncompleteFreeSpaceExpansionRoom(start_shape, p_room.get_layer(), p_room.get_contained_shape());
       result.add(new_room);
     }
-    this.node_stack.reset();
-    this.node_stack.push(this.root);
-    TreeNode curr_node;
     int room_layer = p_room.get_layer();
+    ArrayStack<TreeNode> node_stack = acquire_node_stack();
+    push_layer_roots(node_stack, room_layer);
+    TreeNode curr_node;
 
     for (; ; )
     {
-      curr_node = this.node_stack.pop();
+      curr_node = node_stack.pop();
       if (curr_node == null)
       {
         break;
@@ -638,11 +802,12 @@ public class ShapeSearchTree extends MinAreaTree
         }
         else
         {
-          this.node_stack.push(((InnerNode) curr_node).first_child);
-          this.node_stack.push(((InnerNode) curr_node).second_child);
+          node_stack.push(((InnerNode) curr_node).first_child);
+          node_stack.push(((InnerNode) curr_node).second_child);
         }
       }
     }
+    release_node_stack(node_stack);
     result = divide_large_room(result, board.get_bounding_box());
     return result;
   }
@@ -681,10 +846,13 @@ public class ShapeSearchTree extends MinAreaTree
     }
     Line cut_line = null;
     double cut_line_distance = -1;
+    // remember the border lines intersecting the interior of the room for the second search below
+    boolean[] intersects_room_interior = new boolean[obstacle_simplex.border_line_count()];
     for (int i = 0; i < obstacle_simplex.border_line_count(); ++i)
     {
       LineSegment curr_line_segment = new LineSegment(obstacle_simplex, i);
-      if (room_shape.is_intersected_interior_by(curr_line_segment))
+      intersects_room_interior[i] = room_shape.is_intersected_interior_by(curr_line_segment);
+      if (intersects_room_interior[i])
       {
         // otherwise curr_object may not touch the intersection
         // of p_shape with the half_plane defined by the cut_line.
@@ -725,8 +893,7 @@ public class ShapeSearchTree extends MinAreaTree
 
       for (int i = 0; i < obstacle_simplex.border_line_count(); ++i)
       {
-        LineSegment curr_line_segment = new LineSegment(obstacle_simplex, i);
-        if (room_shape.is_intersected_interior_by(curr_line_segment))
+        if (intersects_room_interior[i])
         {
           Line curr_line = obstacle_simplex.border_line(i);
           if (shape_to_be_contained.side_of(curr_line) == Side.COLLINEAR)
@@ -1074,6 +1241,29 @@ public class ShapeSearchTree extends MinAreaTree
     return true;
   }
 
+  /**
+   * Returns the empty batch of the current thread for storing the shapes of the result rooms in
+   * complete_shape.
+   */
+  protected static IntOctagonBatch get_room_shape_batch()
+  {
+    IntOctagonBatch result = room_shape_batch.get();
+    result.clear();
+    return result;
+  }
+
+  /**
+   * Callback for the tree entries found by visit_overlapping_tree_entries.
+   */
+  public interface TreeEntryVisitor
+  {
+    /**
+     * Called for the shape with index p_shape_index of p_object. Returns false, if the query should
+     * be stopped.
+     */
+    boolean visit(SearchTreeObject p_object, int p_shape_index);
+  }
+
   /**
    * created for sorting Items according to their clearance to p_cl_type on layer p_layer
    */
@@ -1084,19 +1274,11 @@ public class ShapeSearchTree extends MinAreaTree
     Leaf leaf;
     int clearance;
 
-    EntrySortedByClearance(Leaf p_leaf, int p_clearance)
+    EntrySortedByClearance(Leaf p_leaf, int p_clearance, int p_entry_no)
     {
       leaf = p_leaf;
       clearance = p_clearance;
-      if (last_generated_id_no == Integer.MAX_VALUE)
-      {
-        last_generated_id_no = 0;
-      }
-      else
-      {
-        ++last_generated_id_no;
-      }
-      entry_id_no = last_generated_id_no;
+      entry_id_no = p_entry_no;
     }
 
     @Override
@@ -2,9 +2,11 @@ package app.freerouting.board;
 
 import app.freerouting.autoroute.CompleteFreeSpaceExpansionRoom;
 import app.freerouting.autoroute.IncompleteFreeSpaceExpansionRoom;
+import app.freerouting.datastructures.ArrayStack;
 import app.freerouting.geometry.planar.FortyfiveDegreeBoundingDirections;
 import app.freerouting.geometry.planar.IntBox;
 import app.freerouting.geometry.planar.IntOctagon;
+import app.freerouting.geometry.planar.IntOctagonBatch;
 import app.freerouting.geometry.planar.Line;
 import app.freerouting.geometry.planar.Shape;
 import app.freerouting.geometry.planar.Side;
@@ -23,9 +25,9 @@ public class ShapeSearchTree45Degree extends ShapeSearchTree
   /**
    * Creates a new instance of ShapeSearchTree45Degree
    */
-  public ShapeSearchTree45Degree(BasicBoard p_board, int p_compensated_clearance_class_no)
+  public ShapeSearchTree45Degree(BasicBoard p_board, int p_compensated_clearance_class_no, boolean p_partition_by_layer)
   {
-    super(FortyfiveDegreeBoundingDirections.INSTANCE, p_board, p_compensated_clearance_class_no);
+    super(FortyfiveDegreeBoundingDirections.INSTANCE, p_board, p_compensated_clearance_class_no, p_partition_by_layer);
   }
 
   /**
@@ -102,7 +104,7 @@ public class ShapeSearchTree45Degree extends ShapeSearchTree
       return new LinkedList<>();
     }
     IntOctagon shape_to_be_contained = p_room.get_contained_shape().bounding_octagon();
-    if (this.root == null)
+    if (this.is_empty())
     {
       return new LinkedList<>();
     }
@@ -120,13 +122,16 @@ public class ShapeSearchTree45Degree extends ShapeSearchTree
     int room_layer = p_room.get_layer();
     Collection<IncompleteFreeSpaceExpansionRoom> result = new LinkedList<>();
     result.add(new IncompleteFreeSpaceExpansionRoom(start_shape, room_layer, shape_to_be_contained));
-    this.node_stack.reset();
-    this.node_stack.push(this.root);
+    // The shapes of the result rooms in primitive arrays for testing the obstacles against all rooms at once.
+    IntOctagonBatch room_shapes = get_room_shape_batch();
+    room_shapes.add(start_shape);
+    ArrayStack<TreeNode> node_stack = acquire_node_stack();
+    push_layer_roots(node_stack, room_layer);
     TreeNode curr_node;
 
     for (; ; )
     {
-      curr_node = this.node_stack.pop();
+      curr_node = node_stack.pop();
       if (curr_node == null)
       {
         break;
@@ -139,7 +144,8 @@ public class ShapeSearchTree45Degree extends ShapeSearchTree
           boolean is_obstacle = curr_object.is_trace_obstacle(p_net_no);
 
           int shape_index = curr_leaf.shape_index_in_object;
-          if (is_obstacle && curr_object.shape_layer(shape_index) == room_layer && curr_object != p_ignore_object)
+          // Obstacles not overlapping any result room would leave the rooms unchanged.
+          if (is_obstacle && curr_object.shape_layer(shape_index) == room_layer && curr_object != p_ignore_object && room_shapes.overlaps_any(curr_leaf.bounding_shape.bounding_octagon()))
           {
 
             IntOctagon curr_object_shape = curr_object.get_tree_shape(this, shape_index).bounding_octagon();
@@ -181,15 +187,21 @@ public class ShapeSearchTree45Degree extends ShapeSearchTree
             }
             result = new_result;
             bounding_shape = new_bounding_shape;
+            room_shapes.clear();
+            for (IncompleteFreeSpaceExpansionRoom curr_room : result)
+            {
+              room_shapes.add((IntOctagon) curr_room.get_shape());
+            }
           }
         }
         else
         {
-          this.node_stack.push(((InnerNode) curr_node).first_child);
-          this.node_stack.push(((InnerNode) curr_node).second_child);
+          node_stack.push(((InnerNode) curr_node).first_child);
+          node_stack.push(((InnerNode) curr_node).second_child);
         }
       }
     }
+    release_node_stack(node_stack);
     result = divide_large_room(result, board.get_bounding_box());
     // remove rooms with shapes equal to the contained shape to prevent endless loop.
     result.removeIf(room -> room.get_contained_shape().contains(room.get_shape()));
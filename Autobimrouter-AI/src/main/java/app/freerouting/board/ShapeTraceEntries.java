@@ -110,6 +110,8 @@ public class ShapeTraceEntries
     end_piece.set_on_the_board(true);
 
     board.search_tree_manager.reuse_entries_after_cutout(p_trace, start_piece, end_piece);
+    board.item_entered_search_trees(start_piece);
+    board.item_entered_search_trees(end_piece);
     board.remove_item(p_trace);
 
     board.communication.observers.notify_new(start_piece);
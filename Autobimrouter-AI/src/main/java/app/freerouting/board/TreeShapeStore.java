@@ -0,0 +1,138 @@
+package app.freerouting.board;
+
+import java.util.Arrays;
+
+/**
+ * Limits the total count of the precalculated tree shapes of the items of a board. The shapes stay
+ * in the search tree information of the items, so that they are found without a lookup, and the
+ * store keeps only a reference to this information together with its shape count. If the total
+ * count exceeds the maximum, shapes not used since the last sweep are evicted with the clock
+ * algorithm and calculated again, when they are used next time. Shapes set explicitly instead of
+ * calculated by Item.calculate_tree_shapes, for example after a pin was cut out of a trace shape,
+ * cannot be calculated again and are never registered.
+ */
+class TreeShapeStore
+{
+  /**
+   * The default for the maximum total count of the registered tree shapes.
+   */
+  public static final int DEFAULT_MAX_SHAPE_COUNT = 4000000;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private ItemSearchTreesInfo.SearchTreeInfo[] info_arr = new ItemSearchTreesInfo.SearchTreeInfo[INITIAL_CAPACITY];
+  private int[] shape_count_arr = new int[INITIAL_CAPACITY];
+  /**
+   * The stack of unused slot numbers below slot_count.
+   */
+  private int[] free_slots = new int[INITIAL_CAPACITY];
+  private int free_slot_count = 0;
+  private int slot_count = 0;
+  private int clock_hand = 0;
+  /**
+   * The total shape count of the used slots. Slots, whose shapes were replaced or released by the
+   * item, are counted until the next sweep passes them.
+   */
+  private long shape_count = 0;
+  private int max_shape_count = DEFAULT_MAX_SHAPE_COUNT;
+  private long eviction_count = 0;
+
+  /**
+   * Registers the tree shapes in p_info, so that they may be evicted.
+   */
+  synchronized void register(ItemSearchTreesInfo.SearchTreeInfo p_info, int p_shape_count)
+  {
+    int slot;
+    if (free_slot_count > 0)
+    {
+      slot = free_slots[--free_slot_count];
+    }
+    else
+    {
+      if (slot_count >= info_arr.length)
+      {
+        info_arr = Arrays.copyOf(info_arr, 2 * info_arr.length);
+        shape_count_arr = Arrays.copyOf(shape_count_arr, info_arr.length);
+      }
+      slot = slot_count++;
+    }
+    info_arr[slot] = p_info;
+    shape_count_arr[slot] = p_shape_count;
+    p_info.store_slot = slot;
+    // a new entry survives the next sweep
+    p_info.referenced = true;
+    shape_count += p_shape_count;
+    if (shape_count > max_shape_count)
+    {
+      sweep();
+    }
+  }
+
+  /**
+   * Sets the maximum total count of the registered tree shapes and evicts shapes, if the current
+   * count is bigger.
+   */
+  synchronized void set_max_shape_count(int p_value)
+  {
+    this.max_shape_count = Math.max(p_value, 0);
+    if (shape_count > max_shape_count)
+    {
+      sweep();
+    }
+  }
+
+  /**
+   * Returns the number of tree shape arrays evicted so far.
+   */
+  synchronized long get_eviction_count()
+  {
+    return eviction_count;
+  }
+
+  /**
+   * Advances the clock hand until the shape count is no more bigger than the maximum. Slots, whose
+   * shapes are no longer registered, are released. The shapes in referenced slots get a second
+   * chance, the others are evicted. Stops after two rounds, which happens only if all shapes were
+   * used since the last sweep.
+   */
+  private void sweep()
+  {
+    int max_step_count = 2 * slot_count;
+    for (int i = 0; i < max_step_count && shape_count > max_shape_count; ++i)
+    {
+      if (clock_hand >= slot_count)
+      {
+        clock_hand = 0;
+      }
+      int slot = clock_hand++;
+      ItemSearchTreesInfo.SearchTreeInfo curr_info = info_arr[slot];
+      if (curr_info == null)
+      {
+        continue;
+      }
+      if (curr_info.store_slot == slot)
+      {
+        if (curr_info.referenced)
+        {
+          curr_info.referenced = false;
+          continue;
+        }
+        curr_info.precalculated_tree_shapes = null;
+        curr_info.store_slot = -1;
+        ++eviction_count;
+      }
+      release_slot(slot);
+    }
+  }
+
+  private void release_slot(int p_slot)
+  {
+    info_arr[p_slot] = null;
+    shape_count -= shape_count_arr[p_slot];
+    shape_count_arr[p_slot] = 0;
+    if (free_slot_count >= free_slots.length)
+    {
+      free_slots = Arrays.copyOf(free_slots, 2 * free_slots.length);
+    }
+    free_slots[free_slot_count++] = p_slot;
+  }
+}
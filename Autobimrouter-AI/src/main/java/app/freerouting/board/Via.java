@@ -51,6 +51,29 @@ public class Via extends DrillItem implements Serializable
     return new Via(padstack, get_center(), net_no_arr, clearance_class_no(), p_id_no, get_component_no(), get_fixed_state(), attach_allowed, board);
   }
 
+  /**
+   * The padstack of the copy is taken from the library of p_board, because the board copy has its
+   * own library.
+   */
+  @Override
+  Item copy_for_board(BasicBoard p_board, int p_id_no)
+  {
+    Via dup = (Via) super.copy_for_board(p_board, p_id_no);
+    if (dup == null)
+    {
+      return null;
+    }
+    if (this.padstack != null)
+    {
+      Padstack board_padstack = p_board.library.padstacks.get(this.padstack.no);
+      if (board_padstack != null)
+      {
+        dup.padstack = board_padstack;
+      }
+    }
+    return dup;
+  }
+
   @Override
   public Shape get_shape(int p_index)
   {
@@ -14,4 +14,9 @@ public interface IdNoGenerator
    * Return the maximum generated id number so far.
    */
   int max_generated_no();
+
+  /**
+   * Makes sure, that the numbers generated from now on are bigger than p_no.
+   */
+  void skip_to(int p_no);
 }
\ No newline at end of file
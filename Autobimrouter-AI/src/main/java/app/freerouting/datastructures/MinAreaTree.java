@@ -18,7 +18,12 @@ import java.util.TreeSet;
 public class MinAreaTree extends ShapeTree
 {
 
-  protected ArrayStack<TreeNode> node_stack = new ArrayStack<>(10000);
+  /**
+   * The traversal stacks of the queries of each thread, which are not in use at the moment. A query
+   * takes a stack from the pool of its thread and gives it back at the end, so that queries on the
+   * same tree can run in several threads and can be nested without allocating new stacks.
+   */
+  private final ThreadLocal<ArrayStack<ArrayStack<TreeNode>>> node_stack_pool = ThreadLocal.withInitial(() -> new ArrayStack<>(4));
 
   /**
    * Constructor with a fixed set of directions defining the keys and the surrounding shapes
@@ -29,21 +34,58 @@ public class MinAreaTree extends ShapeTree
   }
 
   /**
-   * Calculates the objects in this tree, which overlap with p_shape
+   * Constructor for a tree, whose shapes are distributed to p_partition_count separate partitions.
+   */
+  public MinAreaTree(ShapeBoundingDirections p_directions, int p_partition_count)
+  {
+    super(p_directions, p_partition_count);
+  }
+
+  /**
+   * Calculates the objects in this tree, which overlap with p_shape, sorted like the stored objects.
    */
   public Set<Leaf> overlaps(RegularTileShape p_shape)
   {
     Set<Leaf> found_overlaps = new TreeSet<>();
-    if (this.root == null)
+    visit_overlaps(p_shape, found_overlaps::add);
+    return found_overlaps;
+  }
+
+  /**
+   * Calls p_visitor for the leaves of this tree, whose bounding shape overlaps with p_shape, in no
+   * particular order, until p_visitor returns false. No collection of the found leaves is built.
+   * Queries may run in several threads at the same time, as long as the tree is not changed.
+   */
+  public void visit_overlaps(RegularTileShape p_shape, LeafVisitor p_visitor)
+  {
+    for (int i = 0; i < this.roots.length; ++i)
+    {
+      if (!visit_overlaps(p_shape, i, p_visitor))
+      {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Calls p_visitor for the leaves in the partition with number p_partition_no, whose bounding
+   * shape overlaps with p_shape, until p_visitor returns false. Returns false, if the query was
+   * stopped by p_visitor.
+   */
+  public boolean visit_overlaps(RegularTileShape p_shape, int p_partition_no, LeafVisitor p_visitor)
+  {
+    TreeNode partition_root = this.roots[p_partition_no];
+    if (partition_root == null)
     {
-      return found_overlaps;
+      return true;
     }
-    this.node_stack.reset();
-    this.node_stack.push(this.root);
+    boolean result = true;
+    ArrayStack<TreeNode> node_stack = acquire_node_stack();
+    node_stack.push(partition_root);
     TreeNode curr_node;
     for (; ; )
     {
-      curr_node = this.node_stack.pop();
+      curr_node = node_stack.pop();
       if (curr_node == null)
       {
         break;
@@ -52,32 +94,60 @@ public class MinAreaTree extends ShapeTree
       {
         if (curr_node instanceof Leaf)
         {
-          found_overlaps.add((Leaf) curr_node);
+          if (!p_visitor.visit((Leaf) curr_node))
+          {
+            result = false;
+            break;
+          }
         }
         else
         {
-          this.node_stack.push(((InnerNode) curr_node).first_child);
-          this.node_stack.push(((InnerNode) curr_node).second_child);
+          node_stack.push(((InnerNode) curr_node).first_child);
+          node_stack.push(((InnerNode) curr_node).second_child);
         }
       }
     }
-    return found_overlaps;
+    release_node_stack(node_stack);
+    return result;
+  }
+
+  /**
+   * Takes an empty traversal stack from the pool of the current thread or creates a new one.
+   */
+  protected ArrayStack<TreeNode> acquire_node_stack()
+  {
+    ArrayStack<TreeNode> result = node_stack_pool.get().pop();
+    if (result == null)
+    {
+      result = new ArrayStack<>(64);
+    }
+    result.reset();
+    return result;
+  }
+
+  /**
+   * Gives p_node_stack back to the pool of the current thread after the end of a query.
+   */
+  protected void release_node_stack(ArrayStack<TreeNode> p_node_stack)
+  {
+    node_stack_pool.get().push(p_node_stack);
   }
 
   @Override
   void insert(Leaf p_leaf)
   {
     ++this.leaf_count;
+    int partition_no = partition_no(p_leaf.object, p_leaf.shape_index_in_object);
 
-    // Tree is empty - just insert the new leaf
-    if (root == null)
+    // Partition is empty - just insert the new leaf
+    if (roots[partition_no] == null)
     {
-      root = p_leaf;
+      roots[partition_no] = p_leaf;
       return;
     }
 
-    // Non-empty tree - do a recursive location for leaf replacement
-    Leaf leaf_to_replace = position_locate(root, p_leaf);
+    // Non-empty partition - do a recursive location for leaf replacement
+    Leaf leaf_to_replace = position_locate(roots[partition_no], p_leaf);
 
     // Construct a new node - whenever a leaf is added so is a new node
     RegularTileShape new_bounds = p_leaf.bounding_shape.union(leaf_to_replace.bounding_shape);
@@ -104,9 +174,9 @@ public class MinAreaTree extends ShapeTree
     new_node.first_child = leaf_to_replace;
     new_node.second_child = p_leaf;
 
-    if (root == leaf_to_replace)
+    if (roots[partition_no] == leaf_to_replace)
     {
-      root = new_node;
+      roots[partition_no] = new_node;
     }
   }
 
@@ -160,8 +230,8 @@ public class MinAreaTree extends ShapeTree
     --this.leaf_count;
     if (parent == null)
     {
-      // tree gets empty
-      root = null;
+      // partition gets empty
+      replace_root(p_leaf, null);
       return;
     }
     // find the other leaf of the parent
@@ -184,8 +254,8 @@ public class MinAreaTree extends ShapeTree
     other_leaf.parent = grand_parent;
     if (grand_parent == null)
     {
-      // only one leaf left in the tree
-      root = other_leaf;
+      // only one leaf left in the partition
+      replace_root(parent, other_leaf);
     }
     else
     {
@@ -222,4 +292,20 @@ public class MinAreaTree extends ShapeTree
       node_to_recalculate = node_to_recalculate.parent;
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Replaces p_old_root by p_new_root in the array of partition roots.
+   */
+  private void replace_root(TreeNode p_old_root, TreeNode p_new_root)
+  {
+    for (int i = 0; i < this.roots.length; ++i)
+    {
+      if (this.roots[i] == p_old_root)
+      {
+        this.roots[i] = p_new_root;
+        return;
+      }
+    }
+    FRLogger.warn("MinAreaTree.replace_root: root not found");
+  }
+}
@@ -1,11 +1,18 @@
 package app.freerouting.datastructures;
 
+import app.freerouting.geometry.planar.IntBox;
 import app.freerouting.geometry.planar.RegularTileShape;
 import app.freerouting.geometry.planar.Shape;
 import app.freerouting.geometry.planar.ShapeBoundingDirections;
 import app.freerouting.geometry.planar.TileShape;
 import app.freerouting.logger.FRLogger;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * Abstract binary search tree for shapes in the plane. The shapes are stored in the leafs of the
  * tree. Objects to be stored in the tree must implement the interface ShapeTree.Storable.
@@ -19,9 +26,10 @@ public abstract class ShapeTree
    */
   protected final ShapeBoundingDirections bounding_directions;
   /**
-   * Root node - initially null
+   * The root nodes of the partitions of the tree - initially null. The shapes of each partition are
+   * stored in a separate binary tree, see partition_no.
    */
-  protected TreeNode root;
+  protected final TreeNode[] roots;
   /**
    * The number of entries stored in the tree
    */
@@ -31,12 +39,54 @@ public abstract class ShapeTree
    * Creates a new instance of ShapeTree
    */
   public ShapeTree(ShapeBoundingDirections p_directions)
+  {
+    this(p_directions, 1);
+  }
+
+  /**
+   * Creates a new ShapeTree, whose shapes are distributed to p_partition_count separate partitions
+   * by partition_no.
+   */
+  public ShapeTree(ShapeBoundingDirections p_directions, int p_partition_count)
   {
     bounding_directions = p_directions;
-    root = null;
+    roots = new TreeNode[Math.max(p_partition_count, 1)];
     leaf_count = 0;
   }
 
+  /**
+   * Returns the number of the partition, in which the shape with index p_index of p_object is
+   * stored. Must return always the same partition for a stored shape. The default implementation
+   * uses only one partition.
+   */
+  protected int partition_no(ShapeTree.Storable p_object, int p_index)
+  {
+    return 0;
+  }
+
+  /**
+   * Returns the number of partitions of this tree.
+   */
+  public int partition_count()
+  {
+    return roots.length;
+  }
+
+  /**
+   * Returns true, if no shapes are stored in this tree.
+   */
+  public boolean is_empty()
+  {
+    for (TreeNode curr_root : roots)
+    {
+      if (curr_root != null)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Inserts all shapes of p_obj into the tree
    */
@@ -55,10 +105,60 @@ public abstract class ShapeTree
     p_obj.set_search_tree_entries(leaf_arr, this);
   }
 
+  /**
+   * Inserts all shapes of the objects in p_objects into the tree. If the tree is empty, it is bulk
+   * loaded, which results in a balanced tree with a depth of about log2 of the number of shapes.
+   * Otherwise, the shapes are inserted one by one.
+   */
+  public void insert_all(Collection<? extends ShapeTree.Storable> p_objects)
+  {
+    if (!this.is_empty())
+    {
+      for (ShapeTree.Storable curr_object : p_objects)
+      {
+        insert(curr_object);
+      }
+      return;
+    }
+    ArrayList<Leaf> leaf_list = new ArrayList<>();
+    for (ShapeTree.Storable curr_object : p_objects)
+    {
+      int shape_count = curr_object.tree_shape_count(this);
+      if (shape_count <= 0)
+      {
+        continue;
+      }
+      Leaf[] leaf_arr = new Leaf[shape_count];
+      for (int i = 0; i < shape_count; ++i)
+      {
+        leaf_arr[i] = create_leaf(curr_object, i);
+        if (leaf_arr[i] != null)
+        {
+          leaf_list.add(leaf_arr[i]);
+        }
+      }
+      curr_object.set_search_tree_entries(leaf_arr, this);
+    }
+    bulk_load(leaf_list.toArray(new Leaf[0]));
+  }
+
   /**
    * Insert a shape - creates a new node with a bounding shape
    */
   protected Leaf insert(ShapeTree.Storable p_object, int p_index)
+  {
+    Leaf new_leaf = create_leaf(p_object, p_index);
+    if (new_leaf != null)
+    {
+      this.insert(new_leaf);
+    }
+    return new_leaf;
+  }
+
+  /**
+   * Creates a leaf for the shape with index p_index of p_object without inserting it into the tree.
+   */
+  private Leaf create_leaf(ShapeTree.Storable p_object, int p_index)
   {
     Shape object_shape = p_object.get_tree_shape(this, p_index);
     if (object_shape == null)
@@ -72,10 +172,134 @@ public abstract class ShapeTree
       FRLogger.warn("ShapeTree.insert: bounding shape of TreeObject is null");
       return null;
     }
-    // Construct a new KdLeaf and set it up
-    Leaf new_leaf = new Leaf(p_object, p_index, null, bounding_shape);
-    this.insert(new_leaf);
-    return new_leaf;
+    return new Leaf(p_object, p_index, null, bounding_shape);
+  }
+
+  /**
+   * Builds the node structure of this empty tree from p_leaf_arr top down. The leaves of each node
+   * are split at the median of their centers along the coordinate axis, where the centers have the
+   * bigger extent. The centers are kept in flat arrays and the splits are done with quickselect on
+   * an index array, so that no leaf is moved and no comparator objects are needed.
+   */
+  private void bulk_load(Leaf[] p_leaf_arr)
+  {
+    int new_leaf_count = p_leaf_arr.length;
+    if (new_leaf_count == 0)
+    {
+      return;
+    }
+    double[] center_x_arr = new double[new_leaf_count];
+    double[] center_y_arr = new double[new_leaf_count];
+    int[] partition_arr = new int[new_leaf_count];
+    int[] partition_start_arr = new int[roots.length + 1];
+    for (int i = 0; i < new_leaf_count; ++i)
+    {
+      IntBox curr_box = p_leaf_arr[i].bounding_shape.bounding_box();
+      center_x_arr[i] = 0.5 * ((double) curr_box.ll.x + (double) curr_box.ur.x);
+      center_y_arr[i] = 0.5 * ((double) curr_box.ll.y + (double) curr_box.ur.y);
+      partition_arr[i] = partition_no(p_leaf_arr[i].object, p_leaf_arr[i].shape_index_in_object);
+      ++partition_start_arr[partition_arr[i] + 1];
+    }
+    // group the leaves by partition with a counting sort on the index array
+    for (int i = 0; i < roots.length; ++i)
+    {
+      partition_start_arr[i + 1] += partition_start_arr[i];
+    }
+    int[] index_arr = new int[new_leaf_count];
+    int[] next_position_arr = new int[roots.length];
+    System.arraycopy(partition_start_arr, 0, next_position_arr, 0, roots.length);
+    for (int i = 0; i < new_leaf_count; ++i)
+    {
+      index_arr[next_position_arr[partition_arr[i]]++] = i;
+    }
+    for (int i = 0; i < roots.length; ++i)
+    {
+      if (partition_start_arr[i] < partition_start_arr[i + 1])
+      {
+        this.roots[i] = build_subtree(p_leaf_arr, center_x_arr, center_y_arr, index_arr, partition_start_arr[i], partition_start_arr[i + 1], null);
+      }
+    }
+    this.leaf_count = new_leaf_count;
+  }
+
+  /**
+   * Builds the subtree for the leaves with index from p_index_arr[p_from] to p_index_arr[p_to - 1].
+   */
+  private static TreeNode build_subtree(Leaf[] p_leaf_arr, double[] p_center_x_arr, double[] p_center_y_arr, int[] p_index_arr, int p_from, int p_to, InnerNode p_parent)
+  {
+    if (p_to - p_from == 1)
+    {
+      Leaf curr_leaf = p_leaf_arr[p_index_arr[p_from]];
+      curr_leaf.parent = p_parent;
+      return curr_leaf;
+    }
+    double min_x = Double.MAX_VALUE;
+    double max_x = -Double.MAX_VALUE;
+    double min_y = Double.MAX_VALUE;
+    double max_y = -Double.MAX_VALUE;
+    for (int i = p_from; i < p_to; ++i)
+    {
+      int curr_index = p_index_arr[i];
+      min_x = Math.min(min_x, p_center_x_arr[curr_index]);
+      max_x = Math.max(max_x, p_center_x_arr[curr_index]);
+      min_y = Math.min(min_y, p_center_y_arr[curr_index]);
+      max_y = Math.max(max_y, p_center_y_arr[curr_index]);
+    }
+    double[] split_keys = max_x - min_x >= max_y - min_y ? p_center_x_arr : p_center_y_arr;
+    int middle = (p_from + p_to) >>> 1;
+    select(p_index_arr, split_keys, p_from, p_to - 1, middle);
+    InnerNode new_node = new InnerNode(null, p_parent);
+    new_node.first_child = build_subtree(p_leaf_arr, p_center_x_arr, p_center_y_arr, p_index_arr, p_from, middle, new_node);
+    new_node.second_child = build_subtree(p_leaf_arr, p_center_x_arr, p_center_y_arr, p_index_arr, middle, p_to, new_node);
+    new_node.bounding_shape = new_node.first_child.bounding_shape.union(new_node.second_child.bounding_shape);
+    return new_node;
+  }
+
+  /**
+   * Rearranges p_index_arr between p_left and p_right, so that the element at p_k has the key it
+   * would have in sorted order, the keys before are not bigger and the keys after are not smaller.
+   */
+  private static void select(int[] p_index_arr, double[] p_keys, int p_left, int p_right, int p_k)
+  {
+    int left = p_left;
+    int right = p_right;
+    while (right > left)
+    {
+      double pivot = p_keys[p_index_arr[(left + right) >>> 1]];
+      int i = left;
+      int j = right;
+      while (i <= j)
+      {
+        while (p_keys[p_index_arr[i]] < pivot)
+        {
+          ++i;
+        }
+        while (p_keys[p_index_arr[j]] > pivot)
+        {
+          --j;
+        }
+        if (i <= j)
+        {
+          int tmp = p_index_arr[i];
+          p_index_arr[i] = p_index_arr[j];
+          p_index_arr[j] = tmp;
+          ++i;
+          --j;
+        }
+      }
+      if (p_k <= j)
+      {
+        right = j;
+      }
+      else if (p_k >= i)
+      {
+        left = i;
+      }
+      else
+      {
+        return;
+      }
+    }
   }
 
   /**
@@ -84,12 +308,25 @@ public abstract class ShapeTree
   public Leaf[] to_array()
   {
     Leaf[] result = new Leaf[this.leaf_count];
-    if (result.length == 0)
+    int curr_index = 0;
+    for (TreeNode curr_root : this.roots)
     {
-      return result;
+      if (curr_root != null)
+      {
+        curr_index = add_leaves(curr_root, result, curr_index);
+      }
     }
-    TreeNode curr_node = this.root;
-    int curr_index = 0;
+    return result;
+  }
+
+  /**
+   * Puts the leaves of the subtree with root p_root into p_result starting at p_start_index. Returns
+   * the index after the last inserted leaf.
+   */
+  private static int add_leaves(TreeNode p_root, Leaf[] p_result, int p_start_index)
+  {
+    TreeNode curr_node = p_root;
+    int curr_index = p_start_index;
     for (; ; )
     {
       // go down from curr_node to the left most leaf
@@ -97,7 +334,7 @@ public abstract class ShapeTree
       {
         curr_node = ((InnerNode) curr_node).first_child;
       }
-      result[curr_index] = (Leaf) curr_node;
+      p_result[curr_index] = (Leaf) curr_node;
 
       ++curr_index;
       // go up until parent.second_child != curr_node, which means we came from first_child
@@ -113,7 +350,106 @@ public abstract class ShapeTree
       }
       curr_node = curr_parent.second_child;
     }
-    return result;
+    return curr_index;
+  }
+
+  /**
+   * Rebuilds the node structure of p_from_tree in this empty tree without recalculating any
+   * bounding shapes. The bounding shapes are immutable and therefore shared with p_from_tree. The
+   * object of each leaf is replaced by its image in p_object_map. Returns false and leaves this tree
+   * unchanged, if p_from_tree contains an object, which is not contained in p_object_map, or if the
+   * trees have a different number of partitions.
+   */
+  public boolean copy_structure_from(ShapeTree p_from_tree, Map<? extends Storable, ? extends Storable> p_object_map)
+  {
+    if (!this.is_empty())
+    {
+      FRLogger.warn("ShapeTree.copy_structure_from: tree is not empty");
+      return false;
+    }
+    if (p_from_tree.roots.length != this.roots.length)
+    {
+      return false;
+    }
+    Map<Storable, Leaf[]> new_entries = new IdentityHashMap<>();
+    TreeNode[] new_roots = new TreeNode[this.roots.length];
+    for (int i = 0; i < new_roots.length; ++i)
+    {
+      if (p_from_tree.roots[i] == null)
+      {
+        continue;
+      }
+      new_roots[i] = copy_subtree(p_from_tree, p_from_tree.roots[i], p_object_map, new_entries);
+      if (new_roots[i] == null)
+      {
+        return false;
+      }
+    }
+    System.arraycopy(new_roots, 0, this.roots, 0, new_roots.length);
+    this.leaf_count = p_from_tree.leaf_count;
+    for (Map.Entry<Storable, Leaf[]> curr_entry : new_entries.entrySet())
+    {
+      curr_entry.getKey().set_search_tree_entries(curr_entry.getValue(), this);
+    }
+    return true;
+  }
+
+  /**
+   * Copies the subtree of p_from_tree with root p_from_root. The new leaves are stored in
+   * p_new_entries. Returns the new root or null, if an object is not contained in p_object_map.
+   */
+  private static TreeNode copy_subtree(ShapeTree p_from_tree, TreeNode p_from_root, Map<? extends Storable, ? extends Storable> p_object_map, Map<Storable, Leaf[]> p_new_entries)
+  {
+    ArrayDeque<TreeNode> from_stack = new ArrayDeque<>();
+    ArrayDeque<InnerNode> to_parent_stack = new ArrayDeque<>();
+    TreeNode new_root = null;
+    from_stack.push(p_from_root);
+    for (; ; )
+    {
+      TreeNode from_node = from_stack.poll();
+      if (from_node == null)
+      {
+        break;
+      }
+      InnerNode to_parent = from_node.parent == null ? null : to_parent_stack.pop();
+      TreeNode new_node;
+      if (from_node instanceof Leaf from_leaf)
+      {
+        Storable new_object = p_object_map.get(from_leaf.object);
+        if (new_object == null)
+        {
+          return null;
+        }
+        Leaf new_leaf = new Leaf(new_object, from_leaf.shape_index_in_object, to_parent, from_leaf.bounding_shape);
+        Leaf[] curr_entries = p_new_entries.computeIfAbsent(new_object, k -> new Leaf[from_leaf.object.tree_shape_count(p_from_tree)]);
+        curr_entries[from_leaf.shape_index_in_object] = new_leaf;
+        new_node = new_leaf;
+      }
+      else
+      {
+        InnerNode from_inner_node = (InnerNode) from_node;
+        InnerNode new_inner_node = new InnerNode(from_inner_node.bounding_shape, to_parent);
+        // The children are popped in reverse order, so the first child is handled first.
+        from_stack.push(from_inner_node.second_child);
+        from_stack.push(from_inner_node.first_child);
+        to_parent_stack.push(new_inner_node);
+        to_parent_stack.push(new_inner_node);
+        new_node = new_inner_node;
+      }
+      if (to_parent == null)
+      {
+        new_root = new_node;
+      }
+      else if (to_parent.first_child == null)
+      {
+        to_parent.first_child = new_node;
+      }
+      else
+      {
+        to_parent.second_child = new_node;
+      }
+    }
+    return new_root;
   }
 
   abstract void insert(Leaf p_leaf);
@@ -144,24 +480,65 @@ public abstract class ShapeTree
   }
 
   /**
-   * Outputs some statistic information about the tree.
+   * Outputs some statistic information about the tree: the number of entries and inner nodes, the
+   * average and maximum depth of the leaves and the average fanout of the inner nodes.
    */
   public void statistics(String p_message)
   {
-    Leaf[] leaf_arr = this.to_array();
+    if (this.is_empty())
+    {
+      FRLogger.info("ShapeTree: empty " + p_message);
+      return;
+    }
+    int curr_leaf_count = 0;
+    int inner_node_count = 0;
     double cumulative_depth = 0;
     int maximum_depth = 0;
-    for (int i = 0; i < leaf_arr.length; ++i)
+    int used_partition_count = 0;
+    ArrayDeque<TreeNode> node_stack = new ArrayDeque<>();
+    ArrayDeque<Integer> depth_stack = new ArrayDeque<>();
+    for (TreeNode curr_root : this.roots)
     {
-      if (leaf_arr[i] != null)
+      if (curr_root != null)
       {
-        int distance_to_root = leaf_arr[i].distance_to_root();
-        cumulative_depth += distance_to_root;
-        maximum_depth = Math.max(maximum_depth, distance_to_root);
+        ++used_partition_count;
+        node_stack.push(curr_root);
+        depth_stack.push(0);
       }
     }
-    double average_depth = cumulative_depth / leaf_arr.length;
-    FRLogger.info("MinAreaTree: Entry count: " + leaf_arr.length + " log: " + Math.round(Math.log(leaf_arr.length)) + " Average depth: " + Math.round(average_depth) + " " + " Maximum depth: " + maximum_depth + " " + p_message);
+    while (!node_stack.isEmpty())
+    {
+      TreeNode curr_node = node_stack.pop();
+      int curr_depth = depth_stack.pop();
+      if (curr_node instanceof InnerNode curr_inner_node)
+      {
+        ++inner_node_count;
+        node_stack.push(curr_inner_node.first_child);
+        depth_stack.push(curr_depth + 1);
+        node_stack.push(curr_inner_node.second_child);
+        depth_stack.push(curr_depth + 1);
+      }
+      else
+      {
+        ++curr_leaf_count;
+        cumulative_depth += curr_depth;
+        maximum_depth = Math.max(maximum_depth, curr_depth);
+      }
+    }
+    double average_depth = cumulative_depth / curr_leaf_count;
+    double average_fanout = inner_node_count == 0 ? 0 : (double) (curr_leaf_count + inner_node_count - used_partition_count) / inner_node_count;
+    FRLogger.info(String.format("ShapeTree: Entry count: %d, log2: %d, partitions: %d of %d, inner nodes: %d, average fanout: %.2f, average depth: %.1f, maximum depth: %d %s", curr_leaf_count, Math.round(Math.log(curr_leaf_count) / Math.log(2)), used_partition_count, this.roots.length, inner_node_count, average_fanout, average_depth, maximum_depth, p_message));
+  }
+
+  /**
+   * Callback for the leaves found by a query of a ShapeTree.
+   */
+  public interface LeafVisitor
+  {
+    /**
+     * Called for each found leaf. Returns false, if the query should be stopped.
+     */
+    boolean visit(Leaf p_leaf);
   }
 
   /**
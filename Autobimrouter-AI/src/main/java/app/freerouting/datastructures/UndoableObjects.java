@@ -70,6 +70,21 @@ public class UndoableObjects implements Serializable
     return null;
   }
 
+  /**
+   * Returns the object in this list, which has the same key as p_key, or null, if no such object
+   * exists. p_key may for example be a copy of the stored object.
+   */
+  public UndoableObjects.Storable get_stored_object(UndoableObjects.Storable p_key)
+  {
+    UndoableObjectNode curr_node = objects.get(p_key);
+    if (curr_node == null || curr_node.level > this.stack_level)
+    {
+      // objects getting alive only by redo are not stored
+      return null;
+    }
+    return curr_node.object;
+  }
+
   /**
    * Adds p_object to the UndoableObjectsList.
    */
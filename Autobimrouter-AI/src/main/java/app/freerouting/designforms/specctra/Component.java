@@ -106,7 +106,7 @@ public class Component extends ScopeKeyword
       FRLogger.warn("Component.write_pin_info: package pin not found at '" + p_component.name + "'");
       return;
     }
-    app.freerouting.board.Pin component_pin = p_par.board.get_pin(p_component.no, p_pin_no);
+    app.freerouting.board.Pin component_pin = p_par.get_pin(p_component.no, p_pin_no);
     if (component_pin == null)
     {
       FRLogger.warn("Component.write_pin_info: component pin not found at '" + p_component.name + "'");
@@ -63,6 +63,10 @@ public class DsnFile
     }
     ReadScopeParameter read_scope_par = new ReadScopeParameter(scanner, p_board_handling, p_observers, p_item_id_no_generator);
     boolean read_ok = Keyword.PCB_SCOPE.read_scope(read_scope_par);
+    if (p_board_handling.get_routing_board() != null)
+    {
+      p_board_handling.get_routing_board().finish_deferred_search_tree_insert();
+    }
     ReadResult result;
     if (read_ok)
     {
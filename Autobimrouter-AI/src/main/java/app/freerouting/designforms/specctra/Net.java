@@ -20,6 +20,10 @@ public class Net
    * List of elements of type Pin.
    */
   private Set<Pin> pin_list;
+  /**
+   * The net list containing this net, which is notified, when the pins are changed.
+   */
+  NetList net_list;
 
   /**
    * Creates a new instance of Net
@@ -84,6 +88,10 @@ public class Net
   public void set_pins(Collection<Pin> p_pin_list)
   {
     pin_list = new TreeSet<>(p_pin_list);
+    if (net_list != null)
+    {
+      net_list.pins_changed();
+    }
   }
 
   public static class Id implements Comparable<Id>
@@ -12,6 +12,12 @@ public class NetList
    * The entries of this map are of type Net, the keys are the net_ids.
    */
   private final Map<Net.Id, Net> nets = new TreeMap<>();
+  /**
+   * The nets containing each pin, so that the nets of the component pins are found without
+   * searching all nets. Created, when it is first used, and discarded, when a net or its pins
+   * change.
+   */
+  private Map<Net.Pin, List<Net>> nets_by_pin;
 
   /**
    * Returns true, if the netlist contains a net with the input name.
@@ -35,7 +41,9 @@ public class NetList
     else
     {
       result = new Net(p_net_id);
+      result.net_list = this;
       nets.put(p_net_id, result);
+      nets_by_pin = null;
     }
     return result;
   }
@@ -55,17 +63,35 @@ public class NetList
    */
   public Collection<Net> get_nets(String p_component_name, String p_pin_name)
   {
-    Collection<Net> result = new LinkedList<>();
-    Net.Pin search_pin = new Net.Pin(p_component_name, p_pin_name);
-    Collection<Net> net_list = nets.values();
-    for (Net curr_net : net_list)
+    if (nets_by_pin == null)
     {
-      Set<Net.Pin> net_pins = curr_net.get_pins();
-      if (net_pins != null && net_pins.contains(search_pin))
+      nets_by_pin = new TreeMap<>();
+      for (Net curr_net : nets.values())
       {
-        result.add(curr_net);
+        Set<Net.Pin> net_pins = curr_net.get_pins();
+        if (net_pins == null)
+        {
+          continue;
+        }
+        for (Net.Pin curr_pin : net_pins)
+        {
+          nets_by_pin.computeIfAbsent(curr_pin, k -> new ArrayList<>()).add(curr_net);
+        }
       }
     }
-    return result;
+    List<Net> pin_nets = nets_by_pin.get(new Net.Pin(p_component_name, p_pin_name));
+    if (pin_nets == null)
+    {
+      return new LinkedList<>();
+    }
+    return new LinkedList<>(pin_nets);
+  }
+
+  /**
+   * Called, when the pins of a net in this list are changed.
+   */
+  void pins_changed()
+  {
+    nets_by_pin = null;
   }
 }
\ No newline at end of file
@@ -35,9 +35,32 @@ public class Network extends ScopeKeyword
     p_par.file.start_scope();
     p_par.file.write("network");
     Collection<app.freerouting.board.Pin> board_pins = p_par.board.get_pins();
-    for (int i = 1; i <= p_par.board.rules.nets.max_net_no(); ++i)
+    int max_net_no = p_par.board.rules.nets.max_net_no();
+    // Sort the pins by net in advance, so that the board pins are not searched for each net.
+    List<List<app.freerouting.board.Pin>> pins_by_net = new ArrayList<>(max_net_no + 1);
+    for (int i = 0; i <= max_net_no; ++i)
+    {
+      pins_by_net.add(new ArrayList<>());
+    }
+    for (app.freerouting.board.Pin curr_pin : board_pins)
+    {
+      for (int i = 0; i < curr_pin.net_count(); ++i)
+      {
+        int curr_net_no = curr_pin.get_net_no(i);
+        if (curr_net_no < 1 || curr_net_no > max_net_no)
+        {
+          continue;
+        }
+        List<app.freerouting.board.Pin> curr_net_pins = pins_by_net.get(curr_net_no);
+        if (curr_net_pins.isEmpty() || curr_net_pins.get(curr_net_pins.size() - 1) != curr_pin)
+        {
+          curr_net_pins.add(curr_pin);
+        }
+      }
+    }
+    for (int i = 1; i <= max_net_no; ++i)
     {
-      Net.write_scope(p_par, p_par.board.rules.nets.get(i), board_pins);
+      Net.write_scope(p_par, p_par.board.rules.nets.get(i), pins_by_net.get(i));
     }
     write_via_infos(p_par.board.rules, p_par.file, p_par.identifier_type);
     write_via_rules(p_par.board.rules, p_par.file, p_par.identifier_type);
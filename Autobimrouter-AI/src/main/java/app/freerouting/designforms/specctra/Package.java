@@ -1,6 +1,5 @@
 package app.freerouting.designforms.specctra;
 
-import app.freerouting.board.Item;
 import app.freerouting.library.Padstack;
 import app.freerouting.logger.FRLogger;
 
@@ -398,7 +397,6 @@ public class Package
    */
   public static void write_placement_scope(WriteScopeParameter p_par, app.freerouting.library.Package p_package) throws IOException
   {
-    Collection<Item> board_items = p_par.board.get_items();
     boolean component_found = false;
     for (int i = 1; i <= p_par.board.components.count(); ++i)
     {
@@ -406,15 +404,7 @@ public class Package
       if (curr_component.get_package() == p_package)
       {
         // check, if not all items of the component are deleted
-        boolean undeleted_item_found = false;
-        for (Item curr_item : board_items)
-        {
-          if (curr_item.get_component_no() == curr_component.no)
-          {
-            undeleted_item_found = true;
-            break;
-          }
-        }
+        boolean undeleted_item_found = p_par.component_has_items(curr_component.no);
         if (undeleted_item_found || !curr_component.is_placed())
         {
           if (!component_found)
@@ -2,6 +2,13 @@ package app.freerouting.designforms.specctra;
 
 import app.freerouting.logger.FRLogger;
 
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -35,7 +42,15 @@ class SpecctraDsnFileReader implements IJFlexScanner
   /**
    * initial size of the lookahead buffer
    */
-  private static final int ZZ_BUFFERSIZE = 16 * 1024 * 1024;
+  private static final int ZZ_BUFFERSIZE = 65536;
+  /**
+   * Files from this size on are memory mapped and scanned directly from the mapped bytes.
+   */
+  private static final int MIN_MAPPED_FILE_SIZE = 1024 * 1024;
+  /**
+   * Longer identifiers are not shared.
+   */
+  private static final int MAX_SHARED_IDENTIFIER_LENGTH = 64;
   /**
    * Translates characters to character classes
    */
@@ -77,6 +92,28 @@ class SpecctraDsnFileReader implements IJFlexScanner
    * the input device
    */
   private java.io.Reader zzReader;
+  /**
+   * the input stream, if the scanner was created from a java.io.InputStream
+   */
+  private java.io.InputStream zzInputStream;
+  /**
+   * the memory mapped input file, if the input is read from the mapped bytes instead of zzReader
+   */
+  private ByteBuffer zzInputBytes;
+  /**
+   * the decoder for the mapped bytes after the first non ASCII character, or null
+   */
+  private CharsetDecoder zzInputDecoder;
+  /**
+   * the second char of a decoded surrogate pair, which did not fit into the buffer, or -1
+   */
+  private int zzPendingChar = -1;
+  /**
+   * The identifiers found so far, so that repeated names like net, pin and padstack names share
+   * one String. Open addressing with linear probing, the length is a power of 2.
+   */
+  private String[] identifier_table = new String[1024];
+  private int identifier_count = 0;
   /**
    * the current state of the DFA
    */
@@ -151,7 +188,7 @@ class SpecctraDsnFileReader implements IJFlexScanner
    */
   SpecctraDsnFileReader(java.io.InputStream in)
   {
-    this(new java.io.InputStreamReader(in));
+    this.zzInputStream = in;
   }
 
   private static int[] zzUnpackAction()
@@ -297,16 +334,16 @@ class SpecctraDsnFileReader implements IJFlexScanner
     }
 
     /* is the buffer big enough? */
-    if (zzCurrentPos >= zzBuffer.length)
+    if (zzEndRead >= zzBuffer.length)
     {
       /* if not: blow it up */
-      char newBuffer[] = new char[zzCurrentPos * 2];
+      char newBuffer[] = new char[zzBuffer.length * 2];
       System.arraycopy(zzBuffer, 0, newBuffer, 0, zzBuffer.length);
       zzBuffer = newBuffer;
     }
 
     /* finally: fill the buffer with new input */
-    int numRead = zzReader.read(zzBuffer, zzEndRead, zzBuffer.length - zzEndRead);
+    int numRead = read_input(zzBuffer, zzEndRead, zzBuffer.length - zzEndRead);
 
     if (numRead < 0)
     {
@@ -319,6 +356,192 @@ class SpecctraDsnFileReader implements IJFlexScanner
     }
   }
 
+  /**
+   * Reads up to p_length characters of the input into p_buffer from p_offset on. Returns the number
+   * of characters read, or -1 at the end of the input.
+   */
+  private int read_input(char[] p_buffer, int p_offset, int p_length) throws java.io.IOException
+  {
+    if (zzReader == null && zzInputBytes == null)
+    {
+      open_input(zzInputStream);
+    }
+    if (zzInputBytes == null)
+    {
+      return zzReader.read(p_buffer, p_offset, p_length);
+    }
+    if (zzPendingChar >= 0)
+    {
+      p_buffer[p_offset] = (char) zzPendingChar;
+      zzPendingChar = -1;
+      return 1;
+    }
+    if (!zzInputBytes.hasRemaining())
+    {
+      return -1;
+    }
+    if (zzInputDecoder == null)
+    {
+      // pure ASCII, which is the normal case for Specctra files, is converted byte by byte
+      int position = zzInputBytes.position();
+      int count = Math.min(p_length, zzInputBytes.remaining());
+      int i = 0;
+      while (i < count)
+      {
+        byte curr_byte = zzInputBytes.get(position + i);
+        if (curr_byte < 0)
+        {
+          break;
+        }
+        p_buffer[p_offset + i] = (char) curr_byte;
+        ++i;
+      }
+      zzInputBytes.position(position + i);
+      if (i > 0 || count == 0)
+      {
+        return i;
+      }
+      // decode the rest with the default charset like a java.io.InputStreamReader
+      zzInputDecoder = Charset.defaultCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    CharBuffer chars = CharBuffer.wrap(p_buffer, p_offset, p_length);
+    zzInputDecoder.decode(zzInputBytes, chars, true);
+    int result = chars.position() - p_offset;
+    if (result == 0)
+    {
+      // The next character is a surrogate pair and only one char is free in p_buffer.
+      // The pair is decoded into a side buffer, because the scanner needs at least one char.
+      CharBuffer pair = CharBuffer.allocate(2);
+      zzInputDecoder.decode(zzInputBytes, pair, true);
+      pair.flip();
+      if (!pair.hasRemaining())
+      {
+        return -1;
+      }
+      p_buffer[p_offset] = pair.get();
+      if (pair.hasRemaining())
+      {
+        zzPendingChar = pair.get();
+      }
+      result = 1;
+    }
+    return result;
+  }
+
+  /**
+   * Opens the input device for p_stream. A big file is memory mapped, so that it is scanned
+   * directly from the mapped bytes without holding a copy of the file on the heap.
+   */
+  private void open_input(java.io.InputStream p_stream) throws java.io.IOException
+  {
+    if (p_stream instanceof FileInputStream file_stream)
+    {
+      FileChannel channel = file_stream.getChannel();
+      long position = channel.position();
+      long remaining = channel.size() - position;
+      if (remaining >= MIN_MAPPED_FILE_SIZE && remaining <= Integer.MAX_VALUE)
+      {
+        zzInputBytes = channel.map(FileChannel.MapMode.READ_ONLY, position, remaining);
+        channel.position(position + remaining);
+        return;
+      }
+    }
+    zzReader = new java.io.InputStreamReader(p_stream);
+  }
+
+  /**
+   * Returns true, if the character at p_offset behind zzMarkedPos is in the buffer. Refills the
+   * buffer, if necessary, so that the positions in the buffer may change.
+   */
+  private boolean is_available(int p_offset)
+  {
+    while (zzMarkedPos + p_offset >= zzEndRead)
+    {
+      try
+      {
+        if (zzRefill())
+        {
+          return false;
+        }
+      } catch (java.io.IOException e)
+      {
+        FRLogger.error("SpecctraDsnFileReader: IO error reading the input", e);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the text matched by the current regular expression as a String shared with all
+   * previous matches of the same text.
+   */
+  private String identifier_text()
+  {
+    int length = zzMarkedPos - zzStartRead;
+    if (length > MAX_SHARED_IDENTIFIER_LENGTH)
+    {
+      return yytext();
+    }
+    // the same hash code as String.hashCode
+    int hash = 0;
+    for (int i = zzStartRead; i < zzMarkedPos; ++i)
+    {
+      hash = 31 * hash + zzBuffer[i];
+    }
+    int mask = identifier_table.length - 1;
+    int index = (hash ^ (hash >>> 16)) & mask;
+    for (String curr_identifier = identifier_table[index]; curr_identifier != null; curr_identifier = identifier_table[index])
+    {
+      if (curr_identifier.length() == length && matches_text(curr_identifier))
+      {
+        return curr_identifier;
+      }
+      index = (index + 1) & mask;
+    }
+    String result = yytext();
+    identifier_table[index] = result;
+    ++identifier_count;
+    if (2 * identifier_count > identifier_table.length)
+    {
+      grow_identifier_table();
+    }
+    return result;
+  }
+
+  private boolean matches_text(String p_string)
+  {
+    for (int i = 0; i < p_string.length(); ++i)
+    {
+      if (p_string.charAt(i) != zzBuffer[zzStartRead + i])
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void grow_identifier_table()
+  {
+    String[] old_table = identifier_table;
+    identifier_table = new String[2 * old_table.length];
+    int mask = identifier_table.length - 1;
+    for (String curr_identifier : old_table)
+    {
+      if (curr_identifier == null)
+      {
+        continue;
+      }
+      int hash = curr_identifier.hashCode();
+      int index = (hash ^ (hash >>> 16)) & mask;
+      while (identifier_table[index] != null)
+      {
+        index = (index + 1) & mask;
+      }
+      identifier_table[index] = curr_identifier;
+    }
+  }
+
   /**
    * Closes the input stream.
    */
@@ -331,6 +554,11 @@ class SpecctraDsnFileReader implements IJFlexScanner
     {
       zzReader.close();
     }
+    if (zzInputStream != null)
+    {
+      zzInputStream.close();
+    }
+    zzInputBytes = null;
   }
 
   /**
@@ -344,6 +572,10 @@ class SpecctraDsnFileReader implements IJFlexScanner
   public final void yyreset(java.io.Reader reader)
   {
     zzReader = reader;
+    zzInputStream = null;
+    zzInputBytes = null;
+    zzInputDecoder = null;
+    zzPendingChar = -1;
     zzAtBOL = true;
     zzAtEOF = false;
     zzEndRead = zzStartRead = 0;
@@ -872,7 +1104,7 @@ class SpecctraDsnFileReader implements IJFlexScanner
           break;
         case 4:
         {
-          return yytext();
+          return identifier_text();
         }
         case 172:
           break;
@@ -1002,7 +1234,7 @@ class SpecctraDsnFileReader implements IJFlexScanner
         case 1:
         {
           yybegin(YYINITIAL);
-          return yytext();
+          return identifier_text();
         }
         case 192:
           break;
@@ -1351,14 +1583,14 @@ class SpecctraDsnFileReader implements IJFlexScanner
     }
     skipLeading.add(Character.valueOf(leading));
 
-    while ((zzMarkedPos + i < zzBuffer.length) && (skipLeading.contains(zzBuffer[zzMarkedPos + i])))
+    while (is_available(i) && (skipLeading.contains(zzBuffer[zzMarkedPos + i])))
     {
       i++;
     }
 
     boolean skipLastChar = false;
     List<Character> stopAt = null;
-    if (zzBuffer[zzMarkedPos + i] == 34)
+    if (is_available(i) && (zzBuffer[zzMarkedPos + i] == 34))
     {
       stopAt = new ArrayList<>(Arrays.asList(stringStopAtQuotes));
       i++;
@@ -1371,7 +1603,7 @@ class SpecctraDsnFileReader implements IJFlexScanner
     }
 
     // read the actual string until we have a space/tab/new line
-    while ((zzMarkedPos + i < zzBuffer.length) && (!stopAt.contains(zzBuffer[zzMarkedPos + i])))
+    while (is_available(i) && (!stopAt.contains(zzBuffer[zzMarkedPos + i])))
     {
       stringBuffer.append(zzBuffer[zzMarkedPos + i]);
       i++;
@@ -1282,6 +1282,8 @@ class Structure extends ScopeKeyword
     p_par.board_handling.create_board(bounds, board_layer_structure, outline_shape_arr, p_board_construction_info.outline_clearance_class_name, board_rules, board_communication);
 
     BasicBoard board = p_par.board_handling.get_routing_board();
+    // The search trees are bulk loaded, when the wiring is read or the reading is finished.
+    board.start_deferred_search_tree_insert();
 
     // Insert the holes in the board outline as keepouts.
     for (PolylineShape curr_outline_hole : hole_shapes)
@@ -16,6 +16,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Class for reading and writing wiring scopes from dsn-files.
@@ -326,6 +327,8 @@ class Wiring extends ScopeKeyword
   @Override
   public boolean read_scope(ReadScopeParameter p_par)
   {
+    // Inserting vias and normalizing traces needs the search trees.
+    p_par.board_handling.get_routing_board().finish_deferred_search_tree_insert();
     Object next_token = null;
     for (; ; )
     {
@@ -370,8 +373,25 @@ class Wiring extends ScopeKeyword
       }
     }
     RoutingBoard board = p_par.board_handling.get_routing_board();
-    for (int i = 1; i <= board.rules.nets.max_net_no(); ++i)
+    // Only the nets containing traces are normalized, because each normalization reads all board
+    // items.
+    Set<Integer> trace_net_numbers = new TreeSet<>();
+    for (Trace curr_trace : board.get_traces())
     {
+      if (curr_trace instanceof PolylineTrace)
+      {
+        for (int i = 0; i < curr_trace.net_count(); ++i)
+        {
+          trace_net_numbers.add(curr_trace.get_net_no(i));
+        }
+      }
+    }
+    for (int i : trace_net_numbers)
+    {
+      if (i < 1 || i > board.rules.nets.max_net_no())
+      {
+        continue;
+      }
       try
       {
         board.normalize_traces(i);
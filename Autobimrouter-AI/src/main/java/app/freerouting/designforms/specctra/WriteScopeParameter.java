@@ -1,9 +1,14 @@
 package app.freerouting.designforms.specctra;
 
 import app.freerouting.board.BasicBoard;
+import app.freerouting.board.Item;
+import app.freerouting.board.Pin;
 import app.freerouting.datastructures.IdentifierType;
 import app.freerouting.datastructures.IndentFileWriter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Default parameter type used while writing a Specctra dsn-file.
  */
@@ -16,6 +21,16 @@ public class WriteScopeParameter
   final CoordinateTransform coordinate_transform;
   final boolean compat_mode;
   final IdentifierType identifier_type;
+  /**
+   * The board pins by component number and pin number. Created, when it is first used, because
+   * the board does not change while it is written.
+   */
+  private Map<Long, Pin> pin_map;
+  /**
+   * component_has_items[i] is true, if the board contains an item of the component with number i.
+   * Created, when it is first used.
+   */
+  private boolean[] component_has_items;
 
   /**
    * Creates a new instance of WriteScopeParameter. If p_compat_mode is true, only standard
@@ -32,4 +47,46 @@ public class WriteScopeParameter
     String[] reserved_chars = {"(", ")", " ", ";", "-", "_"};
     identifier_type = new IdentifierType(reserved_chars, p_string_quote);
   }
+
+  /**
+   * Returns the pin with number p_pin_no of the component with number p_component_no, like
+   * BasicBoard.get_pin, without searching all board items for each pin.
+   */
+  Pin get_pin(int p_component_no, int p_pin_no)
+  {
+    if (pin_map == null)
+    {
+      pin_map = new HashMap<>();
+      for (Pin curr_pin : board.get_pins())
+      {
+        pin_map.putIfAbsent(pin_key(curr_pin.get_component_no(), curr_pin.pin_no), curr_pin);
+      }
+    }
+    return pin_map.get(pin_key(p_component_no, p_pin_no));
+  }
+
+  /**
+   * Returns true, if not all items of the component with number p_component_no are deleted.
+   */
+  boolean component_has_items(int p_component_no)
+  {
+    if (component_has_items == null)
+    {
+      component_has_items = new boolean[board.components.count() + 1];
+      for (Item curr_item : board.get_items())
+      {
+        int curr_component_no = curr_item.get_component_no();
+        if (curr_component_no > 0 && curr_component_no < component_has_items.length)
+        {
+          component_has_items[curr_component_no] = true;
+        }
+      }
+    }
+    return p_component_no > 0 && p_component_no < component_has_items.length && component_has_items[p_component_no];
+  }
+
+  private static long pin_key(int p_component_no, int p_pin_no)
+  {
+    return ((long) p_component_no << 32) | (p_pin_no & 0xFFFFFFFFL);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package app.freerouting.geometry.planar;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Floating point filters for geometric predicates, which are otherwise evaluated with exact
+ * rational arithmetic. A filter computes the predicate with doubles together with a bound for the
+ * rounding error and returns a result only, if the sign is certain. Otherwise it returns null, and
+ * the caller has to use the exact calculation. If COUNT_EVALUATIONS is set, the number of decided
+ * and undecided evaluations is counted for each call site.
+ */
+public final class FilteredPredicates
+{
+  /**
+   * The unit roundoff of double arithmetic.
+   */
+  private static final double EPSILON = 0x1p-53;
+  /**
+   * The relative error bound of the filter for side_of_intersection. The error of a product
+   * difference of exact input differences is below 3 * EPSILON times its permanent, and the final
+   * expression adds less than 5 * EPSILON, so 16 * EPSILON leaves enough room for the rounding of
+   * the error bound itself.
+   */
+  private static final double SIDE_OF_INTERSECTION_ERROR_FACTOR = 16 * EPSILON;
+  /**
+   * If true, the evaluations at the call sites are counted. Set with the system property
+   * "freerouting.count_filtered_predicates". Off by default, because the predicates are evaluated in
+   * the innermost loops of the geometry.
+   */
+  static final boolean COUNT_EVALUATIONS = Boolean.getBoolean("freerouting.count_filtered_predicates");
+
+  private static final LongAdder[] hit_counts = new_counters();
+  private static final LongAdder[] fallback_counts = new_counters();
+
+  private FilteredPredicates() // disallow instantiation
+  {
+  }
+
+  /**
+   * Returns the side of p_line, on which the intersection of p_1 and p_2 is located, with the same
+   * meaning as Line.side_of_intersection, or null, if the result cannot be certified with floating
+   * point arithmetic. This happens, if the 3 lines intersect in exactly 1 point or nearly so, if
+   * p_1 and p_2 are nearly parallel, or if a line is not defined by IntPoints.
+   */
+  static Side side_of_intersection(Line p_line, Line p_1, Line p_2)
+  {
+    if (!(p_line.a instanceof IntPoint a) || !(p_line.b instanceof IntPoint b) || !(p_1.a instanceof IntPoint a_1) || !(p_1.b instanceof IntPoint b_1) || !(p_2.a instanceof IntPoint a_2) || !(p_2.b instanceof IntPoint b_2))
+    {
+      return null;
+    }
+    // The differences of int coordinates are exact in double arithmetic.
+    double dx = (double) b.x - a.x;
+    double dy = (double) b.y - a.y;
+    double dx_1 = (double) b_1.x - a_1.x;
+    double dy_1 = (double) b_1.y - a_1.y;
+    double dx_2 = (double) b_2.x - a_2.x;
+    double dy_2 = (double) b_2.y - a_2.y;
+    double ax_1 = (double) a_1.x - a.x;
+    double ay_1 = (double) a_1.y - a.y;
+    double ax_21 = (double) a_2.x - a_1.x;
+    double ay_21 = (double) a_2.y - a_1.y;
+
+    // The intersection is a_1 + (n / d) * (dx_1, dy_1), and its side of p_line is the sign of
+    // e + (n / d) * f.
+    double d = dx_1 * dy_2 - dy_1 * dx_2;
+    double d_permanent = Math.abs(dx_1 * dy_2) + Math.abs(dy_1 * dx_2);
+    if (Math.abs(d) <= SIDE_OF_INTERSECTION_ERROR_FACTOR * d_permanent)
+    {
+      // p_1 and p_2 are parallel or nearly so
+      return null;
+    }
+    double n = ax_21 * dy_2 - ay_21 * dx_2;
+    double n_permanent = Math.abs(ax_21 * dy_2) + Math.abs(ay_21 * dx_2);
+    double e = dy * ax_1 - dx * ay_1;
+    double e_permanent = Math.abs(dy * ax_1) + Math.abs(dx * ay_1);
+    double f = dy * dx_1 - dx * dy_1;
+    double f_permanent = Math.abs(dy * dx_1) + Math.abs(dx * dy_1);
+
+    double det = e * d + n * f;
+    double error_bound = SIDE_OF_INTERSECTION_ERROR_FACTOR * (e_permanent * d_permanent + n_permanent * f_permanent);
+    if (Math.abs(det) <= error_bound)
+    {
+      return null;
+    }
+    if ((det > 0) == (d > 0))
+    {
+      return Side.ON_THE_LEFT;
+    }
+    return Side.ON_THE_RIGHT;
+  }
+
+  /**
+   * Counts an evaluation of a filtered predicate at p_call_site. p_decided is true, if the filter
+   * decided the predicate, and false, if the exact calculation was necessary. Called only, if
+   * COUNT_EVALUATIONS is set.
+   */
+  static void count(CallSite p_call_site, boolean p_decided)
+  {
+    if (p_decided)
+    {
+      hit_counts[p_call_site.ordinal()].increment();
+    }
+    else
+    {
+      fallback_counts[p_call_site.ordinal()].increment();
+    }
+  }
+
+  /**
+   * Returns the number of evaluations at p_call_site, which were decided by the floating point
+   * filter.
+   */
+  public static long get_hit_count(CallSite p_call_site)
+  {
+    return hit_counts[p_call_site.ordinal()].sum();
+  }
+
+  /**
+   * Returns the number of evaluations at p_call_site, which needed the exact calculation.
+   */
+  public static long get_fallback_count(CallSite p_call_site)
+  {
+    return fallback_counts[p_call_site.ordinal()].sum();
+  }
+
+  /**
+   * Returns the share of the evaluations at p_call_site decided by the floating point filter, or
+   * 0, if there were no evaluations.
+   */
+  public static double get_hit_rate(CallSite p_call_site)
+  {
+    long hits = get_hit_count(p_call_site);
+    long total = hits + get_fallback_count(p_call_site);
+    if (total == 0)
+    {
+      return 0;
+    }
+    return (double) hits / total;
+  }
+
+  public static void reset_statistics()
+  {
+    for (int i = 0; i < hit_counts.length; ++i)
+    {
+      hit_counts[i].reset();
+      fallback_counts[i].reset();
+    }
+  }
+
+  private static LongAdder[] new_counters()
+  {
+    LongAdder[] result = new LongAdder[CallSite.values().length];
+    for (int i = 0; i < result.length; ++i)
+    {
+      result[i] = new LongAdder();
+    }
+    return result;
+  }
+
+  /**
+   * The places, where filtered predicates are evaluated.
+   */
+  public enum CallSite
+  {
+    /**
+     * Line.side_of_intersection, used for removing the redundant lines in the intersection of
+     * simplexes and therefore by Simplex.intersects.
+     */
+    LINE_SIDE_OF_INTERSECTION,
+    /**
+     * TileShape.contains(TileShape) for the corners of a simplex.
+     */
+    TILE_SHAPE_CONTAINS
+  }
+}
@@ -0,0 +1,139 @@
+package app.freerouting.geometry.planar;
+
+import java.util.Arrays;
+
+/**
+ * A batch of octagons or boxes stored column by column in primitive arrays instead of IntOctagon
+ * or IntBox objects, so that a single shape can be tested against all elements at once. The test
+ * loops have no branches and no method calls, so that they can be vectorized by the just in time
+ * compiler. Octagons and boxes must not be mixed in the same batch, because only the x and y bounds
+ * of a box are stored.
+ */
+public class IntOctagonBatch
+{
+  private int[] lx_arr;
+  private int[] ly_arr;
+  private int[] rx_arr;
+  private int[] uy_arr;
+  private int[] ulx_arr;
+  private int[] lrx_arr;
+  private int[] llx_arr;
+  private int[] urx_arr;
+  private int size = 0;
+
+  /**
+   * Creates a new empty batch with initial space for p_capacity elements.
+   */
+  public IntOctagonBatch(int p_capacity)
+  {
+    int capacity = Math.max(p_capacity, 1);
+    lx_arr = new int[capacity];
+    ly_arr = new int[capacity];
+    rx_arr = new int[capacity];
+    uy_arr = new int[capacity];
+    ulx_arr = new int[capacity];
+    lrx_arr = new int[capacity];
+    llx_arr = new int[capacity];
+    urx_arr = new int[capacity];
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public void clear()
+  {
+    size = 0;
+  }
+
+  /**
+   * Appends p_octagon to the batch.
+   */
+  public void add(IntOctagon p_octagon)
+  {
+    if (size >= lx_arr.length)
+    {
+      grow();
+    }
+    lx_arr[size] = p_octagon.lx;
+    ly_arr[size] = p_octagon.ly;
+    rx_arr[size] = p_octagon.rx;
+    uy_arr[size] = p_octagon.uy;
+    ulx_arr[size] = p_octagon.ulx;
+    lrx_arr[size] = p_octagon.lrx;
+    llx_arr[size] = p_octagon.llx;
+    urx_arr[size] = p_octagon.urx;
+    ++size;
+  }
+
+  /**
+   * Appends p_box to the batch.
+   */
+  public void add(IntBox p_box)
+  {
+    if (size >= lx_arr.length)
+    {
+      grow();
+    }
+    lx_arr[size] = p_box.ll.x;
+    ly_arr[size] = p_box.ll.y;
+    rx_arr[size] = p_box.ur.x;
+    uy_arr[size] = p_box.ur.y;
+    ++size;
+  }
+
+  /**
+   * Returns true, if some octagon of this batch overlaps with p_shape, with the same result as
+   * IntOctagon.overlaps for each element.
+   */
+  public boolean overlaps_any(IntOctagon p_shape)
+  {
+    int lx = p_shape.lx;
+    int ly = p_shape.ly;
+    int rx = p_shape.rx;
+    int uy = p_shape.uy;
+    int ulx = p_shape.ulx;
+    int lrx = p_shape.lrx;
+    int llx = p_shape.llx;
+    int urx = p_shape.urx;
+    boolean result = false;
+    for (int i = 0; i < size; ++i)
+    {
+      // non-short-circuit operators, so that the loop body has no branches
+      result |= Math.max(lx_arr[i], lx) < Math.min(rx_arr[i], rx) & Math.max(ly_arr[i], ly) < Math.min(uy_arr[i], uy) & Math.max(llx_arr[i], llx) < Math.min(urx_arr[i], urx) & Math.max(ulx_arr[i], ulx) < Math.min(lrx_arr[i], lrx);
+    }
+    return result;
+  }
+
+  /**
+   * Returns true, if some box of this batch overlaps with p_shape, with the same result as
+   * IntBox.overlaps for each element.
+   */
+  public boolean overlaps_any(IntBox p_shape)
+  {
+    int lx = p_shape.ll.x;
+    int ly = p_shape.ll.y;
+    int rx = p_shape.ur.x;
+    int uy = p_shape.ur.y;
+    boolean result = false;
+    for (int i = 0; i < size; ++i)
+    {
+      result |= lx_arr[i] < rx & ly_arr[i] < uy & lx < rx_arr[i] & ly < uy_arr[i];
+    }
+    return result;
+  }
+
+  private void grow()
+  {
+    int new_length = 2 * lx_arr.length;
+    lx_arr = Arrays.copyOf(lx_arr, new_length);
+    ly_arr = Arrays.copyOf(ly_arr, new_length);
+    rx_arr = Arrays.copyOf(rx_arr, new_length);
+    uy_arr = Arrays.copyOf(uy_arr, new_length);
+    ulx_arr = Arrays.copyOf(ulx_arr, new_length);
+    lrx_arr = Arrays.copyOf(lrx_arr, new_length);
+    llx_arr = Arrays.copyOf(llx_arr, new_length);
+    urx_arr = Arrays.copyOf(urx_arr, new_length);
+  }
+}
@@ -167,11 +167,27 @@ public class IntPoint extends Point implements Serializable
     // consisting of IntPoints.
     // The general implementation is still missing.
     IntVector v = (IntVector) p_line.b.difference_by(p_line.a);
-    BigInteger vxvx = BigInteger.valueOf((long) v.x * v.x);
-    BigInteger vyvy = BigInteger.valueOf((long) v.y * v.y);
-    BigInteger vxvy = BigInteger.valueOf((long) v.x * v.y);
+    long long_vxvx = (long) v.x * v.x;
+    long long_vyvy = (long) v.y * v.y;
+    long long_vxvy = (long) v.x * v.y;
+    long long_det = ((IntPoint) p_line.a).determinant((IntPoint) p_line.b);
+    // Calculate with long values and fall back to BigInteger only in case of an overflow.
+    long long_denominator = LongArithmetic.add(long_vxvx, long_vyvy);
+    long long_proj_x = LongArithmetic.add(LongArithmetic.add(LongArithmetic.multiply(long_vxvx, x), LongArithmetic.multiply(long_vxvy, y)), LongArithmetic.multiply(long_det, v.y));
+    long long_proj_y = LongArithmetic.subtract(LongArithmetic.add(LongArithmetic.multiply(long_vxvy, x), LongArithmetic.multiply(long_vyvy, y)), LongArithmetic.multiply(long_det, v.x));
+    if (long_denominator > 0 && long_proj_x != LongArithmetic.OVERFLOW && long_proj_y != LongArithmetic.OVERFLOW)
+    {
+      if (long_proj_x % long_denominator == 0 && long_proj_y % long_denominator == 0)
+      {
+        return new IntPoint((int) (long_proj_x / long_denominator), (int) (long_proj_y / long_denominator));
+      }
+      return new RationalPoint(BigInteger.valueOf(long_proj_x), BigInteger.valueOf(long_proj_y), BigInteger.valueOf(long_denominator));
+    }
+    BigInteger vxvx = BigInteger.valueOf(long_vxvx);
+    BigInteger vyvy = BigInteger.valueOf(long_vyvy);
+    BigInteger vxvy = BigInteger.valueOf(long_vxvy);
     BigInteger denominator = vxvx.add(vyvy);
-    BigInteger det = BigInteger.valueOf(((IntPoint) p_line.a).determinant((IntPoint) p_line.b));
+    BigInteger det = BigInteger.valueOf(long_det);
     BigInteger point_x = BigInteger.valueOf(x);
     BigInteger point_y = BigInteger.valueOf(y);
 
@@ -177,18 +177,17 @@ public class Line implements Comparable<Line>, Serializable
    */
   public Side side_of_intersection(Line p_1, Line p_2)
   {
-
-    FloatPoint intersection_approx = p_1.intersection_approx(p_2);
-    Side result = this.side_of(intersection_approx, 1.0);
-    if (result == Side.COLLINEAR)
+    Side filtered_result = FilteredPredicates.side_of_intersection(this, p_1, p_2);
+    if (FilteredPredicates.COUNT_EVALUATIONS)
     {
-      // Previous calculation was with FloatPoints and a tolerance
-      // for performance reasons. Make an exact check for
-      // collinearity now with class Point instead of FloatPoint.
-      Point intersection = p_1.intersection(p_2);
-      result = this.side_of(intersection);
+      FilteredPredicates.count(FilteredPredicates.CallSite.LINE_SIDE_OF_INTERSECTION, filtered_result != null);
     }
-    return result;
+    if (filtered_result != null)
+    {
+      return filtered_result;
+    }
+    // The floating point filter could not certify the result, so it is calculated exactly.
+    return this.side_of(p_1.intersection(p_2));
   }
 
   /**
@@ -335,9 +334,19 @@ public class Line implements Comparable<Line>, Serializable
       }
     }
 
-    BigInteger det_1 = BigInteger.valueOf(((IntPoint) a).determinant((IntPoint) b));
-    BigInteger det_2 = BigInteger.valueOf(((IntPoint) p_other.a).determinant((IntPoint) p_other.b));
-    BigInteger det = BigInteger.valueOf(delta_2.determinant(delta_1));
+    long long_det_1 = ((IntPoint) a).determinant((IntPoint) b);
+    long long_det_2 = ((IntPoint) p_other.a).determinant((IntPoint) p_other.b);
+    long long_det = delta_2.determinant(delta_1);
+    // Calculate with long values and fall back to BigInteger only in case of an overflow.
+    long long_is_x = LongArithmetic.subtract(LongArithmetic.multiply(long_det_1, delta_2.x), LongArithmetic.multiply(long_det_2, delta_1.x));
+    long long_is_y = LongArithmetic.subtract(LongArithmetic.multiply(long_det_1, delta_2.y), LongArithmetic.multiply(long_det_2, delta_1.y));
+    if (long_is_x != LongArithmetic.OVERFLOW && long_is_y != LongArithmetic.OVERFLOW && long_det != LongArithmetic.OVERFLOW)
+    {
+      return intersection_point(long_is_x, long_is_y, long_det);
+    }
+    BigInteger det_1 = BigInteger.valueOf(long_det_1);
+    BigInteger det_2 = BigInteger.valueOf(long_det_2);
+    BigInteger det = BigInteger.valueOf(long_det);
     BigInteger tmp_1 = det_1.multiply(BigInteger.valueOf(delta_2.x));
     BigInteger tmp_2 = det_2.multiply(BigInteger.valueOf(delta_1.x));
     BigInteger is_x = tmp_1.subtract(tmp_2);
@@ -367,6 +376,38 @@ public class Line implements Comparable<Line>, Serializable
     return new RationalPoint(is_x, is_y, det);
   }
 
+  /**
+   * Returns the point with the homogeneous coordinates p_x, p_y and p_z, which must not be
+   * LongArithmetic.OVERFLOW. Returns an IntPoint, if the point is integral and its coordinates are
+   * not too big.
+   */
+  private static Point intersection_point(long p_x, long p_y, long p_z)
+  {
+    long x = p_x;
+    long y = p_y;
+    long z = p_z;
+    if (z != 0)
+    {
+      if (z < 0)
+      {
+        x = -x;
+        y = -y;
+        z = -z;
+      }
+      if (x % z == 0 && y % z == 0)
+      {
+        x /= z;
+        y /= z;
+        if (Math.abs(x) <= Limits.CRIT_INT && Math.abs(y) <= Limits.CRIT_INT)
+        {
+          return new IntPoint((int) x, (int) y);
+        }
+        z = 1;
+      }
+    }
+    return new RationalPoint(BigInteger.valueOf(x), BigInteger.valueOf(y), BigInteger.valueOf(z));
+  }
+
   /**
    * Returns an approximation of the intersection of the 2 lines by a FloatPoint. If the lines are
    * parallel the result coordinates will be Integer.MAX_VALUE. Useful in situations where
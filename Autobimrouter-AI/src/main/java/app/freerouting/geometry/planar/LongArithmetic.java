@@ -0,0 +1,72 @@
+package app.freerouting.geometry.planar;
+
+/**
+ * Exact integer arithmetic with long values, which detects overflows without throwing exceptions.
+ * Used as fast path for calculations, which have to fall back to BigInteger arithmetic only, if the
+ * intermediate results do not fit into a long. An overflow is signalled by the result OVERFLOW,
+ * which is propagated, if it is used as argument of a following operation.
+ */
+final class LongArithmetic
+{
+  /**
+   * The result of an operation, which does not fit into a long. The value Long.MIN_VALUE is used,
+   * because it has no positive counterpart.
+   */
+  static final long OVERFLOW = Long.MIN_VALUE;
+
+  private LongArithmetic() // disallow instantiation
+  {
+  }
+
+  /**
+   * Returns p_1 * p_2, or OVERFLOW, if the result does not fit into a long.
+   */
+  static long multiply(long p_1, long p_2)
+  {
+    if (p_1 == OVERFLOW || p_2 == OVERFLOW)
+    {
+      return OVERFLOW;
+    }
+    long result = p_1 * p_2;
+    // the product fits into a long, if the high 64 bits of the 128 bit product are the sign extension of the low 64 bits
+    if (Math.multiplyHigh(p_1, p_2) != (result >> 63))
+    {
+      return OVERFLOW;
+    }
+    return result;
+  }
+
+  /**
+   * Returns p_1 + p_2, or OVERFLOW, if the result does not fit into a long.
+   */
+  static long add(long p_1, long p_2)
+  {
+    if (p_1 == OVERFLOW || p_2 == OVERFLOW)
+    {
+      return OVERFLOW;
+    }
+    long result = p_1 + p_2;
+    if (((p_1 ^ result) & (p_2 ^ result)) < 0)
+    {
+      return OVERFLOW;
+    }
+    return result;
+  }
+
+  /**
+   * Returns p_1 - p_2, or OVERFLOW, if the result does not fit into a long.
+   */
+  static long subtract(long p_1, long p_2)
+  {
+    if (p_1 == OVERFLOW || p_2 == OVERFLOW)
+    {
+      return OVERFLOW;
+    }
+    long result = p_1 - p_2;
+    if (((p_1 ^ p_2) & (p_1 ^ result)) < 0)
+    {
+      return OVERFLOW;
+    }
+    return result;
+  }
+}
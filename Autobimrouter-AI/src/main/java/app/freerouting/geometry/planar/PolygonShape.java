@@ -24,7 +24,7 @@ public class PolygonShape extends PolylineShape
    */
   private transient IntBox precalculated_bounding_box;
   private transient IntOctagon precalculated_bounding_octagon;
-  private transient TileShape[] precalculated_convex_pieces;
+  private transient volatile TileShape[] precalculated_convex_pieces;
 
   /**
    * Creates a new instance of PolygonShape
@@ -627,13 +627,15 @@ public class PolygonShape extends PolylineShape
         // split failed, maybe the polygon has selfontersections
         return null;
       }
-      precalculated_convex_pieces = new TileShape[convex_pieces.size()];
+      TileShape[] pieces = new TileShape[convex_pieces.size()];
       Iterator<PolygonShape> it = convex_pieces.iterator();
-      for (int i = 0; i < precalculated_convex_pieces.length; ++i)
+      for (int i = 0; i < pieces.length; ++i)
       {
         PolygonShape curr_piece = it.next();
-        precalculated_convex_pieces[i] = TileShape.get_instance(curr_piece.corners);
+        pieces[i] = TileShape.get_instance(curr_piece.corners);
       }
+      // published only when complete, because the shape may be shared by several threads
+      this.precalculated_convex_pieces = pieces;
     }
     return this.precalculated_convex_pieces;
   }
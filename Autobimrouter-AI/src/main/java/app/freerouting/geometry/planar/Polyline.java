@@ -22,8 +22,12 @@ public class Polyline implements Serializable
    * the array of lines of this Polyline.
    */
   public final Line[] arr;
-  private transient FloatPoint[] precalculated_float_corners;
-  private transient Point[] precalculated_corners;
+  /**
+   * The corner caches are shared by the copies of a board routed in different threads. So they are
+   * read once into a local variable and only complete corners are stored into them.
+   */
+  private transient volatile FloatPoint[] precalculated_float_corners;
+  private transient volatile Point[] precalculated_corners;
   private transient IntBox precalculated_bounding_box;
 
   /**
@@ -79,6 +83,25 @@ public class Polyline implements Serializable
     arr[2] = Line.get_instance(p_to_corner, dir.turn_45_degree(2));
   }
 
+  /**
+   * Creates a polyline from already normalized lines. p_float_corners are the approximated corners
+   * of the lines, or null, if they are calculated when needed.
+   */
+  private Polyline(Line[] p_normalized_line_arr, FloatPoint[] p_float_corners)
+  {
+    arr = p_normalized_line_arr;
+    precalculated_float_corners = p_float_corners;
+  }
+
+  /**
+   * Creates a polyline from the lines of an existing polyline without normalizing them again, for
+   * example when reading a stored board. p_line_arr must be the array of a polyline.
+   */
+  public static Polyline from_normalized_lines(Line[] p_line_arr)
+  {
+    return new Polyline(p_line_arr, null);
+  }
+
   /**
    * Creates a polyline from an array of lines. Lines, which are parallel to the previous line are
    * skipped. The directed lines are normalized, so that they intersect the previous line before the
@@ -93,14 +116,14 @@ public class Polyline implements Serializable
       arr = new Line[0];
       return;
     }
-    precalculated_float_corners = new FloatPoint[lines.length - 1];
+    FloatPoint[] float_corners = new FloatPoint[lines.length - 1];
 
     // turn evtl the direction of the lines that they point always
     // from the previous corner to the next corner
     for (int i = 1; i < lines.length - 1; ++i)
     {
-      precalculated_float_corners[i] = lines[i].intersection_approx(lines[i + 1]);
-      Side side_of_line = lines[i - 1].side_of(precalculated_float_corners[i]);
+      float_corners[i] = lines[i].intersection_approx(lines[i + 1]);
+      Side side_of_line = lines[i - 1].side_of(float_corners[i]);
       if (side_of_line != Side.COLLINEAR)
       {
         Direction d0 = lines[i - 1].direction();
@@ -113,6 +136,7 @@ public class Polyline implements Serializable
       }
     }
     arr = lines;
+    precalculated_float_corners = float_corners;
   }
 
   private static Line[] remove_consecutive_parallel_lines(Line[] p_line_arr)
@@ -293,19 +317,21 @@ public class Polyline implements Serializable
     {
       return new Point[0];
     }
-    if (precalculated_corners == null)
+    Point[] corners = precalculated_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_corners = new Point[arr.length - 1];
+      corners = new Point[arr.length - 1];
+      precalculated_corners = corners;
     }
-    for (int i = 0; i < precalculated_corners.length; ++i)
+    for (int i = 0; i < corners.length; ++i)
     {
-      if (precalculated_corners[i] == null)
+      if (corners[i] == null)
       {
-        precalculated_corners[i] = arr[i].intersection(arr[i + 1]);
+        corners[i] = arr[i].intersection(arr[i + 1]);
       }
     }
-    return precalculated_corners;
+    return corners;
   }
 
   /**
@@ -317,19 +343,21 @@ public class Polyline implements Serializable
     {
       return new FloatPoint[0];
     }
-    if (precalculated_float_corners == null)
+    FloatPoint[] corners = precalculated_float_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_float_corners = new FloatPoint[arr.length - 1];
+      corners = new FloatPoint[arr.length - 1];
+      precalculated_float_corners = corners;
     }
-    for (int i = 0; i < precalculated_float_corners.length; ++i)
+    for (int i = 0; i < corners.length; ++i)
     {
-      if (precalculated_float_corners[i] == null)
+      if (corners[i] == null)
       {
-        precalculated_float_corners[i] = arr[i].intersection_approx(arr[i + 1]);
+        corners[i] = arr[i].intersection_approx(arr[i + 1]);
       }
     }
-    return precalculated_float_corners;
+    return corners;
   }
 
   /**
@@ -353,17 +381,21 @@ public class Polyline implements Serializable
     {
       no = p_no;
     }
-    if (precalculated_float_corners == null)
+    FloatPoint[] corners = precalculated_float_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_float_corners = new FloatPoint[arr.length - 1];
+      corners = new FloatPoint[arr.length - 1];
+      precalculated_float_corners = corners;
     }
-    if (precalculated_float_corners[no] == null)
+    FloatPoint result = corners[no];
+    if (result == null)
     // corner is not yet calculated
     {
-      precalculated_float_corners[no] = arr[no].intersection_approx(arr[no + 1]);
+      result = arr[no].intersection_approx(arr[no + 1]);
+      corners[no] = result;
     }
-    return precalculated_float_corners[no];
+    return result;
   }
 
   /**
@@ -391,17 +423,21 @@ public class Polyline implements Serializable
     {
       no = p_no;
     }
-    if (precalculated_corners == null)
+    Point[] corners = precalculated_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_corners = new Point[arr.length - 1];
+      corners = new Point[arr.length - 1];
+      precalculated_corners = corners;
     }
-    if (precalculated_corners[no] == null)
+    Point result = corners[no];
+    if (result == null)
     // corner is not yet calculated
     {
-      precalculated_corners[no] = arr[no].intersection(arr[no + 1]);
+      result = arr[no].intersection(arr[no + 1]);
+      corners[no] = result;
     }
-    return precalculated_corners[no];
+    return result;
   }
 
   /**
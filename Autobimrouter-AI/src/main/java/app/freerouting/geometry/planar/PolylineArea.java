@@ -18,7 +18,7 @@ public class PolylineArea implements Area, Serializable
 
   final PolylineShape border_shape;
   final PolylineShape[] hole_arr;
-  private transient TileShape[] precalculated_convex_pieces;
+  private transient volatile TileShape[] precalculated_convex_pieces;
 
   /**
    * Creates a new instance of PolylineShapeWithHoles
@@ -236,12 +236,14 @@ public class PolylineArea implements Area, Serializable
           curr_piece_list = new_piece_list;
         }
       }
-      precalculated_convex_pieces = new TileShape[curr_piece_list.size()];
+      TileShape[] pieces = new TileShape[curr_piece_list.size()];
       Iterator<TileShape> it = curr_piece_list.iterator();
-      for (int i = 0; i < precalculated_convex_pieces.length; ++i)
+      for (int i = 0; i < pieces.length; ++i)
       {
-        precalculated_convex_pieces[i] = it.next();
+        pieces[i] = it.next();
       }
+      // published only when complete, because the area may be shared by several threads
+      precalculated_convex_pieces = pieces;
     }
     return precalculated_convex_pieces;
   }
@@ -19,12 +19,18 @@ public class Simplex extends TileShape implements Serializable
    * Standard implementation for an empty Simplex.
    */
   public static final Simplex EMPTY = new Simplex(new Line[0]);
+  /**
+   * Scratch arrays for the temporary line arrays in intersection and remove_redundant_lines, so
+   * that they are not allocated again in each call. Thread local, because the autorouter may run in
+   * several threads.
+   */
+  private static final ThreadLocal<ScratchArrays> scratch_arrays = ThreadLocal.withInitial(ScratchArrays::new);
   private final Line[] arr;
   /**
    * the following fields are for storing precalculated data
    */
-  private transient Point[] precalculated_corners;
-  private transient FloatPoint[] precalculated_float_corners;
+  private transient volatile Point[] precalculated_corners;
+  private transient volatile FloatPoint[] precalculated_float_corners;
   private transient IntBox precalculated_bounding_box;
   private transient IntOctagon precalculated_bounding_octagon;
 
@@ -182,12 +188,17 @@ public class Simplex extends TileShape implements Serializable
     {
       no = p_no;
     }
-    if (precalculated_corners == null)
+    // the caches are shared by board copies routed in different threads, so only complete corners
+    // are stored into a local reference of the array
+    Point[] corners = precalculated_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_corners = new Point[arr.length];
+      corners = new Point[arr.length];
+      precalculated_corners = corners;
     }
-    if (precalculated_corners[no] == null)
+    Point result = corners[no];
+    if (result == null)
     // corner is not yet calculated
     {
       Line prev;
@@ -199,9 +210,10 @@ public class Simplex extends TileShape implements Serializable
       {
         prev = arr[no - 1];
       }
-      precalculated_corners[no] = arr[no].intersection(prev);
+      result = arr[no].intersection(prev);
+      corners[no] = result;
     }
-    return precalculated_corners[no];
+    return result;
   }
 
   /**
@@ -231,12 +243,15 @@ public class Simplex extends TileShape implements Serializable
     {
       no = p_no;
     }
-    if (precalculated_float_corners == null)
+    FloatPoint[] corners = precalculated_float_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_float_corners = new FloatPoint[arr.length];
+      corners = new FloatPoint[arr.length];
+      precalculated_float_corners = corners;
     }
-    if (precalculated_float_corners[no] == null)
+    FloatPoint result = corners[no];
+    if (result == null)
     // corner is not yet calculated
     {
       Line prev;
@@ -248,22 +263,25 @@ public class Simplex extends TileShape implements Serializable
       {
         prev = arr[no - 1];
       }
-      precalculated_float_corners[no] = arr[no].intersection_approx(prev);
+      result = arr[no].intersection_approx(prev);
+      corners[no] = result;
     }
-    return precalculated_float_corners[no];
+    return result;
   }
 
   @Override
   public FloatPoint[] corner_approx_arr()
   {
-    if (precalculated_float_corners == null)
+    FloatPoint[] corners = precalculated_float_corners;
+    if (corners == null)
     // corner array is not yet allocated
     {
-      precalculated_float_corners = new FloatPoint[arr.length];
+      corners = new FloatPoint[arr.length];
+      precalculated_float_corners = corners;
     }
-    for (int i = 0; i < precalculated_float_corners.length; ++i)
+    for (int i = 0; i < corners.length; ++i)
     {
-      if (precalculated_float_corners[i] == null)
+      if (corners[i] == null)
       // corner is not yet calculated
       {
         Line prev;
@@ -275,10 +293,10 @@ public class Simplex extends TileShape implements Serializable
         {
           prev = arr[i - 1];
         }
-        precalculated_float_corners[i] = arr[i].intersection_approx(prev);
+        corners[i] = arr[i].intersection_approx(prev);
       }
     }
-    return precalculated_float_corners;
+    return corners;
   }
 
   /**
@@ -760,12 +778,13 @@ public class Simplex extends TileShape implements Serializable
     {
       return EMPTY;
     }
-    Line[] new_arr = new Line[arr.length + p_other.arr.length];
+    int new_length = arr.length + p_other.arr.length;
+    ScratchArrays scratch = scratch_arrays.get();
+    Line[] new_arr = scratch.get_merge_lines(new_length);
     System.arraycopy(arr, 0, new_arr, 0, arr.length);
     System.arraycopy(p_other.arr, 0, new_arr, arr.length, p_other.arr.length);
-    Arrays.sort(new_arr);
-    Simplex result = new Simplex(new_arr);
-    return result.remove_redundant_lines();
+    Arrays.sort(new_arr, 0, new_length);
+    return remove_redundant_lines(new_arr, new_length, null);
   }
 
   /**
@@ -1061,23 +1080,34 @@ public class Simplex extends TileShape implements Serializable
    */
   Simplex remove_redundant_lines()
   {
-    Line[] line_arr = new Line[arr.length];
-    // copy the sorted lines of arr into line_arr while skipping
+    return remove_redundant_lines(this.arr, this.arr.length, this);
+  }
+
+  /**
+   * Returns the simplex defined by the first p_length lines of p_sorted_lines without the redundant
+   * lines. Returns p_unchanged, if no line was removed and p_unchanged != null. p_sorted_lines is
+   * not changed.
+   */
+  private static Simplex remove_redundant_lines(Line[] p_sorted_lines, int p_length, Simplex p_unchanged)
+  {
+    ScratchArrays scratch = scratch_arrays.get();
+    Line[] line_arr = scratch.get_result_lines(p_length);
+    // copy the sorted lines of p_sorted_lines into line_arr while skipping
     // multiple lines
     int new_length = 1;
-    line_arr[0] = arr[0];
+    line_arr[0] = p_sorted_lines[0];
     Line prev = line_arr[0];
-    for (int i = 1; i < arr.length; ++i)
+    for (int i = 1; i < p_length; ++i)
     {
-      if (!arr[i].fast_equals(prev))
+      if (!p_sorted_lines[i].fast_equals(prev))
       {
-        line_arr[new_length] = arr[i];
+        line_arr[new_length] = p_sorted_lines[i];
         prev = line_arr[new_length];
         ++new_length;
       }
     }
 
-    Side[] intersection_sides = new Side[new_length];
+    Side[] intersection_sides = scratch.get_sides(new_length);
     // precalculated array , on which side of this line the previous and the
     // next line do intersect
 
@@ -1225,9 +1255,9 @@ public class Simplex extends TileShape implements Serializable
         }
       }
     }
-    if (new_length == arr.length)
+    if (new_length == p_length && p_unchanged != null)
     {
-      return this; // nothing removed
+      return p_unchanged; // nothing removed
     }
     if (new_length == 0)
     {
@@ -1399,4 +1429,48 @@ public class Simplex extends TileShape implements Serializable
     }
     return result;
   }
-}
\ No newline at end of file
+
+  /**
+   * The scratch arrays of a thread, which grow on demand.
+   */
+  private static class ScratchArrays
+  {
+    private Line[] merge_lines = new Line[16];
+    private Line[] result_lines = new Line[16];
+    private Side[] sides = new Side[16];
+
+    Line[] get_merge_lines(int p_length)
+    {
+      if (merge_lines.length < p_length)
+      {
+        merge_lines = new Line[Math.max(p_length, 2 * merge_lines.length)];
+      }
+      return merge_lines;
+    }
+
+    Line[] get_result_lines(int p_length)
+    {
+      if (result_lines.length < p_length)
+      {
+        result_lines = new Line[Math.max(p_length, 2 * result_lines.length)];
+      }
+      return result_lines;
+    }
+
+    /**
+     * Returns a scratch array, whose first p_length elements are null.
+     */
+    Side[] get_sides(int p_length)
+    {
+      if (sides.length < p_length)
+      {
+        sides = new Side[Math.max(p_length, 2 * sides.length)];
+      }
+      else
+      {
+        Arrays.fill(sides, 0, p_length, null);
+      }
+      return sides;
+    }
+  }
+}
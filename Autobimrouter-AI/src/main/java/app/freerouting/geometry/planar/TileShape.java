@@ -322,11 +322,54 @@ public abstract class TileShape extends PolylineShape implements ConvexShape, Se
     return true;
   }
 
+  /**
+   * Tests the corners of the simplex p_other, which are the intersections of its consecutive border
+   * lines, against the border lines of this shape. The exact corner is calculated only, if the
+   * floating point filter cannot decide the side of a border line.
+   */
+  private boolean contains_simplex_corners(TileShape p_other)
+  {
+    int line_count = this.border_line_count();
+    int other_line_count = p_other.border_line_count();
+    for (int i = 0; i < other_line_count; ++i)
+    {
+      Line prev_line = p_other.border_line(i == 0 ? other_line_count - 1 : i - 1);
+      Line curr_line = p_other.border_line(i);
+      Point curr_corner = null;
+      for (int j = 0; j < line_count; ++j)
+      {
+        Line curr_border_line = this.border_line(j);
+        Side curr_side = FilteredPredicates.side_of_intersection(curr_border_line, prev_line, curr_line);
+        if (FilteredPredicates.COUNT_EVALUATIONS)
+        {
+          FilteredPredicates.count(FilteredPredicates.CallSite.TILE_SHAPE_CONTAINS, curr_side != null);
+        }
+        if (curr_side == null)
+        {
+          if (curr_corner == null)
+          {
+            curr_corner = p_other.corner(i);
+          }
+          curr_side = curr_border_line.side_of(curr_corner);
+        }
+        if (curr_side == Side.ON_THE_LEFT)
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns true, if this shape contains p_other completely.
    */
   public boolean contains(TileShape p_other)
   {
+    if (p_other instanceof Simplex && this.border_line_count() > 0)
+    {
+      return contains_simplex_corners(p_other);
+    }
     for (int i = 0; i < p_other.border_line_count(); ++i)
     {
       if (!this.contains(p_other.corner(i)))
@@ -5,6 +5,7 @@ import app.freerouting.datastructures.FileFilter;
 import app.freerouting.designforms.specctra.DsnFile;
 import app.freerouting.designforms.specctra.RulesFile;
 import app.freerouting.interactive.BoardHandling;
+import app.freerouting.interactive.CheckpointService;
 import app.freerouting.interactive.InteractiveState;
 import app.freerouting.interactive.ScreenMessages;
 import app.freerouting.logger.FRLogger;
@@ -42,6 +43,16 @@ public class BoardFrame extends WindowBase
   static final String GUI_DEFAULTS_FILE_NAME = "gui_defaults.par";
   static final String GUI_DEFAULTS_FILE_BACKUP_NAME = "gui_defaults.par.bak";
   static final FileFilter logfile_filter = new FileFilter(log_file_extensions);
+  /**
+   * The maximum time to wait for a checkpoint being written, before the checkpoint file is read,
+   * deleted or the frame is closed.
+   */
+  private static final long CHECKPOINT_WAIT_MILLIS = 10000;
+  /**
+   * If the journal for the change log of the intermediate stage file records more items, it is
+   * discarded and the next intermediate stage file is written completely.
+   */
+  private static final int MAX_INTERMEDIATE_STAGE_CHANGE_COUNT = 10000;
   /**
    * The scroll pane for the panel of the routing board.
    */
@@ -99,6 +110,21 @@ public class BoardFrame extends WindowBase
   Collection<BoardTemporarySubWindow> temporary_subwindows = new LinkedList<>();
   DesignFile design_file;
   private LocalDateTime intermediate_stage_file_last_saved_at;
+  private final transient CheckpointService checkpoint_service = new CheckpointService();
+  /**
+   * Records the changes of the routing board since the last intermediate stage file, so that only
+   * the changes need to be written for the next one. Null, if the next intermediate stage file must
+   * be written completely.
+   */
+  private transient ChangeJournal intermediate_stage_changes;
+  private transient RoutingBoard intermediate_stage_board;
+  /**
+   * The board section of the last complete intermediate stage file and the changes of the routing
+   * board since then. The board section is reused for the next complete file, as long as only traces
+   * and vias were changed, because serializing the board takes long for large boards.
+   */
+  private transient byte[] intermediate_stage_board_section;
+  private transient ChangeJournal intermediate_stage_board_section_changes;
 
   /**
    * Creates a new BoardFrame that is the GUI element containing the Menu, Toolbar, Canvas and Status bar.
@@ -331,6 +357,15 @@ public class BoardFrame extends WindowBase
    * dsn file. Returns false, if the file is invalid.
    */
   boolean load(InputStream p_input_stream, boolean isSpecctraDsn, JTextField p_message_field)
+  {
+    return load(p_input_stream, isSpecctraDsn, p_message_field, null);
+  }
+
+  /**
+   * Reads an existing board design from file. If p_checkpoint_file != null, the binary file is the
+   * checkpoint p_checkpoint_file and the changes in its change log are applied to the board.
+   */
+  private boolean load(InputStream p_input_stream, boolean isSpecctraDsn, JTextField p_message_field, File p_checkpoint_file)
   {
     Point viewport_position = null;
     DsnFile.ReadResult read_result = null;
@@ -363,14 +398,30 @@ public class BoardFrame extends WindowBase
     else
     {
       ObjectInputStream object_stream;
+      boolean read_ok;
       try
       {
-        object_stream = new ObjectInputStream(p_input_stream);
+        BufferedInputStream buffered_stream = new BufferedInputStream(p_input_stream);
+        if (BinaryBoardFile.is_binary_board_file(buffered_stream))
+        {
+          BinaryBoardFile board_file = BinaryBoardFile.read(buffered_stream);
+          if (p_checkpoint_file != null)
+          {
+            CheckpointService.read_change_log(board_file, p_checkpoint_file);
+          }
+          read_ok = board_panel.board_handling.loadFromBinary(board_file);
+          object_stream = board_file.get_object_section(BinaryBoardFile.GUI_SECTION);
+        }
+        else
+        {
+          // file in the old format of Java serialized objects
+          object_stream = new ObjectInputStream(buffered_stream);
+          read_ok = board_panel.board_handling.loadFromBinary(object_stream);
+        }
       } catch (IOException e)
       {
         return false;
       }
-      boolean read_ok = board_panel.board_handling.loadFromBinary(object_stream);
       if (!read_ok)
       {
         return false;
@@ -485,10 +536,11 @@ public class BoardFrame extends WindowBase
 
   public boolean load_intermediate_stage_file()
   {
+    checkpoint_service.await(CHECKPOINT_WAIT_MILLIS);
     try
     {
       FileInputStream input_stream = new FileInputStream(this.design_file.getSnapshotFile());
-      return this.load(input_stream, false, null);
+      return this.load(input_stream, false, null, this.design_file.getSnapshotFile());
     } catch (IOException e)
     {
       screen_messages.set_status_message(tm.getText("error_2"));
@@ -503,20 +555,97 @@ public class BoardFrame extends WindowBase
 
   public boolean save_intermediate_stage_file()
   {
+    if (intermediate_stage_changes != null && intermediate_stage_changes.recorded_item_count() > MAX_INTERMEDIATE_STAGE_CHANGE_COUNT)
+    {
+      // the journal keeps copies of all removed items, so a complete file is cheaper
+      finish_intermediate_stage_file();
+    }
+
     if ((intermediate_stage_file_last_saved_at != null) && (intermediate_stage_file_last_saved_at.plusSeconds(30).isAfter(LocalDateTime.now())))
     {
       return false;
     }
 
     intermediate_stage_file_last_saved_at = LocalDateTime.now();
-    return saveAsBinary(this.design_file.getSnapshotFile());
+
+    // If possible, only the changes since the last intermediate stage are appended to its change log.
+    RoutingBoard routing_board = board_panel.board_handling.get_routing_board();
+    if (intermediate_stage_changes != null && intermediate_stage_board == routing_board && checkpoint_service.accepts_change_record())
+    {
+      BinaryBoardFile change_record = new BinaryBoardFile();
+      if (board_panel.board_handling.saveChangesAsCheckpoint(intermediate_stage_changes, change_record))
+      {
+        routing_board.stop_change_journal(intermediate_stage_changes);
+        intermediate_stage_changes = routing_board.start_change_journal();
+        checkpoint_service.request_change_record(change_record, this.design_file.getSnapshotFile());
+        return true;
+      }
+    }
+
+    // The board is captured here, the checkpoint file is written in the background.
+    // The board section of the previous complete file is reused, if only traces and vias were changed.
+    byte[] board_section = null;
+    if (intermediate_stage_changes != null && intermediate_stage_board == routing_board && intermediate_stage_board_section_changes.recorded_item_count() <= MAX_INTERMEDIATE_STAGE_CHANGE_COUNT && intermediate_stage_board_section_changes.contains_only_encodable_traces_and_vias())
+    {
+      board_section = intermediate_stage_board_section;
+      routing_board.stop_change_journal(intermediate_stage_changes);
+    }
+    else
+    {
+      finish_intermediate_stage_file();
+    }
+    BinaryBoardFile board_file = new BinaryBoardFile();
+    if (!board_panel.board_handling.saveAsCheckpoint(board_file, board_section) || !save_gui_state(board_file, this.design_file.getSnapshotFile()))
+    {
+      finish_intermediate_stage_file();
+      return false;
+    }
+    intermediate_stage_changes = routing_board.start_change_journal();
+    if (board_section == null)
+    {
+      intermediate_stage_board = routing_board;
+      intermediate_stage_board_section = board_file.get_section(BinaryBoardFile.BOARD_SECTION);
+      intermediate_stage_board_section_changes = routing_board.start_change_journal();
+    }
+    checkpoint_service.request(board_file, this.design_file.getSnapshotFile());
+    return true;
+  }
+
+  /**
+   * Stops recording the changes of the board for the change log of the intermediate stage file, so
+   * that the next intermediate stage file is written completely and its board section is serialized
+   * again. Called at the end of an autorouter run, because the board may be edited interactively
+   * afterwards.
+   */
+  public void finish_intermediate_stage_file()
+  {
+    if (intermediate_stage_changes != null)
+    {
+      intermediate_stage_board.stop_change_journal(intermediate_stage_changes);
+      intermediate_stage_board.stop_change_journal(intermediate_stage_board_section_changes);
+      intermediate_stage_changes = null;
+      intermediate_stage_board = null;
+      intermediate_stage_board_section = null;
+      intermediate_stage_board_section_changes = null;
+    }
   }
 
   public boolean delete_intermediate_stage_file()
   {
+    checkpoint_service.cancel(CHECKPOINT_WAIT_MILLIS);
+    CheckpointService.get_change_log_file(this.design_file.getSnapshotFile()).delete();
     return this.design_file.getSnapshotFile().delete();
   }
 
+  /**
+   * Returns the service writing the intermediate stage files, which provides the statistics of the
+   * written checkpoints.
+   */
+  public CheckpointService get_checkpoint_service()
+  {
+    return checkpoint_service;
+  }
+
   public boolean is_intermediate_stage_file_available()
   {
     return (this.design_file.getSnapshotFile().exists() && this.design_file.getSnapshotFile().canRead());
@@ -524,7 +653,7 @@ public class BoardFrame extends WindowBase
 
   public LocalDateTime get_intermediate_stage_file_modification_time()
   {
-    long lastModified = this.design_file.getSnapshotFile().lastModified();
+    long lastModified = Math.max(this.design_file.getSnapshotFile().lastModified(), CheckpointService.get_change_log_file(this.design_file.getSnapshotFile()).lastModified());
     return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneId.systemDefault());
   }
 
@@ -595,6 +724,33 @@ public class BoardFrame extends WindowBase
     return true;
   }
 
+  /**
+   * Saves the GUI settings and the permanent subwindows into the GUI section of p_board_file.
+   * Returns false, if the save failed.
+   */
+  private boolean save_gui_state(BinaryBoardFile p_board_file, File p_output_file)
+  {
+    try
+    {
+      ByteArrayOutputStream gui_stream = new ByteArrayOutputStream();
+      ObjectOutputStream object_stream = new ObjectOutputStream(gui_stream);
+      object_stream.writeObject(board_panel.get_viewport_position());
+      object_stream.writeObject(this.getLocation());
+      object_stream.writeObject(this.getBounds());
+      for (int i = 0; i < this.permanent_subwindows.length; ++i)
+      {
+        this.permanent_subwindows[i].save(object_stream);
+      }
+      object_stream.close();
+      p_board_file.set_section(BinaryBoardFile.GUI_SECTION, gui_stream.toByteArray());
+    } catch (IOException e)
+    {
+      screen_messages.set_status_message(tm.getText("message_gui_settings_save_failed", p_output_file.getPath()));
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Writes a Specctra Session File (SES). Returns false, if write operation fails.
    */
@@ -775,6 +931,7 @@ public class BoardFrame extends WindowBase
   @Override
   public void dispose()
   {
+    checkpoint_service.shutdown(CHECKPOINT_WAIT_MILLIS);
     for (int i = 0; i < this.permanent_subwindows.length; ++i)
     {
       if (this.permanent_subwindows[i] != null)
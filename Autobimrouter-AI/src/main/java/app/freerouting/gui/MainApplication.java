@@ -383,6 +383,8 @@ public class MainApplication extends WindowBase
       new_frame.board_panel.board_handling.set_board_update_strategy(globalSettings.autoRouterSettings.board_update_strategy);
       new_frame.board_panel.board_handling.set_hybrid_ratio(globalSettings.autoRouterSettings.hybrid_ratio);
       new_frame.board_panel.board_handling.set_item_selection_strategy(globalSettings.autoRouterSettings.item_selection_strategy);
+      new_frame.board_panel.board_handling.set_parallel_autoroute(globalSettings.autoRouterSettings.parallel_autoroute);
+      new_frame.board_panel.board_handling.set_partition_search_trees_by_layer(globalSettings.autoRouterSettings.partition_search_trees_by_layer);
 
       if (globalSettings.design_output_filename != null)
       {
@@ -44,11 +44,6 @@ public class AutorouterAndRouteOptimizerThread extends InteractiveActionThread {
     save_intermediate_stages = p_board_handling.save_intermediate_stages;
     optimization_improvement_threshold = p_board_handling.optimization_improvement_threshold;
 
-    if (num_threads > 1) {
-      FRLogger.warn(
-          "Multi-threaded route optimization is broken and it is known to generate clearance violations. It is highly recommended to use the single-threaded route optimization instead by setting the number of threads to 1 with the '-mt 1' command line argument.");
-    }
-
     this.batch_opt_route = num_threads > 1
         ? new BatchOptRouteMT(this, num_threads, update_strategy, item_selection_strategy, hybrid_ratio)
         : new BatchOptRoute(this);
@@ -179,6 +174,11 @@ public class AutorouterAndRouteOptimizerThread extends InteractiveActionThread {
       FRLogger.error(e.getLocalizedMessage(), e);
     }
 
+    if (hdlg.get_panel() != null) {
+      // the board may be edited before the next run, so its next intermediate stage is written completely
+      hdlg.get_panel().board_frame.finish_intermediate_stage_file();
+    }
+
     FRLogger.traceExit("BatchAutorouterThread.thread_action()");
     for (ThreadActionListener hl : this.listeners) {
       if (this.is_stop_requested()) {
@@ -24,7 +24,10 @@ import javax.swing.JPopupMenu;
 import app.freerouting.autoroute.BoardUpdateStrategy;
 import app.freerouting.autoroute.ItemSelectionStrategy;
 import app.freerouting.board.AngleRestriction;
+import app.freerouting.board.BasicBoard;
+import app.freerouting.board.BinaryBoardFile;
 import app.freerouting.board.BoardObservers;
+import app.freerouting.board.ChangeJournal;
 import app.freerouting.board.Communication;
 import app.freerouting.board.CoordinateTransform;
 import app.freerouting.board.FixedState;
@@ -102,6 +105,7 @@ public class BoardHandling extends BoardHandlingHeadless
    * thread pool size
    */
   private int num_threads;
+  private boolean parallel_autoroute = false;
   private BoardUpdateStrategy board_update_strategy;
   private String hybrid_ratio;
   private ItemSelectionStrategy item_selection_strategy;
@@ -416,6 +420,19 @@ public class BoardHandling extends BoardHandlingHeadless
     activityReplayFile.start_scope(ActivityReplayFileScope.SET_CLEARANCE_COMPENSATION, p_value);
   }
 
+  /**
+   * Switches the storage of the shapes on each layer in a separate partition of the search trees on
+   * or off. Searches on a single layer get faster on boards with many layers.
+   */
+  public void set_partition_search_trees_by_layer(boolean p_value)
+  {
+    if (board == null)
+    {
+      return;
+    }
+    board.search_tree_manager.set_partition_by_layer(p_value);
+  }
+
   /**
    * Changes the current snap angle in the interactive board handling.
    */
@@ -638,6 +655,17 @@ public class BoardHandling extends BoardHandlingHeadless
     ratsnest = null;
   }
 
+  /**
+   * The ratsnest of the previous board is discarded, because it is updated from the board it was
+   * created for.
+   */
+  @Override
+  public synchronized void update_routing_board(RoutingBoard routing_board)
+  {
+    super.update_routing_board(routing_board);
+    this.ratsnest = null;
+  }
+
   /**
    * Returns the ratsnest with the information about the incomplete connections.
    */
@@ -682,6 +710,7 @@ public class BoardHandling extends BoardHandlingHeadless
   public void create_board(IntBox p_bounding_box, LayerStructure p_layer_structure, PolylineShape[] p_outline_shapes, String p_outline_clearance_class_name, BoardRules p_rules, Communication p_board_communication)
   {
     super.create_board(p_bounding_box, p_layer_structure, p_outline_shapes, p_outline_clearance_class_name, p_rules, p_board_communication);
+    this.board.search_tree_manager.set_tree_build_thread_count(get_num_threads());
 
     // create the interactive settings with default
     double unit_factor = p_board_communication.coordinate_transform.board_to_dsn(1);
@@ -1118,8 +1147,31 @@ public class BoardHandling extends BoardHandlingHeadless
   }
 
   /**
-   * Reads an existing board design from the input stream. Returns false, if the input stream does
-   * not contain a legal board design.
+   * Reads an existing board design from p_file. Returns false, if p_file does not contain a legal
+   * board design.
+   */
+  public boolean loadFromBinary(BinaryBoardFile p_file)
+  {
+    try
+    {
+      board = (RoutingBoard) BasicBoard.read_binary(p_file);
+      ObjectInputStream settings_stream = p_file.get_object_section(BinaryBoardFile.SETTINGS_SECTION);
+      settings = (Settings) settings_stream.readObject();
+      settings.set_logfile(this.activityReplayFile);
+      coordinate_transform = (CoordinateTransform) settings_stream.readObject();
+      graphics_context = (GraphicsContext) p_file.get_object_section(BinaryBoardFile.GRAPHICS_SECTION).readObject();
+      originalBoardChecksum = calculateCrc32();
+    } catch (Exception e)
+    {
+      FRLogger.error("Couldn't read design file", e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Reads an existing board design in the old format of Java serialized objects from the input
+   * stream. Returns false, if the input stream does not contain a legal board design.
    */
   public boolean loadFromBinary(ObjectInputStream p_design)
   {
@@ -1234,7 +1286,8 @@ public class BoardHandling extends BoardHandlingHeadless
   }
 
   /**
-   * Saves the currently edited board design to p_design_file.
+   * Saves the currently edited board design to p_design_file. The board is stored completely
+   * together with its undo and redo history.
    */
   public boolean saveAsBinary(ObjectOutputStream p_object_stream)
   {
@@ -1255,6 +1308,55 @@ public class BoardHandling extends BoardHandlingHeadless
     return result;
   }
 
+  /**
+   * Stores the currently edited board design in p_file for a checkpoint, which is written by
+   * another thread. Unlike saveAsBinary, the board is not marked as saved, because a checkpoint is
+   * not the design file of the user. The undo and redo history of the board is not stored in a
+   * checkpoint. If p_board_section != null, it is used as board section instead of serializing the
+   * board again, see BasicBoard.write_binary.
+   */
+  public boolean saveAsCheckpoint(BinaryBoardFile p_file, byte[] p_board_section)
+  {
+    try
+    {
+      write_binary_sections(p_file, p_board_section);
+    } catch (Exception e)
+    {
+      FRLogger.error("Couldn't create checkpoint", e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Stores the changes of the board recorded in p_changes together with the interactive settings in
+   * p_file for a record of the change log of a checkpoint. Returns false, if the changes cannot be
+   * stored in a change record, so that a complete checkpoint must be written instead.
+   */
+  public boolean saveChangesAsCheckpoint(ChangeJournal p_changes, BinaryBoardFile p_file)
+  {
+    try
+    {
+      if (!p_changes.write_binary(p_file))
+      {
+        return false;
+      }
+      p_file.set_object_section(BinaryBoardFile.SETTINGS_SECTION, settings, coordinate_transform);
+    } catch (Exception e)
+    {
+      FRLogger.error("Couldn't create checkpoint change record", e);
+      return false;
+    }
+    return true;
+  }
+
+  private void write_binary_sections(BinaryBoardFile p_file, byte[] p_board_section) throws IOException
+  {
+    board.write_binary(p_file, p_board_section);
+    p_file.set_object_section(BinaryBoardFile.SETTINGS_SECTION, settings, coordinate_transform);
+    p_file.set_object_section(BinaryBoardFile.GRAPHICS_SECTION, graphics_context);
+  }
+
   /**
    * Processes the actions stored in the input logfile.
    */
@@ -1902,6 +2004,24 @@ public class BoardHandling extends BoardHandlingHeadless
   public void set_num_threads(int p_value)
   {
     num_threads = p_value;
+    if (board != null)
+    {
+      board.search_tree_manager.set_tree_build_thread_count(get_num_threads());
+    }
+  }
+
+  /**
+   * Returns, if the batch auto-router routes spatially independent connections in parallel on
+   * get_num_threads() threads.
+   */
+  public boolean get_parallel_autoroute()
+  {
+    return parallel_autoroute;
+  }
+
+  public void set_parallel_autoroute(boolean p_value)
+  {
+    parallel_autoroute = p_value;
   }
 
   public void addReadOnlyEventListener(Consumer<Boolean> listener)
@@ -1,12 +1,5 @@
 package app.freerouting.interactive;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.Locale;
 
 import app.freerouting.autoroute.BoardUpdateStrategy;
@@ -56,7 +49,6 @@ public class BoardHandlingHeadless implements IBoardHandling
   protected Locale locale;
   protected boolean save_intermediate_stages;
   protected float optimization_improvement_threshold;
-  private byte[] serializedBoard;
 
   private boolean board_is_read_only = false;
   private long originalBoardChecksum = 0;
@@ -93,57 +85,24 @@ public class BoardHandlingHeadless implements IBoardHandling
   public synchronized void update_routing_board(RoutingBoard routing_board)
   {
     this.board = routing_board;
-    serializedBoard = null;
   }
 
+  /**
+   * Creates a copy of the routing board, which can be changed independently of the original. The
+   * item geometry is shared with the original board, see BasicBoard.clone().
+   */
   public synchronized RoutingBoard deep_copy_routing_board()
   {
-    ObjectOutputStream oos = null;
-    ObjectInputStream ois = null;
-
-    try
+    RoutingBoard board_copy = (RoutingBoard) this.board.clone();
+    if (board_copy == null)
     {
-      if (serializedBoard == null) // cache the board byte array
-      {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        oos = new ObjectOutputStream(bos);
-
-        oos.writeObject(this.board); // serialize this.board
-        oos.flush();
-
-        serializedBoard = bos.toByteArray();
-      }
-
-      ByteArrayInputStream bin = new ByteArrayInputStream(serializedBoard);
-      ois = new ObjectInputStream(bin);
-
-      RoutingBoard board_copy = (RoutingBoard) ois.readObject();
-
-      // board_copy.clear_autoroute_database();
-      board_copy.clear_all_item_temporary_autoroute_data();
-      board_copy.finish_autoroute();
-
-      return board_copy;
-    } catch (Exception e)
-    {
-      System.err.println("Exception in deep_copy_routing_board = " + e);
+      FRLogger.warn("BoardHandlingHeadless.deep_copy_routing_board: copying the board failed");
       return null;
-    } finally
-    {
-      try
-      {
-        if (oos != null)
-        {
-          oos.close();
-        }
-        if (ois != null)
-        {
-          ois.close();
-        }
-      } catch (Exception e)
-      {
-      }
     }
+    board_copy.clear_all_item_temporary_autoroute_data();
+    board_copy.finish_autoroute();
+
+    return board_copy;
   }
 
   @Override
@@ -0,0 +1,488 @@
+package app.freerouting.interactive;
+
+import app.freerouting.board.BinaryBoardFile;
+import app.freerouting.logger.FRLogger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes checkpoints of a board in a background thread, so that the autorouter need not wait for
+ * the disk. The caller captures the board into a BinaryBoardFile, which is written later. A
+ * checkpoint is first written into a temporary file, which then replaces the checkpoint file, so
+ * that the checkpoint file is always complete. If a new checkpoint is requested before the previous
+ * one was written, only the newer one is written.
+ * <p>
+ * Between two complete checkpoints, the changes of the board may be appended as change records to
+ * the change log of the checkpoint, so that the amount of data written depends on the changes and
+ * not on the size of the board. The change log is replaced, when the next complete checkpoint is
+ * written. A checkpoint is restored from the checkpoint file together with its change log.
+ */
+public class CheckpointService
+{
+  /**
+   * The maximum number of records in a change log, before a complete checkpoint is required.
+   */
+  private static final int MAX_CHANGE_RECORD_COUNT = 50;
+  /**
+   * The first bytes of a change log: "FRCL".
+   */
+  private static final int CHANGE_LOG_MAGIC = 0x4652434C;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(r ->
+  {
+    Thread t = new Thread(r, "Checkpoint writer");
+    t.setDaemon(true);
+    t.setUncaughtExceptionHandler((t1, e) -> FRLogger.error("Exception in checkpoint writer thread: " + t1, e));
+    return t;
+  });
+
+  /**
+   * The checkpoint waiting to be written, or null.
+   */
+  private PendingCheckpoint pending_checkpoint;
+  /**
+   * The change records waiting to be appended after the pending checkpoint.
+   */
+  private final List<PendingCheckpoint> pending_change_records = new ArrayList<>();
+  /**
+   * The last task submitted to the executor.
+   */
+  private Future<?> last_task;
+
+  private long checkpoint_count = 0;
+  private long coalesced_count = 0;
+  private long failure_count = 0;
+  private Instant last_checkpoint_time;
+  private long last_checkpoint_size = 0;
+  private long last_write_duration = 0;
+  private long change_record_count = 0;
+  /**
+   * False, if the change log does not belong to the last requested checkpoint, for example because
+   * writing it failed.
+   */
+  private boolean change_log_valid = false;
+  private int change_log_record_count = 0;
+  private long change_log_size = 0;
+
+  /**
+   * Returns the file containing the change log of the checkpoint file p_file.
+   */
+  public static File get_change_log_file(File p_file)
+  {
+    return new File(p_file.getPath() + ".log");
+  }
+
+  /**
+   * Adds the changes in the change log of the checkpoint file p_file to p_checkpoint, which was read
+   * from p_file. The changes of all records are combined in the change section of p_checkpoint and
+   * the settings of the last record replace the settings of p_checkpoint. A change log belonging to
+   * another checkpoint is ignored, an incomplete last record, which was not written completely, is
+   * skipped.
+   */
+  public static void read_change_log(BinaryBoardFile p_checkpoint, File p_file) throws IOException
+  {
+    byte[] id_data = p_checkpoint.get_section(BinaryBoardFile.CHECKPOINT_ID_SECTION);
+    File log_file = get_change_log_file(p_file);
+    if (id_data == null || id_data.length != 8 || !log_file.exists())
+    {
+      return;
+    }
+    ByteArrayOutputStream changes = new ByteArrayOutputStream();
+    byte[] settings = null;
+    int record_count = 0;
+    try (DataInputStream input_stream = new DataInputStream(new BufferedInputStream(new FileInputStream(log_file))))
+    {
+      try
+      {
+        if (input_stream.readInt() != CHANGE_LOG_MAGIC || input_stream.readLong() != ByteBuffer.wrap(id_data).getLong())
+        {
+          return;
+        }
+      } catch (EOFException e)
+      {
+        return;
+      }
+      for (; ; )
+      {
+        byte[] curr_changes;
+        byte[] curr_settings;
+        try
+        {
+          int length = input_stream.readInt();
+          if (length < 0)
+          {
+            break;
+          }
+          byte[] record_data = input_stream.readNBytes(length);
+          if (record_data.length < length)
+          {
+            break;
+          }
+          BinaryBoardFile curr_record = BinaryBoardFile.read(new ByteArrayInputStream(record_data));
+          curr_changes = curr_record.get_section(BinaryBoardFile.CHANGE_SECTION);
+          curr_settings = curr_record.get_section(BinaryBoardFile.SETTINGS_SECTION);
+        } catch (IOException e)
+        {
+          // end of the log or a record, which was not written completely
+          break;
+        }
+        if (curr_changes == null || curr_settings == null)
+        {
+          break;
+        }
+        changes.write(curr_changes);
+        settings = curr_settings;
+        ++record_count;
+      }
+    }
+    if (record_count > 0)
+    {
+      p_checkpoint.set_section(BinaryBoardFile.CHANGE_SECTION, changes.toByteArray());
+      p_checkpoint.set_section(BinaryBoardFile.SETTINGS_SECTION, settings);
+    }
+    FRLogger.info("Read " + record_count + " change records from '" + log_file.getPath() + "'");
+  }
+
+  /**
+   * Requests writing p_board_file to p_file in the background. Replaces a checkpoint and the change
+   * records, which were requested before but not yet written. The change log of p_file is replaced
+   * by an empty log.
+   */
+  public synchronized void request(BinaryBoardFile p_board_file, File p_file)
+  {
+    if (this.pending_checkpoint == null && this.pending_change_records.isEmpty())
+    {
+      this.last_task = executor.submit(this::write_pending_checkpoint);
+    }
+    else
+    {
+      if (this.pending_checkpoint != null)
+      {
+        ++this.coalesced_count;
+      }
+      this.coalesced_count += this.pending_change_records.size();
+      this.pending_change_records.clear();
+    }
+    this.pending_checkpoint = new PendingCheckpoint(p_board_file, p_file);
+  }
+
+  /**
+   * Returns true, if the changes since the last requested checkpoint may be appended as a change
+   * record to its change log. Returns false, if a complete checkpoint is required, because the
+   * change log is not valid or has grown too large compared to the checkpoint.
+   */
+  public synchronized boolean accepts_change_record()
+  {
+    return this.change_log_valid && this.change_log_record_count < MAX_CHANGE_RECORD_COUNT && 2 * this.change_log_size < this.last_checkpoint_size;
+  }
+
+  /**
+   * Requests appending p_record to the change log of the checkpoint file p_file in the background.
+   * p_record contains the changes of the board since the last requested checkpoint or change record.
+   * Change records are never replaced by other change records, because each record depends on the
+   * previous ones. If writing the checkpoint or a previous record failed, the record is discarded.
+   */
+  public synchronized void request_change_record(BinaryBoardFile p_record, File p_file)
+  {
+    if (this.pending_checkpoint == null && this.pending_change_records.isEmpty())
+    {
+      this.last_task = executor.submit(this::write_pending_checkpoint);
+    }
+    this.pending_change_records.add(new PendingCheckpoint(p_record, p_file));
+  }
+
+  /**
+   * Discards the checkpoint and the change records waiting to be written and waits until a
+   * checkpoint currently written is finished, but not longer than p_timeout_millis milliseconds.
+   * Returns false, if the timeout was reached.
+   */
+  public boolean cancel(long p_timeout_millis)
+  {
+    synchronized (this)
+    {
+      this.pending_checkpoint = null;
+      this.pending_change_records.clear();
+      this.change_log_valid = false;
+    }
+    boolean result = await(p_timeout_millis);
+    synchronized (this)
+    {
+      this.change_log_valid = false;
+    }
+    return result;
+  }
+
+  /**
+   * Waits until all requested checkpoints are written, but not longer than p_timeout_millis
+   * milliseconds. Returns false, if the timeout was reached.
+   */
+  public boolean await(long p_timeout_millis)
+  {
+    Future<?> curr_task;
+    synchronized (this)
+    {
+      curr_task = this.last_task;
+    }
+    if (curr_task == null)
+    {
+      return true;
+    }
+    try
+    {
+      curr_task.get(p_timeout_millis, TimeUnit.MILLISECONDS);
+    } catch (Exception e)
+    {
+      return curr_task.isDone();
+    }
+    return true;
+  }
+
+  /**
+   * Writes the pending checkpoint and stops the background thread, but waits not longer than
+   * p_timeout_millis milliseconds.
+   */
+  public void shutdown(long p_timeout_millis)
+  {
+    await(p_timeout_millis);
+    executor.shutdown();
+  }
+
+  /**
+   * Returns the number of checkpoints written.
+   */
+  public synchronized long get_checkpoint_count()
+  {
+    return checkpoint_count;
+  }
+
+  /**
+   * Returns the number of checkpoints and change records, which were replaced by a newer checkpoint
+   * before they were written.
+   */
+  public synchronized long get_coalesced_count()
+  {
+    return coalesced_count;
+  }
+
+  /**
+   * Returns the number of checkpoints, which could not be written.
+   */
+  public synchronized long get_failure_count()
+  {
+    return failure_count;
+  }
+
+  /**
+   * Returns the time, when the last checkpoint was written, or null, if no checkpoint was written.
+   */
+  public synchronized Instant get_last_checkpoint_time()
+  {
+    return last_checkpoint_time;
+  }
+
+  /**
+   * Returns the size of the last checkpoint file in bytes.
+   */
+  public synchronized long get_last_checkpoint_size()
+  {
+    return last_checkpoint_size;
+  }
+
+  /**
+   * Returns the time in milliseconds needed for serializing and writing the last checkpoint.
+   */
+  public synchronized long get_last_write_duration()
+  {
+    return last_write_duration;
+  }
+
+  /**
+   * Returns the number of change records appended to change logs.
+   */
+  public synchronized long get_change_record_count()
+  {
+    return change_record_count;
+  }
+
+  /**
+   * Returns the size of the change log of the last checkpoint in bytes.
+   */
+  public synchronized long get_change_log_size()
+  {
+    return change_log_size;
+  }
+
+  private void write_pending_checkpoint()
+  {
+    PendingCheckpoint curr_checkpoint;
+    List<PendingCheckpoint> curr_change_records;
+    synchronized (this)
+    {
+      curr_checkpoint = this.pending_checkpoint;
+      this.pending_checkpoint = null;
+      curr_change_records = new ArrayList<>(this.pending_change_records);
+      this.pending_change_records.clear();
+    }
+    if (curr_checkpoint != null)
+    {
+      write_checkpoint(curr_checkpoint);
+    }
+    for (PendingCheckpoint curr_record : curr_change_records)
+    {
+      write_change_record(curr_record);
+    }
+  }
+
+  private void write_checkpoint(PendingCheckpoint p_checkpoint)
+  {
+    long start_time = System.nanoTime();
+    synchronized (this)
+    {
+      // the previous change log does not belong to the new checkpoint
+      this.change_log_valid = false;
+    }
+    long new_checkpoint_id = ThreadLocalRandom.current().nextLong();
+    p_checkpoint.board_file.set_section(BinaryBoardFile.CHECKPOINT_ID_SECTION, ByteBuffer.allocate(8).putLong(new_checkpoint_id).array());
+    File target_file = p_checkpoint.file;
+    File log_file = get_change_log_file(target_file);
+    try
+    {
+      write_atomically(target_file, output_stream -> p_checkpoint.board_file.write(output_stream));
+      write_atomically(log_file, output_stream ->
+      {
+        DataOutputStream data_stream = new DataOutputStream(output_stream);
+        data_stream.writeInt(CHANGE_LOG_MAGIC);
+        data_stream.writeLong(new_checkpoint_id);
+        data_stream.flush();
+      });
+    } catch (Throwable e)
+    {
+      synchronized (this)
+      {
+        ++this.failure_count;
+      }
+      FRLogger.error("Couldn't write checkpoint '" + target_file.getPath() + "'", e);
+      return;
+    }
+    long write_duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start_time);
+    synchronized (this)
+    {
+      ++this.checkpoint_count;
+      this.last_checkpoint_time = Instant.now();
+      this.last_checkpoint_size = target_file.length();
+      this.last_write_duration = write_duration;
+      this.change_log_valid = true;
+      this.change_log_record_count = 0;
+      this.change_log_size = log_file.length();
+    }
+    FRLogger.info("Checkpoint '" + target_file.getPath() + "' with " + target_file.length() + " bytes was written in " + write_duration + " ms");
+  }
+
+  private void write_change_record(PendingCheckpoint p_record)
+  {
+    synchronized (this)
+    {
+      if (!this.change_log_valid)
+      {
+        ++this.failure_count;
+        return;
+      }
+    }
+    long start_time = System.nanoTime();
+    File log_file = get_change_log_file(p_record.file);
+    long record_size;
+    try
+    {
+      if (!log_file.exists())
+      {
+        throw new FileNotFoundException("change log was deleted");
+      }
+      ByteArrayOutputStream record_stream = new ByteArrayOutputStream();
+      p_record.board_file.write(record_stream);
+      record_size = record_stream.size();
+      try (FileOutputStream output_stream = new FileOutputStream(log_file, true))
+      {
+        DataOutputStream data_stream = new DataOutputStream(output_stream);
+        data_stream.writeInt(record_stream.size());
+        record_stream.writeTo(data_stream);
+        data_stream.flush();
+        output_stream.getFD().sync();
+      }
+    } catch (Throwable e)
+    {
+      synchronized (this)
+      {
+        ++this.failure_count;
+        this.change_log_valid = false;
+      }
+      FRLogger.error("Couldn't append to checkpoint change log '" + log_file.getPath() + "'", e);
+      return;
+    }
+    long write_duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start_time);
+    synchronized (this)
+    {
+      ++this.change_record_count;
+      ++this.change_log_record_count;
+      this.last_checkpoint_time = Instant.now();
+      this.last_write_duration = write_duration;
+      this.change_log_size = log_file.length();
+    }
+    FRLogger.info("Change record with " + record_size + " bytes was appended to '" + log_file.getPath() + "' in " + write_duration + " ms");
+  }
+
+  /**
+   * Writes p_file by writing a temporary file first, which then replaces p_file.
+   */
+  private static void write_atomically(File p_file, FileContentWriter p_writer) throws IOException
+  {
+    File temp_file = new File(p_file.getPath() + ".tmp");
+    try
+    {
+      try (FileOutputStream output_stream = new FileOutputStream(temp_file))
+      {
+        p_writer.write(output_stream);
+        output_stream.getFD().sync();
+      }
+      try
+      {
+        Files.move(temp_file.toPath(), p_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e)
+      {
+        Files.move(temp_file.toPath(), p_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (Throwable e)
+    {
+      temp_file.delete();
+      throw e;
+    }
+  }
+
+  private interface FileContentWriter
+  {
+    void write(OutputStream p_stream) throws IOException;
+  }
+
+  private static class PendingCheckpoint
+  {
+    final BinaryBoardFile board_file;
+    final File file;
+
+    PendingCheckpoint(BinaryBoardFile p_board_file, File p_file)
+    {
+      this.board_file = p_board_file;
+      this.file = p_file;
+    }
+  }
+}
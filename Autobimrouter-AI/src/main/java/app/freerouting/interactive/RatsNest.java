@@ -19,6 +19,19 @@ public class RatsNest
   private final NetIncompletes[] net_incompletes;
   private final boolean[] is_filtered;
   private final Locale locale;
+  /**
+   * The board, from which the incompletes were calculated.
+   */
+  private final BasicBoard board;
+  /**
+   * The change counts of the nets on the board, when their incompletes were calculated, or -1, if
+   * the incompletes were calculated from an item list not taken from the board.
+   */
+  private final int[] net_change_counts;
+  /**
+   * The sum of the incomplete counts of all nets.
+   */
+  private int incomplete_count = 0;
   public boolean hidden = false;
 
   /**
@@ -27,6 +40,7 @@ public class RatsNest
   public RatsNest(BasicBoard p_board, Locale p_locale)
   {
     this.locale = p_locale;
+    this.board = p_board;
     int max_net_no = p_board.rules.nets.max_net_no();
     // Create the net item lists at once for performance reasons.
     Vector<Collection<Item>> net_item_lists = new Vector<>(max_net_no);
@@ -52,9 +66,11 @@ public class RatsNest
     }
     this.net_incompletes = new NetIncompletes[max_net_no];
     this.is_filtered = new boolean[max_net_no];
+    this.net_change_counts = new int[max_net_no];
     for (int i = 0; i < net_incompletes.length; ++i)
     {
-      net_incompletes[i] = new NetIncompletes(i + 1, net_item_lists.get(i), p_board, p_locale);
+      net_change_counts[i] = p_board.get_net_change_count(i + 1);
+      set_net_incompletes(i, new NetIncompletes(i + 1, net_item_lists.get(i), p_board, p_locale));
       is_filtered[i] = false;
     }
   }
@@ -62,38 +78,65 @@ public class RatsNest
   /**
    * Recalculates the incomplete connections for the input net
    */
-  public void recalculate(int p_net_no, BasicBoard p_board)
+  public synchronized void recalculate(int p_net_no, BasicBoard p_board)
   {
     if (p_net_no >= 1 && p_net_no <= net_incompletes.length)
     {
+      net_change_counts[p_net_no - 1] = p_board == this.board ? p_board.get_net_change_count(p_net_no) : -1;
       Collection<Item> item_list = p_board.get_connectable_items(p_net_no);
-      net_incompletes[p_net_no - 1] = new NetIncompletes(p_net_no, item_list, p_board, locale);
+      set_net_incompletes(p_net_no - 1, new NetIncompletes(p_net_no, item_list, p_board, locale));
     }
   }
 
   /**
    * Recalculates the incomplete connections for the input net with the input item list.
    */
-  public void recalculate(int p_net_no, Collection<Item> p_item_list, BasicBoard p_board)
+  public synchronized void recalculate(int p_net_no, Collection<Item> p_item_list, BasicBoard p_board)
   {
     if (p_net_no >= 1 && p_net_no <= net_incompletes.length)
     {
+      net_change_counts[p_net_no - 1] = -1;
       // copy p_item_list, because it will be changed inside the constructor of NetIncompletes
       Collection<Item> item_list = new LinkedList<>(p_item_list);
-      net_incompletes[p_net_no - 1] = new NetIncompletes(p_net_no, item_list, p_board, locale);
+      set_net_incompletes(p_net_no - 1, new NetIncompletes(p_net_no, item_list, p_board, locale));
     }
   }
 
-  public int incomplete_count()
+  /**
+   * Recalculates the incomplete connections of the nets, whose items were inserted, removed or
+   * changed on the board since their last calculation. Returns false, if nothing was recalculated.
+   */
+  public synchronized boolean update()
   {
-    int result = 0;
+    boolean result = false;
     for (int i = 0; i < net_incompletes.length; ++i)
     {
-      result += net_incompletes[i].count();
+      int curr_change_count = this.board.get_net_change_count(i + 1);
+      if (curr_change_count != net_change_counts[i])
+      {
+        net_change_counts[i] = curr_change_count;
+        set_net_incompletes(i, new NetIncompletes(i + 1, this.board.get_connectable_items(i + 1), this.board, locale));
+        result = true;
+      }
     }
     return result;
   }
 
+  private void set_net_incompletes(int p_index, NetIncompletes p_net_incompletes)
+  {
+    if (net_incompletes[p_index] != null)
+    {
+      incomplete_count -= net_incompletes[p_index].count();
+    }
+    net_incompletes[p_index] = p_net_incompletes;
+    incomplete_count += p_net_incompletes.count();
+  }
+
+  public int incomplete_count()
+  {
+    return incomplete_count;
+  }
+
   public int incomplete_count(int p_net_no)
   {
     if (p_net_no <= 0 || p_net_no > net_incompletes.length)
@@ -53,6 +53,10 @@ public class BoardRules implements Serializable
    * restricted exit directions. If the value is {@literal <}= 0, there are no exit restrictions.
    */
   private double pin_edge_to_turn_dist;
+  /**
+   * The number of pending calls of suspend_pin_edge_to_turn_dist.
+   */
+  private transient int pin_edge_to_turn_dist_suspend_count = 0;
   private boolean slow_autoroute_algorithm = false;
 
   /**
@@ -427,9 +431,30 @@ public class BoardRules implements Serializable
    */
   public double get_pin_edge_to_turn_dist()
   {
+    if (this.pin_edge_to_turn_dist_suspend_count > 0)
+    {
+      return -1;
+    }
     return this.pin_edge_to_turn_dist;
   }
 
+  /**
+   * Switches off the exit restrictions of pins until the next call of resume_pin_edge_to_turn_dist
+   * without changing the stored rule.
+   */
+  public void suspend_pin_edge_to_turn_dist()
+  {
+    ++this.pin_edge_to_turn_dist_suspend_count;
+  }
+
+  /**
+   * Ends a previous call of suspend_pin_edge_to_turn_dist.
+   */
+  public void resume_pin_edge_to_turn_dist()
+  {
+    --this.pin_edge_to_turn_dist_suspend_count;
+  }
+
   /**
    * Sets he minimum distance between the pin border and the next corner of a connected trace por a
    * pin with connection restrictions. if p_value is {@literal <}= 0, there are no exit
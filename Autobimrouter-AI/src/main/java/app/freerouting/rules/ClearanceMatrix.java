@@ -24,6 +24,12 @@ public class ClearanceMatrix implements Serializable
    */
   private int class_count;
   private Row[] row; // vector of class_count rows of the clearance matrix
+  /**
+   * The values of the matrix in a flat array indexed by (p_j * class_count + p_i) * layer_count +
+   * p_layer, so that get_value needs a single array access. Null, if it has to be built again
+   * after the class count changed or the matrix was read from a file.
+   */
+  private transient volatile int[] value_table;
 
   /**
    * Creates a new instance for p_class_count clearance classes on p_layer_count layers. p_names is
@@ -36,7 +42,7 @@ public class ClearanceMatrix implements Serializable
     row = new Row[class_count];
     for (int i = 0; i < class_count; ++i)
     {
-      row[i] = new Row(p_name_arr[i]);
+      row[i] = new Row(p_name_arr[i], class_count);
     }
     this.max_value_on_layer = new int[layer_structure.arr.length];
   }
@@ -145,6 +151,11 @@ public class ClearanceMatrix implements Serializable
     value += value % 2;
 
     curr_entry.layer[p_layer] = value;
+    int[] curr_value_table = this.value_table;
+    if (curr_value_table != null)
+    {
+      curr_value_table[table_index(p_i, p_j, p_layer)] = value;
+    }
     curr_row.max_value[p_layer] = Math.max(curr_row.max_value[p_layer], p_value);
     this.max_value_on_layer[p_layer] = Math.max(this.max_value_on_layer[p_layer], p_value);
   }
@@ -155,17 +166,44 @@ public class ClearanceMatrix implements Serializable
    */
   public int get_value(int p_i, int p_j, int p_layer, boolean p_add_safety_margin)
   {
-
+    // value_table is read first, because it is invalidated after the rows and the class count changed
+    int[] curr_value_table = this.value_table;
     if (p_i < 0 || p_i >= class_count || p_j < 0 || p_j >= class_count || p_layer < 0 || p_layer >= layer_structure.arr.length)
     {
       return 0;
     }
-
-    int value_from_the_matrix = row[p_j].column[p_i].layer[p_layer];
+    if (curr_value_table == null)
+    {
+      curr_value_table = build_value_table();
+    }
+    int value_from_the_matrix = curr_value_table[table_index(p_i, p_j, p_layer)];
 
     return p_add_safety_margin ? value_from_the_matrix + clearance_safety_margin : value_from_the_matrix;
   }
 
+  private int table_index(int p_i, int p_j, int p_layer)
+  {
+    return (p_j * class_count + p_i) * layer_structure.arr.length + p_layer;
+  }
+
+  /**
+   * Copies the values of the rows into value_table.
+   */
+  private int[] build_value_table()
+  {
+    int layer_count = layer_structure.arr.length;
+    int[] result = new int[class_count * class_count * layer_count];
+    for (int j = 0; j < class_count; ++j)
+    {
+      for (int i = 0; i < class_count; ++i)
+      {
+        System.arraycopy(row[j].column[i].layer, 0, result, table_index(i, j, 0), layer_count);
+      }
+    }
+    this.value_table = result;
+    return result;
+  }
+
   /**
    * Returns the maximal required spacing of clearance class with index p_i to all other clearance
    * classes on layer p_layer.
@@ -269,45 +307,53 @@ public class ClearanceMatrix implements Serializable
       return false;
     }
     int old_class_count = this.class_count;
-    ++this.class_count;
+    int new_class_count = old_class_count + 1;
+    int layer_count = this.layer_structure.arr.length;
 
-    Row[] new_row = new Row[this.class_count];
+    Row[] new_row = new Row[new_class_count];
 
     // append a matrix entry to each old row
     for (int i = 0; i < old_class_count; ++i)
     {
       Row curr_old_row = this.row[i];
-      new_row[i] = new Row(curr_old_row.name);
+      new_row[i] = new Row(curr_old_row.name, new_class_count);
       Row curr_new_row = new_row[i];
       curr_new_row.max_value = curr_old_row.max_value;
       System.arraycopy(curr_old_row.column, 0, curr_new_row.column, 0, old_class_count);
-
-      curr_new_row.column[old_class_count] = new MatrixEntry();
     }
 
     // append the new row
 
-    new_row[old_class_count] = new Row(p_class_name);
-
-    this.row = new_row;
+    new_row[old_class_count] = new Row(p_class_name, new_class_count);
 
-    // Set the new matrix elements to default values.
+    // Set the new matrix elements to the values of the default class.
 
+    Row appended_row = new_row[old_class_count];
     for (int i = 0; i < old_class_count; ++i)
     {
-      for (int j = 0; j < this.layer_structure.arr.length; ++j)
+      for (int j = 0; j < layer_count; ++j)
       {
-        int default_value = this.get_value(1, i, j, false);
-        this.set_value(old_class_count, i, j, default_value);
-        this.set_value(i, old_class_count, j, default_value);
+        int default_value = old_class_count > 1 ? new_row[i].column[1].layer[j] : 0;
+        new_row[i].column[old_class_count].layer[j] = default_value;
+        new_row[i].max_value[j] = Math.max(new_row[i].max_value[j], default_value);
+        appended_row.column[i].layer[j] = default_value;
+        appended_row.max_value[j] = Math.max(appended_row.max_value[j], default_value);
+        this.max_value_on_layer[j] = Math.max(this.max_value_on_layer[j], default_value);
       }
     }
 
-    for (int j = 0; j < this.layer_structure.arr.length; ++j)
+    for (int j = 0; j < layer_count; ++j)
     {
-      int default_value = this.get_value(1, 1, j, false);
-      this.set_value(old_class_count, old_class_count, j, default_value);
+      int default_value = old_class_count > 1 ? new_row[1].column[1].layer[j] : 0;
+      appended_row.column[old_class_count].layer[j] = default_value;
+      appended_row.max_value[j] = Math.max(appended_row.max_value[j], default_value);
+      this.max_value_on_layer[j] = Math.max(this.max_value_on_layer[j], default_value);
     }
+
+    // the value table is invalidated last, so that it is never built from inconsistent rows
+    this.row = new_row;
+    this.class_count = new_class_count;
+    this.value_table = null;
     return true;
   }
 
@@ -317,9 +363,9 @@ public class ClearanceMatrix implements Serializable
   void remove_class(int p_index)
   {
     int old_class_count = this.class_count;
-    --this.class_count;
+    int new_class_count = old_class_count - 1;
 
-    Row[] new_row = new Row[this.class_count];
+    Row[] new_row = new Row[new_class_count];
 
     // remove the  matrix entry with index p_index in to each old row
     int new_row_index = 0;
@@ -330,7 +376,7 @@ public class ClearanceMatrix implements Serializable
         continue;
       }
       Row curr_old_row = this.row[i];
-      new_row[new_row_index] = new Row(curr_old_row.name);
+      new_row[new_row_index] = new Row(curr_old_row.name, new_class_count);
       Row curr_new_row = new_row[new_row_index];
 
       int new_column_index = 0;
@@ -346,6 +392,8 @@ public class ClearanceMatrix implements Serializable
       ++new_row_index;
     }
     this.row = new_row;
+    this.class_count = new_class_count;
+    this.value_table = null;
   }
 
   /**
@@ -383,11 +431,11 @@ public class ClearanceMatrix implements Serializable
     final MatrixEntry[] column;
     int[] max_value;
 
-    private Row(String p_name)
+    private Row(String p_name, int p_class_count)
     {
       name = p_name;
-      column = new MatrixEntry[class_count];
-      for (int i = 0; i < class_count; ++i)
+      column = new MatrixEntry[p_class_count];
+      for (int i = 0; i < p_class_count; ++i)
       {
         column[i] = new MatrixEntry();
       }
@@ -6,10 +6,14 @@ import app.freerouting.logger.FRLogger;
 import app.freerouting.management.TextManager;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.TreeMap;
 import java.util.Vector;
 
 /**
@@ -31,6 +35,12 @@ public class Nets implements Serializable
    */
   private final Vector<Net> net_arr;
   private BasicBoard board;
+  /**
+   * The nets by name ignoring case, each list in the order of the net numbers, so that looking up
+   * the nets of the pins, when a design is read, does not search the whole net list. Created, when
+   * it is first used.
+   */
+  private transient Map<String, List<Net>> nets_by_name;
 
   /**
    * Creates a new empty net list
@@ -59,16 +69,13 @@ public class Nets implements Serializable
   /**
    * Returns the net with the input name and subnet_number , or null, if no such net exists.
    */
-  public Net get(String p_name, int p_subnet_number)
+  public synchronized Net get(String p_name, int p_subnet_number)
   {
-    for (Net curr_net : net_arr)
+    for (Net curr_net : nets_with_name(p_name))
     {
-      if (curr_net != null && curr_net.name.equalsIgnoreCase(p_name))
+      if (curr_net.subnet_number == p_subnet_number)
       {
-        if (curr_net.subnet_number == p_subnet_number)
-        {
-          return curr_net;
-        }
+        return curr_net;
       }
     }
     return null;
@@ -77,17 +84,9 @@ public class Nets implements Serializable
   /**
    * Returns all subnets with the input name.
    */
-  public Collection<Net> get(String p_name)
+  public synchronized Collection<Net> get(String p_name)
   {
-    Collection<Net> result = new LinkedList<>();
-    for (Net curr_net : net_arr)
-    {
-      if (curr_net != null && curr_net.name.equalsIgnoreCase(p_name))
-      {
-        result.add(curr_net);
-      }
-    }
-    return result;
+    return new LinkedList<>(nets_with_name(p_name));
   }
 
   /**
@@ -131,9 +130,48 @@ public class Nets implements Serializable
     }
     Net new_net = new Net(p_name, p_subnet_number, new_net_no, this, p_contains_plane);
     net_arr.add(new_net);
+    synchronized (this)
+    {
+      if (nets_by_name != null)
+      {
+        index_net(new_net);
+      }
+    }
     return new_net;
   }
 
+  /**
+   * Returns the nets with name p_name ignoring case in the order of their net numbers. Must be
+   * called while holding the lock of this net list.
+   */
+  private List<Net> nets_with_name(String p_name)
+  {
+    if (p_name == null)
+    {
+      return List.of();
+    }
+    if (nets_by_name == null)
+    {
+      nets_by_name = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (Net curr_net : net_arr)
+      {
+        if (curr_net != null)
+        {
+          index_net(curr_net);
+        }
+      }
+    }
+    return nets_by_name.getOrDefault(p_name, List.of());
+  }
+
+  private void index_net(Net p_net)
+  {
+    if (p_net.name != null)
+    {
+      nets_by_name.computeIfAbsent(p_net.name, k -> new ArrayList<>()).add(p_net);
+    }
+  }
+
   /**
    * Gets the Board of this net list. Used for example to get access to the Items of the net.
    */
@@ -11,5 +11,7 @@ public class AutoRouterSettings
   public String hybrid_ratio = "1:1";
   public ItemSelectionStrategy item_selection_strategy = ItemSelectionStrategy.PRIORITIZED;
   public float optimization_improvement_threshold = 0.01f;
+  public boolean parallel_autoroute = false;
+  public boolean partition_search_trees_by_layer = false;
   public transient String[] ignore_net_classes_by_autorouter = new String[0];
 }
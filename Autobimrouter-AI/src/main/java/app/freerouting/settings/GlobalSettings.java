@@ -111,6 +111,11 @@ public class GlobalSettings {
               autoRouterSettings.num_threads = 1024;
             }
           }
+        } else if (p_args[i].startsWith("-pa")) {
+          autoRouterSettings.parallel_autoroute = true;
+          if (p_args.length > i + 1 && !p_args[i + 1].startsWith("-")) {
+            autoRouterSettings.parallel_autoroute = !Objects.equals(p_args[i + 1], "0");
+          }
         } else if (p_args[i].startsWith("-oit")) {
           if (p_args.length > i + 1 && !p_args[i + 1].startsWith("-")) {
             autoRouterSettings.optimization_improvement_threshold = Float.parseFloat(p_args[i + 1]) / 100;